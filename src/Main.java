@@ -1,9 +1,17 @@
+import cli.HeadlessRecovery;
 import gui.MainFrame;
 import config.SettingsManager;
 import javax.swing.*;
+import java.util.Arrays;
 
 public class Main {
     public static void main(String[] args) {
+        // Modo sem interface (servidores, scripts): segue direto para a linha de comando, sem carregar o AWT
+        if (args.length > 0 && args[0].equals("--headless")) {
+            HeadlessRecovery.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Carrega configurações
         SettingsManager.loadSettings();
 
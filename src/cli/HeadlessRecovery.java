@@ -0,0 +1,321 @@
+package cli;
+
+import engine.FileRecoveryEngine;
+import models.RecoveredFile;
+import utils.JsonWriter;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Modo sem interface: varreduras e recuperações pela linha de comando ou por arquivo de tarefas.
+// Nada aqui toca em AWT/Swing. A saída padrão só recebe eventos JSON, um por linha; as mensagens
+// do motor vão para a saída de erro.
+public class HeadlessRecovery {
+    private static final String USAGE = String.join("\n",
+            "Uso: java -cp carvarecovery.jar cli.HeadlessRecovery [opções] <dispositivo>...",
+            "     java -cp carvarecovery.jar cli.HeadlessRecovery [opções] --job tarefas.txt",
+            "",
+            "Opções de cada tarefa:",
+            "  --types jpg,png,...      tipos procurados (padrão: todos)",
+            "  --output PASTA           recupera os arquivos encontrados nesta pasta (sem ela, só varre)",
+            "  --json ARQUIVO           resultado da tarefa (padrão: <saída>/<dispositivo>.json; - = no evento final)",
+            "  --report ARQUIVO         relatório .html, .csv ou .json (.gz comprime; pode repetir)",
+            "  --work-dir PASTA         pasta de trabalho (mapas de setores danificados)",
+            "  --threads N              threads de varredura",
+            "  --direct                 leitura com O_DIRECT",
+            "  --limit-mb N             limite de leitura em MB/s",
+            "  --limit-iops N           limite de operações de leitura por segundo",
+            "  --retries N              novas tentativas por setor ilegível",
+            "  --image ARQUIVO          adquire a imagem do dispositivo durante a varredura",
+            "  --checksum md5|sha1|sha256|xxh64   checksum dos arquivos recuperados",
+            "  --dedup                  grava conteúdos repetidos uma única vez",
+            "  --known-hashes ARQUIVO   ignora arquivos conhecidos (lista de hashes)",
+            "  --progress-interval MS   intervalo mínimo entre eventos de progresso",
+            "",
+            "Opções gerais:",
+            "  --job ARQUIVO            uma tarefa por linha, com as opções acima (# comenta)",
+            "  --parallel N             tarefas executadas ao mesmo tempo (padrão: 1)",
+            "",
+            "Códigos de saída: 0 tudo certo, 1 alguma tarefa falhou, 2 uso incorreto");
+
+    private final PrintStream events;
+    private final List<RecoveryJob> jobs;
+    private final int parallel;
+    private final CountDownLatch finished;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    HeadlessRecovery(PrintStream events, List<RecoveryJob> jobs, int parallel) {
+        this.events = events;
+        this.jobs = jobs;
+        this.parallel = Math.max(1, Math.min(parallel, jobs.size()));
+        this.finished = new CountDownLatch(jobs.size());
+    }
+
+    public static void main(String[] args) {
+        // Eventos para quem lê a saída padrão; qualquer System.out do motor passa a ir para stderr
+        PrintStream events = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        List<RecoveryJob> jobs;
+        int parallel;
+        try {
+            Arguments arguments = Arguments.parse(args);
+            if (arguments.help) {
+                System.err.println(USAGE);
+                System.exit(0);
+                return;
+            }
+            jobs = arguments.createJobs();
+            parallel = arguments.parallel;
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        HeadlessRecovery runner = new HeadlessRecovery(events, jobs, parallel);
+        Thread hook = new Thread(runner::cancelAll, "HeadlessRecovery-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+        int failed = runner.runAll();
+        Runtime.getRuntime().removeShutdownHook(hook);
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    // Executa todas as tarefas (até `parallel` ao mesmo tempo) e devolve quantas falharam
+    int runAll() {
+        ExecutorService pool = Executors.newFixedThreadPool(parallel, r -> {
+            Thread thread = new Thread(r, "RecoveryJob");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (RecoveryJob job : jobs) {
+            pool.execute(() -> runJob(job));
+        }
+        pool.shutdown();
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            cancelAll();
+            Thread.currentThread().interrupt();
+        }
+
+        emit(json -> json.field("event", "summary")
+                .field("jobs", jobs.size())
+                .field("failed", failures.get()));
+        return failures.get();
+    }
+
+    private void runJob(RecoveryJob job) {
+        try {
+            emit(json -> json.field("event", "start").field("job", job.getId()).field("device", job.getDevicePath()));
+            job.run(new ProgressEvents(job));
+            if (job.getStatus() != RecoveryJob.Status.OK) failures.incrementAndGet();
+
+            emit(json -> {
+                json.field("event", "done")
+                        .field("job", job.getId())
+                        .field("status", job.getStatus().name().toLowerCase())
+                        .field("error", job.getError())
+                        .field("filesFound", job.getFiles().size())
+                        .field("filesRecovered", job.getRecoveredCount())
+                        .field("elapsedMs", job.getElapsedMillis());
+                if (job.writesResultToOutput()) {
+                    json.name("result");
+                    job.writeResult(json);
+                } else {
+                    json.field("result", job.getResultPath());
+                }
+            });
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            emit(json -> json.field("event", "error").field("job", job.getId()).field("error", String.valueOf(e)));
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    // Ctrl+C / SIGTERM: para as varreduras e espera os resultados parciais serem gravados
+    private void cancelAll() {
+        for (RecoveryJob job : jobs) {
+            job.cancel();
+        }
+        try {
+            finished.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Uma linha por evento, montada inteira antes de ir para a saída: tarefas paralelas não se misturam
+    private void emit(EventBody body) {
+        StringWriter line = new StringWriter();
+        try {
+            JsonWriter json = new JsonWriter(line);
+            json.beginObject();
+            body.write(json);
+            json.endObject();
+        } catch (IOException e) {
+            return; // StringWriter não falha
+        }
+        synchronized (events) {
+            events.println(line);
+        }
+    }
+
+    private interface EventBody {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private final class ProgressEvents implements FileRecoveryEngine.RecoveryProgressListener {
+        private final RecoveryJob job;
+        private final AtomicInteger found = new AtomicInteger();
+
+        ProgressEvents(RecoveryJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void onProgressUpdate(int progress, long bytesScanned, long totalBytes) {
+            emit(json -> json.field("event", "progress")
+                    .field("job", job.getId())
+                    .field("percent", progress)
+                    .field("bytes", bytesScanned)
+                    .field("total", totalBytes));
+        }
+
+        @Override
+        public void onFileFound(RecoveredFile file) {
+            onFilesFound(new RecoveredFile[]{file});
+        }
+
+        @Override
+        public void onFilesFound(RecoveredFile[] files) {
+            int total = found.addAndGet(files.length);
+            emit(json -> json.field("event", "found")
+                    .field("job", job.getId())
+                    .field("count", files.length)
+                    .field("total", total));
+        }
+
+        @Override
+        public void onRecoveryProgress(RecoveredFile file, int progress) {
+            emit(json -> json.field("event", "recovering")
+                    .field("job", job.getId())
+                    .field("file", file.getFileName())
+                    .field("percent", progress));
+        }
+    }
+
+    // Opções da linha de comando: as gerais ficam aqui, as de tarefa valem para todos os dispositivos
+    // e servem de padrão para cada linha do arquivo de tarefas
+    static final class Arguments {
+        final List<String> common = new ArrayList<>();
+        final List<String> devices = new ArrayList<>();
+        String jobFile;
+        int parallel = 1;
+        boolean help;
+
+        private static final List<String> FLAGS = List.of("--direct", "--dedup");
+
+        static Arguments parse(String[] args) {
+            Arguments parsed = new Arguments();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-h":
+                    case "--help":
+                        parsed.help = true;
+                        break;
+                    case "--job":
+                        parsed.jobFile = next(args, ++i, arg);
+                        break;
+                    case "--parallel":
+                        try {
+                            parsed.parallel = Integer.parseInt(next(args, ++i, arg));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Valor inválido para --parallel: " + args[i]);
+                        }
+                        break;
+                    default:
+                        if (!arg.startsWith("--")) {
+                            parsed.devices.add(arg);
+                        } else {
+                            parsed.common.add(arg);
+                            if (!FLAGS.contains(arg)) parsed.common.add(next(args, ++i, arg));
+                        }
+                }
+            }
+            return parsed;
+        }
+
+        private static String next(String[] args, int index, String option) {
+            if (index >= args.length) throw new IllegalArgumentException("Falta o valor de " + option);
+            return args[index];
+        }
+
+        List<RecoveryJob> createJobs() throws IOException {
+            List<List<String>> specs = new ArrayList<>();
+            for (String device : devices) {
+                List<String> spec = new ArrayList<>(common);
+                spec.add(device);
+                specs.add(spec);
+            }
+            if (jobFile != null) {
+                for (String line : Files.readAllLines(Paths.get(jobFile), StandardCharsets.UTF_8)) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    List<String> spec = new ArrayList<>(common);
+                    spec.addAll(tokenize(line));
+                    specs.add(spec);
+                }
+            }
+            if (specs.isEmpty()) throw new IllegalArgumentException("Nenhum dispositivo informado");
+
+            List<RecoveryJob> jobs = new ArrayList<>();
+            for (List<String> spec : specs) {
+                jobs.add(RecoveryJob.parse(jobs.size() + 1, spec));
+            }
+            return jobs;
+        }
+
+        // Separa por espaços, respeitando trechos entre aspas (caminhos com espaço)
+        static List<String> tokenize(String line) {
+            List<String> tokens = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            boolean pending = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                    pending = true;
+                } else if (Character.isWhitespace(c) && !quoted) {
+                    if (pending) tokens.add(current.toString());
+                    current.setLength(0);
+                    pending = false;
+                } else {
+                    current.append(c);
+                    pending = true;
+                }
+            }
+            if (quoted) throw new IllegalArgumentException("Aspas sem fechamento: " + line);
+            if (pending) tokens.add(current.toString());
+            return tokens;
+        }
+    }
+}
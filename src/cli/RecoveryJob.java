@@ -0,0 +1,330 @@
+package cli;
+
+import engine.BadRangeMap;
+import engine.BlockSource;
+import engine.DeviceImager;
+import engine.FileRecoveryEngine;
+import models.RecoveredFile;
+import models.ScanConfig;
+import models.ScanSession;
+import reports.RecoveryReport;
+import utils.Checksum;
+import utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Uma varredura (e, com pasta de saída, a recuperação) de um dispositivo. Cada tarefa tem seu
+// próprio motor e configuração, então várias rodam ao mesmo tempo na mesma JVM.
+public class RecoveryJob {
+    public enum Status { PENDING, RUNNING, OK, FAILED, CANCELLED }
+
+    private final int id;
+    private final String devicePath;
+    private final Set<String> fileTypes;
+    private final String outputPath;
+    private final String resultPath;
+    private final List<String> reportPaths;
+    private final ScanConfig config;
+
+    private final FileRecoveryEngine engine;
+    private volatile Status status = Status.PENDING;
+    private volatile boolean cancelled;
+    private List<RecoveredFile> files = Collections.emptyList();
+    private String error;
+    private long totalBytes;
+    private volatile long bytesScanned;
+    private long startedAt;
+    private long elapsedMillis;
+
+    RecoveryJob(int id, String devicePath, Set<String> fileTypes, String outputPath, String resultPath,
+                List<String> reportPaths, ScanConfig config) {
+        this.id = id;
+        this.devicePath = devicePath;
+        this.fileTypes = fileTypes;
+        this.outputPath = outputPath;
+        this.resultPath = resultPath;
+        this.reportPaths = reportPaths;
+        this.config = config;
+        this.engine = new FileRecoveryEngine();
+        this.engine.setScanConfig(config);
+    }
+
+    // Monta a tarefa a partir das opções (as mesmas da linha de comando e do arquivo de tarefas)
+    static RecoveryJob parse(int id, List<String> args) {
+        ScanConfig config = new ScanConfig();
+        config.setIgnoreSystemFiles(false); // sem lista de hashes não há o que ignorar
+        Set<String> types = new LinkedHashSet<>();
+        String device = null;
+        String output = null;
+        String result = null;
+        List<String> reports = new ArrayList<>();
+
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            switch (arg) {
+                case "--types":
+                    types.clear();
+                    for (String type : value(args, ++i, arg).split(",")) {
+                        if (!type.trim().isEmpty()) types.add(type.trim().toLowerCase(Locale.ROOT));
+                    }
+                    break;
+                case "--output": output = value(args, ++i, arg); break;
+                case "--json": result = value(args, ++i, arg); break;
+                case "--report":
+                    String report = value(args, ++i, arg);
+                    RecoveryReport.Format.forPath(Paths.get(report)); // formato inválido falha já na leitura das opções
+                    reports.add(report);
+                    break;
+                case "--work-dir": config.setOutputDirectory(value(args, ++i, arg)); break;
+                case "--threads": config.setThreadCount(intValue(args, ++i, arg)); break;
+                case "--direct": config.setDirectIo(true); break;
+                case "--limit-mb": config.setReadLimitMegabytesPerSecond(doubleValue(args, ++i, arg)); break;
+                case "--limit-iops": config.setReadLimitIops(intValue(args, ++i, arg)); break;
+                case "--retries": config.setReadRetries(intValue(args, ++i, arg)); break;
+                case "--image": config.setImageOutputPath(value(args, ++i, arg)); break;
+                case "--checksum":
+                    config.setChecksumAlgorithm(algorithm(value(args, ++i, arg)));
+                    config.setVerifyChecksums(true);
+                    break;
+                case "--dedup": config.setDeduplicateOutput(true); break;
+                case "--known-hashes":
+                    config.setKnownFileHashList(value(args, ++i, arg));
+                    config.setIgnoreSystemFiles(true);
+                    break;
+                case "--progress-interval": config.setProgressIntervalMs(intValue(args, ++i, arg)); break;
+                default:
+                    if (arg.startsWith("--")) throw new IllegalArgumentException("Opção desconhecida: " + arg);
+                    if (device != null) throw new IllegalArgumentException("Mais de um dispositivo na tarefa: " + arg);
+                    device = arg;
+            }
+        }
+        if (device == null) throw new IllegalArgumentException("Tarefa sem dispositivo");
+
+        if (result == null) {
+            String directory = output != null ? output : config.getOutputDirectory();
+            Path name = Paths.get(device).getFileName();
+            result = Paths.get(directory, (name != null ? name.toString() : "dispositivo") + ".json").toString();
+        }
+        return new RecoveryJob(id, device, types, output, result, reports, config);
+    }
+
+    private static String value(List<String> args, int index, String option) {
+        if (index >= args.size()) throw new IllegalArgumentException("Falta o valor de " + option);
+        return args.get(index);
+    }
+
+    private static int intValue(List<String> args, int index, String option) {
+        try {
+            return Integer.parseInt(value(args, index, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + option + ": " + args.get(index));
+        }
+    }
+
+    private static double doubleValue(List<String> args, int index, String option) {
+        try {
+            return Double.parseDouble(value(args, index, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + option + ": " + args.get(index));
+        }
+    }
+
+    private static Checksum.Algorithm algorithm(String name) {
+        String normalized = name.replace("-", "").toUpperCase(Locale.ROOT);
+        for (Checksum.Algorithm algorithm : Checksum.Algorithm.values()) {
+            if (algorithm.name().equals(normalized)) return algorithm;
+        }
+        throw new IllegalArgumentException("Algoritmo de checksum desconhecido: " + name);
+    }
+
+    public int getId() { return id; }
+    public String getDevicePath() { return devicePath; }
+    public String getResultPath() { return resultPath; }
+    public Status getStatus() { return status; }
+    public String getError() { return error; }
+    public List<RecoveredFile> getFiles() { return files; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    boolean writesResultToOutput() { return "-".equals(resultPath); }
+
+    public int getRecoveredCount() {
+        int count = 0;
+        for (RecoveredFile file : files) {
+            if (file.getRecoveryStatus() == RecoveredFile.RecoveryStatus.RECOVERED) count++;
+        }
+        return count;
+    }
+
+    // Varre, recupera (se houver pasta de saída) e grava o resultado; o ouvinte recebe o progresso
+    void run(FileRecoveryEngine.RecoveryProgressListener listener) {
+        status = Status.RUNNING;
+        startedAt = System.currentTimeMillis();
+        engine.setProgressListener(new FileRecoveryEngine.RecoveryProgressListener() {
+            @Override
+            public void onProgressUpdate(int progress, long scanned, long total) {
+                bytesScanned = scanned;
+                listener.onProgressUpdate(progress, scanned, total);
+            }
+
+            @Override
+            public void onFileFound(RecoveredFile file) {
+                listener.onFileFound(file);
+            }
+
+            @Override
+            public void onFilesFound(RecoveredFile[] found) {
+                listener.onFilesFound(found);
+            }
+
+            @Override
+            public void onRecoveryProgress(RecoveredFile file, int progress) {
+                listener.onRecoveryProgress(file, progress);
+            }
+        });
+
+        try {
+            Path device = Paths.get(devicePath);
+            if (!BlockSource.exists(device)) {
+                throw new IOException("Dispositivo não encontrado: " + devicePath);
+            }
+            totalBytes = BlockSource.sizeOf(device);
+            files = engine.scanForDeletedFiles(devicePath, fileTypes);
+            error = engine.getLastError();
+            // Imagem gzip: o tamanho exato só existe depois da primeira passada
+            totalBytes = BlockSource.sizeOf(device);
+
+            if (error == null && !cancelled && outputPath != null && !files.isEmpty()) {
+                Files.createDirectories(Paths.get(outputPath));
+                engine.recoverFiles(files, outputPath, devicePath);
+            }
+        } catch (IOException | RuntimeException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+
+        elapsedMillis = System.currentTimeMillis() - startedAt;
+        status = error != null ? Status.FAILED : cancelled ? Status.CANCELLED : Status.OK;
+
+        if (!writesResultToOutput()) {
+            try {
+                saveResult();
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar resultado " + resultPath + ": " + e.getMessage());
+                error = "resultado não gravado: " + e.getMessage();
+                status = Status.FAILED;
+            }
+        }
+        if (!reportPaths.isEmpty()) {
+            try {
+                saveReports();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erro ao gravar relatório de " + devicePath + ": " + e.getMessage());
+                error = "relatório não gravado: " + e.getMessage();
+                status = Status.FAILED;
+            }
+        }
+    }
+
+    // Interrompe a varredura em andamento; os arquivos já encontrados entram no resultado
+    void cancel() {
+        cancelled = true;
+        engine.stopScanning();
+    }
+
+    // Grava num temporário e troca de uma vez: quem monitora a pasta nunca lê um JSON pela metade
+    private void saveResult() throws IOException {
+        Path target = Paths.get(resultPath).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            JsonWriter json = new JsonWriter(writer, true);
+            writeResult(json);
+            writer.write('\n');
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Todos os relatórios pedidos saem de uma única passada pela lista de arquivos
+    private void saveReports() throws IOException {
+        ScanSession session = new ScanSession("JOB_" + startedAt + "_" + id, new Date(startedAt), devicePath,
+                "Linha de comando", new ArrayList<>(fileTypes), config);
+        session.setStatus(status == Status.OK ? "Concluído" : status == Status.CANCELLED ? "Cancelado" : "Falhou: " + error);
+        session.setEndTime(new Date(startedAt + elapsedMillis));
+        if (engine.getScanStrategy() != null) session.setScanStrategy(engine.getScanStrategy().toString());
+
+        RecoveryReport report = new RecoveryReport(session);
+        report.setDeviceSize(totalBytes);
+        for (String path : reportPaths) {
+            report.addOutput(Paths.get(path));
+        }
+        report.write(files);
+    }
+
+    void writeResult(JsonWriter json) throws IOException {
+        json.beginObject()
+                .field("job", id)
+                .field("device", devicePath)
+                .field("source", DeviceImager.resolveSource(devicePath))
+                .field("size", totalBytes)
+                .field("status", status.name().toLowerCase(Locale.ROOT))
+                .field("error", error)
+                .field("started", Instant.ofEpochMilli(startedAt).toString())
+                .field("elapsedMs", elapsedMillis)
+                .field("bytesScanned", bytesScanned)
+                .field("output", outputPath);
+
+        json.name("types").beginArray();
+        for (String type : fileTypes) json.value(type);
+        json.endArray();
+
+        if (config.isImagingEnabled()) {
+            json.name("image").beginObject()
+                    .field("path", config.getImageOutputPath())
+                    .field("algorithm", config.getChecksumAlgorithm().getDisplayName())
+                    .field("digest", engine.getAcquisitionDigest())
+                    .endObject();
+        }
+
+        BadRangeMap badRanges = engine.getBadRanges();
+        if (badRanges != null) {
+            json.name("badRanges").beginObject()
+                    .field("count", badRanges.getRangeCount())
+                    .field("bytes", badRanges.getTotalBytes())
+                    .field("map", String.valueOf(badRanges.getFile()))
+                    .endObject();
+        }
+
+        json.field("filesFound", files.size())
+                .field("filesRecovered", getRecoveredCount())
+                .field("knownFilesSkipped", engine.getKnownFilesSkippedCount());
+
+        json.name("files").beginArray();
+        for (RecoveredFile file : new ArrayList<>(files)) {
+            json.beginObject()
+                    .field("name", file.getFileName())
+                    .field("type", file.getFileExtension())
+                    .field("offset", file.getStartPosition())
+                    .field("size", file.getFileSize())
+                    .field("status", file.getRecoveryStatus().name().toLowerCase(Locale.ROOT))
+                    .field("path", file.getRecoveryStatus() == RecoveredFile.RecoveryStatus.RECOVERED
+                            ? file.getFilePath() : null)
+                    .field("checksum", file.getChecksum())
+                    .endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+}
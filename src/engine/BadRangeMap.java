@@ -0,0 +1,145 @@
+package engine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Mapa persistente das regiões ilegíveis de um dispositivo (no estilo do mapfile do ddrescue).
+// Regiões vizinhas ou sobrepostas são unidas; uma passada posterior relê só o que está aqui.
+public class BadRangeMap {
+    private final Path file;
+    private final TreeMap<Long, Long> ranges; // início -> fim (exclusivo)
+
+    private BadRangeMap(Path file) {
+        this.file = file;
+        this.ranges = new TreeMap<>();
+    }
+
+    // Carrega o mapa salvo; sem arquivo, começa vazio
+    public static BadRangeMap load(Path file) throws IOException {
+        BadRangeMap map = new BadRangeMap(file);
+        if (file == null || !Files.exists(file)) return map;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\t");
+            try {
+                map.add(Long.decode(parts[0]), Long.decode(parts[1]));
+            } catch (RuntimeException e) {
+                System.err.println("Linha inválida no mapa de setores danificados: " + line);
+            }
+        }
+        return map;
+    }
+
+    public Path getFile() { return file; }
+
+    public synchronized void add(long start, long end) {
+        if (end <= start) return;
+        Map.Entry<Long, Long> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    // Região relida com sucesso deixa de ser danificada
+    public synchronized void remove(long start, long end) {
+        if (end <= start) return;
+        Map.Entry<Long, Long> before = ranges.lowerEntry(start);
+        if (before != null && before.getValue() > start) {
+            ranges.put(before.getKey(), start);
+            if (before.getValue() > end) {
+                ranges.put(end, before.getValue());
+                return;
+            }
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() < end) {
+            ranges.remove(next.getKey());
+            if (next.getValue() > end) {
+                ranges.put(end, next.getValue());
+            }
+        }
+    }
+
+    public synchronized boolean contains(long position) {
+        Map.Entry<Long, Long> entry = ranges.floorEntry(position);
+        return entry != null && entry.getValue() > position;
+    }
+
+    // Trecho [start, end) inteiro dentro de uma única região danificada
+    public synchronized boolean covers(long start, long end) {
+        Map.Entry<Long, Long> entry = ranges.floorEntry(start);
+        return entry != null && entry.getValue() >= end;
+    }
+
+    // Alguma região danificada toca o trecho [start, end)
+    public synchronized boolean overlaps(long start, long end) {
+        Map.Entry<Long, Long> entry = ranges.lowerEntry(end);
+        return entry != null && entry.getValue() > start;
+    }
+
+    public synchronized List<Range> getRanges() {
+        List<Range> result = new ArrayList<>(ranges.size());
+        for (Map.Entry<Long, Long> entry : ranges.entrySet()) {
+            result.add(new Range(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    public synchronized int getRangeCount() { return ranges.size(); }
+
+    public synchronized long getTotalBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : ranges.entrySet()) {
+            total += entry.getValue() - entry.getKey();
+        }
+        return total;
+    }
+
+    public synchronized boolean isEmpty() { return ranges.isEmpty(); }
+
+    // Grava num temporário e troca de uma vez: o mapa anterior nunca fica pela metade
+    public void save() throws IOException {
+        if (file == null) return;
+        List<Range> snapshot = getRanges();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# início\tfim (bytes, fim exclusivo)");
+            writer.newLine();
+            for (Range range : snapshot) {
+                writer.write(String.format("0x%x\t0x%x", range.getStart(), range.getEnd()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static final class Range {
+        private final long start;
+        private final long end;
+
+        public Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public long getLength() { return end - start; }
+    }
+}
@@ -0,0 +1,392 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Cache de blocos compartilhado por varredura, preview e recuperação.
+// Blocos alinhados de 64KB ficam fora do heap e são substituídos pelo algoritmo CLOCK.
+public class BlockCache {
+    public static final int BLOCK_SIZE = 64 * 1024;
+    private static final long DEFAULT_CAPACITY = 128L * 1024 * 1024;
+    private static final long VALIDATION_INTERVAL_NANOS = 1_000_000_000L;
+
+    private static volatile BlockCache instance;
+    private static long configuredCapacity = DEFAULT_CAPACITY;
+
+    private final int slotCount;
+    private final ByteBuffer arena;
+    private final BlockKey[] slotKeys;
+    private final int[] slotLengths;
+    private final AtomicIntegerArray referenced;
+    private final ReentrantReadWriteLock[] slotLocks;
+    private final Map<BlockKey, Integer> index;
+    private final Map<Path, DeviceHandle> handles;
+    private final AtomicInteger nextDeviceId;
+    private int clockHand;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    private BlockCache(long capacityBytes) {
+        this.slotCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE / BLOCK_SIZE, capacityBytes / BLOCK_SIZE));
+        this.arena = ByteBuffer.allocateDirect(slotCount * BLOCK_SIZE);
+        this.slotKeys = new BlockKey[slotCount];
+        this.slotLengths = new int[slotCount];
+        this.referenced = new AtomicIntegerArray(slotCount);
+        this.slotLocks = new ReentrantReadWriteLock[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slotLocks[i] = new ReentrantReadWriteLock();
+        }
+        this.index = new ConcurrentHashMap<>();
+        this.handles = new ConcurrentHashMap<>();
+        this.nextDeviceId = new AtomicInteger(0);
+        this.clockHand = 0;
+    }
+
+    public static BlockCache getInstance() {
+        if (instance == null) {
+            synchronized (BlockCache.class) {
+                if (instance == null) {
+                    instance = new BlockCache(configuredCapacity);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Deve ser chamado antes do primeiro uso do cache
+    public static synchronized void configure(long capacityBytes) {
+        configuredCapacity = capacityBytes;
+    }
+
+    public int read(Path device, long position, byte[] dst, int offset, int length) throws IOException {
+        return read(device, position, ByteBuffer.wrap(dst, offset, length));
+    }
+
+    // Leitura posicional através do cache; retorna -1 no fim do dispositivo
+    public int read(Path device, long position, ByteBuffer dst) throws IOException {
+        DeviceHandle handle = acquire(device);
+        try {
+            int total = 0;
+            while (dst.hasRemaining()) {
+                long blockIndex = (position + total) / BLOCK_SIZE;
+                int blockOffset = (int) ((position + total) % BLOCK_SIZE);
+                int copied = readFromBlock(handle, blockIndex, blockOffset, dst);
+                if (copied <= 0) break; // fim do dispositivo
+                total += copied;
+            }
+            return total == 0 && dst.hasRemaining() ? -1 : total;
+        } finally {
+            handle.release();
+        }
+    }
+
+    // Blocos já no cache vêm da memória; o resto é lido de direct em trechos contíguos, sem
+    // carregar nem expulsar blocos. Usado pela recuperação, que lê cada região uma única vez.
+    public int readCachedOrDirect(Path device, BlockSource direct, long position, ByteBuffer dst) throws IOException {
+        DeviceHandle handle = handles.get(device.toAbsolutePath());
+        if (handle == null || !handle.isValid()) {
+            return direct.read(dst, position);
+        }
+
+        int total = 0;
+        while (dst.hasRemaining()) {
+            long at = position + total;
+            BlockKey key = new BlockKey(handle.deviceId, at / BLOCK_SIZE);
+            Integer slot = index.get(key);
+            if (slot != null) {
+                int copied = copyFromSlot(slot, key, (int) (at % BLOCK_SIZE), dst);
+                if (copied == 0) break; // bloco final mais curto: fim do dispositivo
+                if (copied > 0) {
+                    hits.incrementAndGet();
+                    total += copied;
+                    continue;
+                }
+            }
+
+            // Falta: lê direto até o próximo bloco em cache
+            long end = nextCachedPosition(handle, (at / BLOCK_SIZE + 1) * BLOCK_SIZE, at + dst.remaining());
+            ByteBuffer part = dst.duplicate();
+            part.limit(part.position() + (int) (end - at));
+            int bytesRead = direct.read(part, at);
+            if (bytesRead <= 0) break;
+            dst.position(dst.position() + bytesRead);
+            total += bytesRead;
+        }
+        return total == 0 && dst.hasRemaining() ? -1 : total;
+    }
+
+    // Início do primeiro bloco em cache dentro de [from, to), ou to se não houver nenhum
+    public long nextCachedPosition(Path device, long from, long to) {
+        DeviceHandle handle = handles.get(device.toAbsolutePath());
+        if (handle == null || !handle.isValid()) return to;
+        if (index.containsKey(new BlockKey(handle.deviceId, from / BLOCK_SIZE))) return from;
+        return nextCachedPosition(handle, (from / BLOCK_SIZE + 1) * BLOCK_SIZE, to);
+    }
+
+    private long nextCachedPosition(DeviceHandle handle, long blockStart, long to) {
+        if (index.isEmpty()) return to;
+        for (long position = blockStart; position < to; position += BLOCK_SIZE) {
+            if (index.containsKey(new BlockKey(handle.deviceId, position / BLOCK_SIZE))) return position;
+        }
+        return to;
+    }
+
+    // Mapa de trechos alocados da fonte (null se ela não souber informar)
+    public List<BlockSource.Extent> getExtents(Path device) throws IOException {
+        DeviceHandle handle = acquire(device);
+        try {
+            return handle.source.getExtents();
+        } finally {
+            handle.release();
+        }
+    }
+
+    public boolean contains(Path device, long position) {
+        DeviceHandle handle = handles.get(device.toAbsolutePath());
+        return handle != null && index.containsKey(new BlockKey(handle.deviceId, position / BLOCK_SIZE));
+    }
+
+    private int readFromBlock(DeviceHandle handle, long blockIndex, int blockOffset, ByteBuffer dst) throws IOException {
+        BlockKey key = new BlockKey(handle.deviceId, blockIndex);
+
+        Integer slot = index.get(key);
+        if (slot != null) {
+            int copied = copyFromSlot(slot, key, blockOffset, dst);
+            if (copied >= 0) {
+                hits.incrementAndGet();
+                return copied;
+            }
+        }
+
+        misses.incrementAndGet();
+        return loadBlock(handle, key, blockOffset, dst);
+    }
+
+    // Retorna -1 se o slot foi reaproveitado para outro bloco entre a consulta e a leitura
+    private int copyFromSlot(int slot, BlockKey key, int blockOffset, ByteBuffer dst) {
+        ReentrantReadWriteLock.ReadLock lock = slotLocks[slot].readLock();
+        lock.lock();
+        try {
+            if (!key.equals(slotKeys[slot])) return -1;
+            referenced.set(slot, 1);
+            return copyOut(slot, blockOffset, dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int loadBlock(DeviceHandle handle, BlockKey key, int blockOffset, ByteBuffer dst) throws IOException {
+        int slot = claimSlot();
+        ReentrantReadWriteLock.WriteLock lock = slotLocks[slot].writeLock();
+        try {
+            ByteBuffer block = slice(slot);
+            long devicePosition = key.blockIndex * BLOCK_SIZE;
+            while (block.hasRemaining()) {
+                int bytesRead = handle.source.read(block, devicePosition + block.position());
+                if (bytesRead <= 0) break;
+            }
+
+            slotLengths[slot] = block.position();
+            if (slotLengths[slot] == 0) {
+                return -1; // além do fim: o slot continua livre
+            }
+
+            slotKeys[slot] = key;
+            referenced.set(slot, 1);
+            index.put(key, slot);
+            return copyOut(slot, blockOffset, dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Algoritmo CLOCK: avança o ponteiro limpando bits de referência até achar uma vítima livre
+    private int claimSlot() {
+        synchronized (this) {
+            while (true) {
+                int slot = clockHand;
+                clockHand = (clockHand + 1) % slotCount;
+
+                if (referenced.getAndSet(slot, 0) == 1) continue;
+
+                ReentrantReadWriteLock.WriteLock lock = slotLocks[slot].writeLock();
+                if (!lock.tryLock()) continue; // slot em uso por outra thread
+
+                BlockKey previous = slotKeys[slot];
+                if (previous != null) {
+                    index.remove(previous, slot);
+                    slotKeys[slot] = null;
+                    evictions.incrementAndGet();
+                }
+                return slot; // devolvido com o write lock adquirido
+            }
+        }
+    }
+
+    private int copyOut(int slot, int blockOffset, ByteBuffer dst) {
+        int available = slotLengths[slot] - blockOffset;
+        if (available <= 0) return 0;
+
+        ByteBuffer block = slice(slot);
+        block.position(blockOffset);
+        block.limit(blockOffset + Math.min(available, dst.remaining()));
+        int count = block.remaining();
+        dst.put(block);
+        return count;
+    }
+
+    private ByteBuffer slice(int slot) {
+        ByteBuffer block = arena.duplicate();
+        block.position(slot * BLOCK_SIZE);
+        block.limit(slot * BLOCK_SIZE + BLOCK_SIZE);
+        return block.slice();
+    }
+
+    // Um canal compartilhado por dispositivo; arquivos comuns que mudaram recebem novo id (blocos antigos expiram).
+    // Devolve o handle com uma referência a mais: quem pede chama release() ao terminar a leitura.
+    private DeviceHandle acquire(Path device) throws IOException {
+        Path key = device.toAbsolutePath();
+        DeviceHandle handle = handles.get(key);
+        if (handle != null && handle.isValid() && handle.retain()) {
+            return handle;
+        }
+
+        synchronized (handles) {
+            handle = handles.get(key);
+            if (handle != null && handle.isValid() && handle.retain()) {
+                return handle;
+            }
+            if (handle != null && handles.remove(key, handle)) {
+                handle.release(); // a fonte fecha quando o último leitor em andamento terminar
+            }
+            handle = new DeviceHandle(key, nextDeviceId.incrementAndGet());
+            handle.retain();
+            handles.put(key, handle);
+            return handle;
+        }
+    }
+
+    public void invalidate(Path device) {
+        DeviceHandle handle = handles.remove(device.toAbsolutePath());
+        if (handle != null) {
+            handle.release();
+        }
+    }
+
+    // Estatísticas
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getCapacity() { return (long) slotCount * BLOCK_SIZE; }
+    public int getCachedBlocks() { return index.size(); }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total > 0 ? (double) hits.get() / total : 0.0;
+    }
+
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache de blocos: %d/%d blocos, acertos %.1f%% (%d acertos, %d faltas, %d remoções)",
+                getCachedBlocks(), slotCount, getHitRatio() * 100, getHits(), getMisses(), getEvictions());
+    }
+
+    private static final class BlockKey {
+        final int deviceId;
+        final long blockIndex;
+
+        BlockKey(int deviceId, long blockIndex) {
+            this.deviceId = deviceId;
+            this.blockIndex = blockIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockKey)) return false;
+            BlockKey other = (BlockKey) o;
+            return deviceId == other.deviceId && blockIndex == other.blockIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * deviceId + Long.hashCode(blockIndex * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    private static final class DeviceHandle {
+        final Path path;
+        final int deviceId;
+        final BlockSource source;
+        final boolean regularFile;
+        final long size;
+        final long modified;
+        final AtomicInteger references = new AtomicInteger(1); // 1 = a referência do próprio mapa
+        volatile long lastValidation;
+
+        DeviceHandle(Path path, int deviceId) throws IOException {
+            this.path = path;
+            this.deviceId = deviceId;
+            this.source = BlockSource.open(path);
+            // Fontes em memória e dispositivos não têm atributos de arquivo comum a revalidar
+            BasicFileAttributes attrs = Files.isRegularFile(path)
+                    ? Files.readAttributes(path, BasicFileAttributes.class) : null;
+            this.regularFile = attrs != null;
+            this.size = attrs != null ? attrs.size() : 0;
+            this.modified = attrs != null ? attrs.lastModifiedTime().toMillis() : 0;
+            this.lastValidation = System.nanoTime();
+        }
+
+        // Falha se o handle já foi fechado (saiu do mapa e o último leitor terminou)
+        boolean retain() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) return false;
+                if (references.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    System.err.println("Erro ao fechar dispositivo " + path + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // Dispositivos e imagens não mudam durante a recuperação; arquivos comuns são revalidados a cada segundo
+        boolean isValid() {
+            if (!source.isOpen()) return false;
+            if (!regularFile) return true;
+
+            long now = System.nanoTime();
+            if (now - lastValidation < VALIDATION_INTERVAL_NANOS) return true;
+            lastValidation = now;
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                return attrs.size() == size && attrs.lastModifiedTime().toMillis() == modified;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
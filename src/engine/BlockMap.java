@@ -0,0 +1,141 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Mapa de blocos compacto: 3 bits por bloco em páginas alocadas sob demanda (páginas
+// nunca tocadas valem tipo 0 e não ocupam memória), mais contadores por grupo de blocos
+// para agregar regiões grandes sem percorrer bloco a bloco. Seguro para várias threads.
+public class BlockMap {
+    public static final int MAX_TYPES = 8;
+    public static final int CHUNK_BLOCKS = 4096;
+
+    private static final int TYPE_BITS = 3;
+    private static final long TYPE_MASK = (1L << TYPE_BITS) - 1;
+    private static final int BLOCKS_PER_WORD = 64 / TYPE_BITS; // 21 blocos por long
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_BLOCKS = 1 << PAGE_SHIFT;
+    private static final int PAGE_WORDS = (PAGE_BLOCKS + BLOCKS_PER_WORD - 1) / BLOCKS_PER_WORD;
+
+    private final long totalBlocks;
+    private final AtomicReferenceArray<AtomicLongArray> pages;
+    // Contagem por grupo dos tipos diferentes de 0; o tipo 0 é o que sobra
+    private final AtomicIntegerArray chunkCounts;
+
+    public BlockMap(long totalBlocks) {
+        long chunks = (totalBlocks + CHUNK_BLOCKS - 1) / CHUNK_BLOCKS;
+        if (chunks * MAX_TYPES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Dispositivo grande demais para o mapa de blocos: " + totalBlocks);
+        }
+        this.totalBlocks = totalBlocks;
+        this.pages = new AtomicReferenceArray<>((int) ((totalBlocks + PAGE_BLOCKS - 1) >>> PAGE_SHIFT));
+        this.chunkCounts = new AtomicIntegerArray((int) (chunks * MAX_TYPES));
+    }
+
+    public long getTotalBlocks() { return totalBlocks; }
+
+    public int get(long block) {
+        AtomicLongArray page = pages.get((int) (block >>> PAGE_SHIFT));
+        if (page == null) return 0;
+        int inPage = (int) (block & (PAGE_BLOCKS - 1));
+        long word = page.get(inPage / BLOCKS_PER_WORD);
+        return (int) ((word >>> ((inPage % BLOCKS_PER_WORD) * TYPE_BITS)) & TYPE_MASK);
+    }
+
+    // Retorna o tipo anterior do bloco
+    public int set(long block, int type) {
+        if (block < 0 || block >= totalBlocks) return 0;
+        AtomicLongArray page = pageFor(block, type);
+        if (page == null) return 0; // gravar tipo 0 em página vazia não muda nada
+
+        int inPage = (int) (block & (PAGE_BLOCKS - 1));
+        int wordIndex = inPage / BLOCKS_PER_WORD;
+        int shift = (inPage % BLOCKS_PER_WORD) * TYPE_BITS;
+
+        long word, updated;
+        int previous;
+        do {
+            word = page.get(wordIndex);
+            previous = (int) ((word >>> shift) & TYPE_MASK);
+            if (previous == type) return previous;
+            updated = (word & ~(TYPE_MASK << shift)) | ((long) type << shift);
+        } while (!page.compareAndSet(wordIndex, word, updated));
+
+        int chunkBase = (int) (block / CHUNK_BLOCKS) * MAX_TYPES;
+        if (previous != 0) chunkCounts.decrementAndGet(chunkBase + previous);
+        if (type != 0) chunkCounts.incrementAndGet(chunkBase + type);
+        return previous;
+    }
+
+    public void setRange(long fromBlock, long toBlock, int type) {
+        long end = Math.min(toBlock, totalBlocks);
+        for (long block = Math.max(0, fromBlock); block < end; block++) {
+            set(block, type);
+        }
+    }
+
+    private AtomicLongArray pageFor(long block, int type) {
+        int pageIndex = (int) (block >>> PAGE_SHIFT);
+        AtomicLongArray page = pages.get(pageIndex);
+        if (page == null && type != 0) {
+            pages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_WORDS));
+            page = pages.get(pageIndex);
+        }
+        return page;
+    }
+
+    // Soma em counts[tipo] quantos blocos de [fromBlock, toBlock) têm cada tipo.
+    // Grupos inteiros usam os contadores; páginas vazias contam direto como tipo 0.
+    public void countRange(long fromBlock, long toBlock, int[] counts) {
+        long block = Math.max(0, fromBlock);
+        long end = Math.min(toBlock, totalBlocks);
+
+        while (block < end) {
+            long chunk = block / CHUNK_BLOCKS;
+            long chunkStart = chunk * CHUNK_BLOCKS;
+            long chunkEnd = Math.min(chunkStart + CHUNK_BLOCKS, totalBlocks);
+
+            if (block == chunkStart && chunkEnd <= end) {
+                int base = (int) chunk * MAX_TYPES;
+                long others = 0;
+                for (int type = 1; type < MAX_TYPES; type++) {
+                    int count = chunkCounts.get(base + type);
+                    counts[type] += count;
+                    others += count;
+                }
+                counts[0] += (int) (chunkEnd - chunkStart - others);
+                block = chunkEnd;
+                continue;
+            }
+
+            long stop = Math.min(end, chunkEnd);
+            AtomicLongArray page = pages.get((int) (block >>> PAGE_SHIFT));
+            if (page == null) {
+                counts[0] += (int) (stop - block);
+                block = stop;
+                continue;
+            }
+            for (; block < stop; block++) {
+                counts[get(block)]++;
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < pages.length(); i++) {
+            pages.set(i, null);
+        }
+        for (int i = 0; i < chunkCounts.length(); i++) {
+            chunkCounts.set(i, 0);
+        }
+    }
+
+    public long getMemoryUsage() {
+        long bytes = (long) chunkCounts.length() * 4 + (long) pages.length() * 8;
+        for (int i = 0; i < pages.length(); i++) {
+            if (pages.get(i) != null) bytes += (long) PAGE_WORDS * 8;
+        }
+        return bytes;
+    }
+}
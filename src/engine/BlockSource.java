@@ -0,0 +1,103 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Origem somente leitura dos bytes a recuperar: disco/partição, arquivo de imagem (simples, dividida
+// ou gzip) ou dados em memória. Toda leitura é posicional e não altera estado compartilhado, então
+// varredura, cache, preview e recuperação podem ler a mesma fonte aberta ao mesmo tempo, sem travas.
+// A exceção é a imagem gzip: as leituras dela se enfileiram no descompressor (ver GzipImageChannel).
+public interface BlockSource extends Closeable {
+    int DEFAULT_SECTOR_SIZE = 512;
+
+    // Dados registrados em memória, imagem (arquivo comum) ou dispositivo de blocos
+    static BlockSource open(Path path) throws IOException {
+        BlockSource memory = MemoryBlockSource.lookup(path);
+        if (memory != null) return memory;
+        if (Files.isRegularFile(path)) return ImageBlockSource.open(path);
+        return DeviceBlockSource.open(path);
+    }
+
+    // Abertura com O_DIRECT; lança UnsupportedOperationException se a fonte não permitir
+    static BlockSource openDirect(Path path) throws IOException {
+        if (MemoryBlockSource.lookup(path) != null) {
+            throw new UnsupportedOperationException("Fonte em memória");
+        }
+        if (Files.isRegularFile(path)) return ImageBlockSource.openDirect(path);
+        return DeviceBlockSource.openDirect(path);
+    }
+
+    static boolean exists(Path path) {
+        return MemoryBlockSource.lookup(path) != null || Files.exists(path);
+    }
+
+    static long sizeOf(Path path) throws IOException {
+        try (BlockSource source = open(path)) {
+            return source.size();
+        }
+    }
+
+    Path getPath();
+
+    long size() throws IOException;
+
+    // false quando size() é só uma estimativa (imagem gzip antes da primeira passada): leia até o fim real
+    default boolean isSizeExact() throws IOException { return true; }
+
+    // Menor unidade que o dispositivo lê (setor lógico)
+    int getSectorSize();
+
+    // Lê a partir de position sem mexer em posição compartilhada; -1 no fim da fonte
+    int read(ByteBuffer dst, long position) throws IOException;
+
+    boolean isOpen();
+
+    // Regiões que de fato contêm dados; null quando a fonte inteira deve ser lida
+    default List<Extent> getExtents() { return null; }
+
+    // Lê até encher dst ou chegar ao fim; -1 se nada foi lido
+    default int readFully(ByteBuffer dst, long position) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int bytesRead = read(dst, position + total);
+            if (bytesRead <= 0) break;
+            total += bytesRead;
+        }
+        return total == 0 && dst.hasRemaining() ? -1 : total;
+    }
+
+    // Cópia para um canal de saída; fontes sobre arquivos usam o transferTo nativo
+    default long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, 256 * 1024));
+        long total = 0;
+        while (total < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - total));
+            int bytesRead = read(buffer, position + total);
+            if (bytesRead <= 0) break;
+            buffer.flip();
+            while (buffer.hasRemaining()) target.write(buffer);
+            total += bytesRead;
+        }
+        return total;
+    }
+
+    final class Extent {
+        private final long start;
+        private final long end;
+
+        public Extent(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public long getLength() { return end - start; }
+    }
+}
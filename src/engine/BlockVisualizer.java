@@ -1,53 +1,143 @@
 package engine;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
 
 public class BlockVisualizer extends JPanel {
-    private Map<Long, BlockType> blockMap;
+    private static final int CELL_SIZE = 6;
+    private static final int TILE_CELLS = 32;
+    private static final int LEGEND_WIDTH = 180;
+    private static final int MARGIN = 10;
+
+    private static final int FEED_INTERVAL_MS = 200;
+
+    private volatile BlockMap blockMap;
     private long totalBlocks;
     private long blockSize;
 
+    // Cache de renderização: cada célula agrega blocksPerCell blocos (tipo dominante ou misto)
+    // e as células são desenhadas em tiles; só os tiles com blocos alterados são refeitos
+    private final BitSet dirtyChunks;
+    private BufferedImage[] tiles;
+    private boolean[] dirtyTiles;
+    private int columns, rows, tileColumns, tileRows;
+    private long blocksPerCell;
+    private int layoutWidth = -1, layoutHeight = -1;
+
+    // Mapa ao vivo: regiões publicadas pelo motor são drenadas pela EDT em intervalos fixos
+    private ScanRegionFeed feed;
+    private final Timer feedTimer;
+
+    // O motor publica regiões com estes tipos também no modo sem interface: a cor fica como RGB
+    // e o java.awt.Color só é criado no primeiro desenho, para o enum não carregar o AWT
     public enum BlockType {
-        FREE(Color.WHITE, "Livre"),
-        ALLOCATED(Color.BLUE, "Alocado"),
-        SYSTEM(Color.RED, "Sistema"),
-        DELETED(Color.ORANGE, "Excluído"),
-        RECOVERABLE(Color.GREEN, "Recuperável"),
-        BAD_SECTOR(Color.BLACK, "Setor Danificado");
-
-        private final Color color;
+        FREE(0xFFFFFF, "Não Lido"),
+        ALLOCATED(0x0000FF, "Alocado"),
+        SYSTEM(0xFF0000, "Sistema"),
+        SCANNED(0xAAC8FF, "Lido"),
+        ZERO(0x808080, "Zerado"),
+        RECOVERABLE(0x00FF00, "Assinatura Encontrada"),
+        RECOVERED(0x007800, "Recuperado"),
+        BAD_SECTOR(0x000000, "Setor Danificado");
+        // No máximo BlockMap.MAX_TYPES tipos (3 bits por bloco)
+
+        private final int rgb;
         private final String description;
+        private Color color;
 
-        BlockType(Color color, String description) {
-            this.color = color;
+        BlockType(int rgb, String description) {
+            this.rgb = rgb;
             this.description = description;
         }
 
-        public Color getColor() { return color; }
+        public Color getColor() {
+            if (color == null) {
+                color = new Color(rgb);
+            }
+            return color;
+        }
+
+        public int getRgb() { return rgb; }
         public String getDescription() { return description; }
     }
 
+    private static final BlockType[] TYPES = BlockType.values();
+
     public BlockVisualizer() {
-        this.blockMap = new HashMap<>();
+        this.blockMap = new BlockMap(0);
+        this.dirtyChunks = new BitSet();
         setPreferredSize(new Dimension(800, 400));
         setBackground(Color.LIGHT_GRAY);
+        this.feedTimer = new Timer(FEED_INTERVAL_MS, e -> drainFeed());
+    }
+
+    // Passa a exibir o estado real do dispositivo enquanto varredura e recuperação rodam
+    public void attachFeed(ScanRegionFeed newFeed) {
+        detachFeed();
+        feed = newFeed;
+        feed.subscribe();
+        feedTimer.start();
+    }
+
+    public void detachFeed() {
+        feedTimer.stop();
+        if (feed != null) {
+            feed.unsubscribe();
+            feed = null;
+        }
+    }
+
+    private void drainFeed() {
+        if (feed == null || blockSize <= 0) return;
+        feed.drain(region -> setBlockRange(region.getOffset() / blockSize,
+                (region.getOffset() + region.getLength() + blockSize - 1) / blockSize,
+                region.getType()));
     }
 
     public void setDiskInfo(long totalBlocks, long blockSize) {
         this.totalBlocks = totalBlocks;
         this.blockSize = blockSize;
-        repaint();
+        this.blockMap = new BlockMap(totalBlocks);
+        invalidateLayout();
     }
 
+    public long getTotalBlocks() { return totalBlocks; }
+    public long getBlockSize() { return blockSize; }
+
+    // Pode ser chamado de qualquer thread: o mapa é atômico e a pintura é agendada na EDT
     public void setBlockStatus(long blockNumber, BlockType type) {
-        blockMap.put(blockNumber, type);
+        blockMap.set(blockNumber, type.ordinal());
+        markDirty(blockNumber, blockNumber + 1);
+    }
+
+    public void setBlockRange(long fromBlock, long toBlock, BlockType type) {
+        blockMap.setRange(fromBlock, toBlock, type.ordinal());
+        markDirty(fromBlock, toBlock);
+    }
+
+    public BlockType getBlockStatus(long blockNumber) {
+        return TYPES[blockMap.get(blockNumber)];
     }
 
     public void clearBlocks() {
         blockMap.clear();
+        invalidateLayout();
+    }
+
+    private void markDirty(long fromBlock, long toBlock) {
+        if (toBlock <= fromBlock) return;
+        synchronized (dirtyChunks) {
+            dirtyChunks.set((int) (fromBlock / BlockMap.CHUNK_BLOCKS),
+                    (int) ((toBlock - 1) / BlockMap.CHUNK_BLOCKS) + 1);
+        }
+        repaint();
+    }
+
+    private void invalidateLayout() {
+        layoutWidth = -1;
         repaint();
     }
 
@@ -55,33 +145,140 @@ public class BlockVisualizer extends JPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        if (totalBlocks == 0) return;
+        if (totalBlocks > 0) {
+            updateLayout();
+            applyDirtyChunks();
+            renderDirtyTiles();
 
-        int width = getWidth();
-        int height = getHeight();
+            for (int ty = 0; ty < tileRows; ty++) {
+                for (int tx = 0; tx < tileColumns; tx++) {
+                    g.drawImage(tiles[ty * tileColumns + tx],
+                            LEGEND_WIDTH + tx * TILE_CELLS * CELL_SIZE,
+                            MARGIN + ty * TILE_CELLS * CELL_SIZE, null);
+                }
+            }
+        }
 
-        int blocksPerRow = 100;
-        int blockSizePx = Math.min(width / blocksPerRow, 20);
-        int rows = (int) Math.ceil((double) totalBlocks / blocksPerRow);
+        // Legenda
+        drawLegend(g, 10, 10);
+    }
 
-        int startY = (height - rows * blockSizePx) / 2;
+    // Recalcula a grade quando o tamanho do painel ou do disco muda
+    private void updateLayout() {
+        if (getWidth() == layoutWidth && getHeight() == layoutHeight) return;
+        layoutWidth = getWidth();
+        layoutHeight = getHeight();
 
-        for (long i = 0; i < totalBlocks; i++) {
-            int row = (int) (i / blocksPerRow);
-            int col = (int) (i % blocksPerRow);
+        int maxColumns = Math.max(1, (layoutWidth - LEGEND_WIDTH - MARGIN) / CELL_SIZE);
+        int maxRows = Math.max(1, (layoutHeight - 2 * MARGIN) / CELL_SIZE);
+        blocksPerCell = Math.max(1, (totalBlocks + (long) maxColumns * maxRows - 1) / ((long) maxColumns * maxRows));
+        if (blocksPerCell > BlockMap.CHUNK_BLOCKS) {
+            // Células alinhadas aos grupos do mapa são agregadas só pelos contadores
+            blocksPerCell = (blocksPerCell + BlockMap.CHUNK_BLOCKS - 1) / BlockMap.CHUNK_BLOCKS * BlockMap.CHUNK_BLOCKS;
+        }
 
-            int x = col * blockSizePx;
-            int y = startY + row * blockSizePx;
+        long cells = (totalBlocks + blocksPerCell - 1) / blocksPerCell;
+        columns = (int) Math.min(maxColumns, cells);
+        rows = (int) ((cells + columns - 1) / columns);
+        tileColumns = (columns + TILE_CELLS - 1) / TILE_CELLS;
+        tileRows = (rows + TILE_CELLS - 1) / TILE_CELLS;
 
-            BlockType type = blockMap.getOrDefault(i, BlockType.FREE);
-            g.setColor(type.getColor());
-            g.fillRect(x, y, blockSizePx - 1, blockSizePx - 1);
-            g.setColor(Color.GRAY);
-            g.drawRect(x, y, blockSizePx - 1, blockSizePx - 1);
+        tiles = new BufferedImage[tileColumns * tileRows];
+        dirtyTiles = new boolean[tiles.length];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new BufferedImage(TILE_CELLS * CELL_SIZE, TILE_CELLS * CELL_SIZE, BufferedImage.TYPE_INT_RGB);
+            dirtyTiles[i] = true;
+        }
+        synchronized (dirtyChunks) {
+            dirtyChunks.clear();
         }
+    }
 
-        // Legenda
-        drawLegend(g, 10, 10);
+    // Converte os grupos de blocos alterados em tiles a refazer
+    private void applyDirtyChunks() {
+        BitSet chunks;
+        synchronized (dirtyChunks) {
+            if (dirtyChunks.isEmpty()) return;
+            chunks = (BitSet) dirtyChunks.clone();
+            dirtyChunks.clear();
+        }
+
+        for (int start = chunks.nextSetBit(0); start >= 0; ) {
+            int end = chunks.nextClearBit(start);
+            long firstCell = (long) start * BlockMap.CHUNK_BLOCKS / blocksPerCell;
+            long lastCell = Math.min(((long) end * BlockMap.CHUNK_BLOCKS - 1) / blocksPerCell, (long) columns * rows - 1);
+            markCellsDirty(firstCell, lastCell);
+            start = chunks.nextSetBit(end);
+        }
+    }
+
+    private void markCellsDirty(long firstCell, long lastCell) {
+        int firstRow = (int) (firstCell / columns);
+        int lastRow = (int) (lastCell / columns);
+        for (int tileRow = firstRow / TILE_CELLS; tileRow <= lastRow / TILE_CELLS && tileRow < tileRows; tileRow++) {
+            int fromTile = 0, toTile = tileColumns - 1;
+            if (firstRow == lastRow) {
+                fromTile = (int) (firstCell % columns) / TILE_CELLS;
+                toTile = (int) (lastCell % columns) / TILE_CELLS;
+            }
+            for (int tileColumn = fromTile; tileColumn <= toTile; tileColumn++) {
+                dirtyTiles[tileRow * tileColumns + tileColumn] = true;
+            }
+        }
+    }
+
+    private void renderDirtyTiles() {
+        int[] counts = new int[BlockMap.MAX_TYPES];
+        for (int i = 0; i < tiles.length; i++) {
+            if (!dirtyTiles[i]) continue;
+            dirtyTiles[i] = false;
+            renderTile(i / tileColumns, i % tileColumns, counts);
+        }
+    }
+
+    private void renderTile(int tileRow, int tileColumn, int[] counts) {
+        Graphics2D g = tiles[tileRow * tileColumns + tileColumn].createGraphics();
+        g.setColor(getBackground());
+        g.fillRect(0, 0, TILE_CELLS * CELL_SIZE, TILE_CELLS * CELL_SIZE);
+
+        for (int cy = 0; cy < TILE_CELLS; cy++) {
+            int row = tileRow * TILE_CELLS + cy;
+            if (row >= rows) break;
+            for (int cx = 0; cx < TILE_CELLS; cx++) {
+                int column = tileColumn * TILE_CELLS + cx;
+                if (column >= columns) break;
+
+                long firstBlock = ((long) row * columns + column) * blocksPerCell;
+                if (firstBlock >= totalBlocks) break;
+
+                java.util.Arrays.fill(counts, 0);
+                blockMap.countRange(firstBlock, firstBlock + blocksPerCell, counts);
+                drawCell(g, cx * CELL_SIZE, cy * CELL_SIZE, counts);
+            }
+        }
+        g.dispose();
+    }
+
+    // Célula uniforme: cor do tipo; célula mista: tipo dominante com o segundo tipo no canto
+    private void drawCell(Graphics2D g, int x, int y, int[] counts) {
+        int dominant = 0, secondary = -1;
+        for (int type = 1; type < TYPES.length; type++) {
+            if (counts[type] > counts[dominant]) {
+                secondary = dominant;
+                dominant = type;
+            } else if (counts[type] > 0 && (secondary < 0 || counts[type] > counts[secondary])) {
+                secondary = type;
+            }
+        }
+        if (secondary >= 0 && counts[secondary] == 0) secondary = -1;
+
+        int size = CELL_SIZE - 1;
+        g.setColor(TYPES[dominant].getColor());
+        g.fillRect(x, y, size, size);
+        if (secondary >= 0) {
+            g.setColor(TYPES[secondary].getColor());
+            g.fillRect(x + size / 2, y + size / 2, size - size / 2, size - size / 2);
+        }
     }
 
     private void drawLegend(Graphics g, int x, int y) {
@@ -89,7 +286,7 @@ public class BlockVisualizer extends JPanel {
         g.drawString("Legenda do Mapa de Blocos:", x, y);
 
         int legendY = y + 20;
-        for (BlockType type : BlockType.values()) {
+        for (BlockType type : TYPES) {
             g.setColor(type.getColor());
             g.fillRect(x, legendY, 15, 15);
             g.setColor(Color.BLACK);
@@ -97,5 +294,9 @@ public class BlockVisualizer extends JPanel {
             g.drawString(type.getDescription(), x + 20, legendY + 12);
             legendY += 20;
         }
+
+        if (totalBlocks > 0) {
+            g.drawString(String.format("1 célula = %d bloco(s)", blocksPerCell), x, legendY + 12);
+        }
     }
-}
\ No newline at end of file
+}
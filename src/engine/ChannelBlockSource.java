@@ -0,0 +1,53 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+// Fonte sobre um FileChannel: read(buffer, posição) vira pread e transferTo fica no kernel.
+// O canal nunca é reposicionado, por isso pode ser compartilhado entre threads.
+abstract class ChannelBlockSource implements BlockSource {
+    private final Path path;
+    private final FileChannel channel;
+    private final int sectorSize;
+
+    ChannelBlockSource(Path path, FileChannel channel, int sectorSize) {
+        this.path = path;
+        this.channel = channel;
+        this.sectorSize = sectorSize;
+    }
+
+    @Override
+    public Path getPath() { return path; }
+
+    @Override
+    public int getSectorSize() { return sectorSize; }
+
+    @Override
+    public long size() throws IOException { return channel.size(); }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        return channel.read(dst, position);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public boolean isOpen() { return channel.isOpen(); }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + path + "]";
+    }
+}
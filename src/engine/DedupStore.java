@@ -0,0 +1,183 @@
+package engine;
+
+import utils.BloomFilter;
+import utils.Checksum;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Armazenamento endereçado por conteúdo: cada conteúdo é gravado uma vez e os nomes viram hardlinks.
+// O endereço é sempre SHA-256, qualquer que seja o checksum de verificação: um acerto descarta os
+// bytes novos sem compará-los, então uma colisão (XXH64, ou MD5 forjado na mídia) trocaria arquivos.
+public class DedupStore implements AutoCloseable {
+    public static final Checksum.Algorithm ALGORITHM = Checksum.Algorithm.SHA256;
+    public static final String STORE_DIRECTORY = ".carva-store";
+    public static final String MANIFEST_FILE = "manifest.tsv";
+    private static final long DEFAULT_EXPECTED_OBJECTS = 1_000_000;
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path outputDir;
+    private final Path objectsDir;
+    private final Path tempDir;
+    private final BloomFilter knownObjects;
+    private final Object[] locks;
+    private final BufferedWriter manifest;
+    private volatile boolean hardlinksSupported;
+
+    private final AtomicInteger uniqueObjects = new AtomicInteger(0);
+    private final AtomicInteger duplicates = new AtomicInteger(0);
+    private final AtomicLong bytesSaved = new AtomicLong(0);
+
+    public DedupStore(String outputPath) throws IOException {
+        this(outputPath, DEFAULT_EXPECTED_OBJECTS);
+    }
+
+    public DedupStore(String outputPath, long expectedObjects) throws IOException {
+        this.outputDir = Paths.get(outputPath);
+        this.objectsDir = outputDir.resolve(STORE_DIRECTORY).resolve("objects");
+        this.tempDir = outputDir.resolve(STORE_DIRECTORY).resolve("tmp");
+
+        Files.createDirectories(objectsDir);
+        Files.createDirectories(tempDir);
+        this.hardlinksSupported = supportsHardlinks(objectsDir);
+
+        long existing = countExistingObjects();
+        this.knownObjects = new BloomFilter(Math.max(expectedObjects, existing * 2), 0.01);
+        loadExistingObjects();
+
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        this.manifest = Files.newBufferedWriter(outputDir.resolve(STORE_DIRECTORY).resolve(MANIFEST_FILE),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public Checksum.Algorithm getAlgorithm() { return ALGORITHM; }
+    public Path getOutputDir() { return outputDir; }
+    public int getUniqueObjects() { return uniqueObjects.get(); }
+    public int getDuplicates() { return duplicates.get(); }
+    public long getBytesSaved() { return bytesSaved.get(); }
+
+    // Arquivo temporário dentro do store, no mesmo sistema de arquivos dos objetos (rename atômico)
+    public Path newTempFile() {
+        return tempDir.resolve(UUID.randomUUID() + ".tmp");
+    }
+
+    // Move o temporário para o store (ou descarta se o conteúdo já existe) e cria o nome final.
+    // Retorna o caminho pelo qual o conteúdo pode ser acessado.
+    public Path commit(Path tempFile, String digest, String fileName, long size) throws IOException {
+        Path object = objectPath(digest);
+        long key = BloomFilter.keyOf(digest);
+        boolean duplicate;
+
+        synchronized (locks[(int) (key & (LOCK_STRIPES - 1))]) {
+            // O filtro evita consultar o disco para a grande maioria dos conteúdos inéditos
+            duplicate = knownObjects.mightContain(key) && Files.exists(object);
+            if (duplicate) {
+                Files.deleteIfExists(tempFile);
+            } else {
+                Files.createDirectories(object.getParent());
+                Files.move(tempFile, object, StandardCopyOption.ATOMIC_MOVE);
+                knownObjects.put(key);
+            }
+        }
+
+        if (duplicate) {
+            duplicates.incrementAndGet();
+            bytesSaved.addAndGet(size);
+        } else {
+            uniqueObjects.incrementAndGet();
+        }
+
+        Path target = outputDir.resolve(fileName);
+        Path location = link(object, target) ? target : object;
+        writeManifestEntry(fileName, digest, size, location);
+        return location;
+    }
+
+    public void discard(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            System.err.println("Erro ao remover temporário " + tempFile + ": " + e.getMessage());
+        }
+    }
+
+    // Hardlink para o objeto; se só este nome falhar (permissão, limite de links do objeto...), cópia comum
+    private boolean link(Path object, Path target) {
+        if (!hardlinksSupported) return false;
+        try {
+            Files.deleteIfExists(target);
+            Files.createLink(target, object);
+            return true;
+        } catch (UnsupportedOperationException e) {
+            hardlinksSupported = false;
+            return false;
+        } catch (IOException e) {
+            try {
+                Files.copy(object, target, StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            } catch (IOException copyError) {
+                System.err.println("Erro ao criar " + target + ": " + copyError.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // FAT32/exFAT não têm hardlinks: o nome fica registrado apenas no manifesto
+    private static boolean supportsHardlinks(Path directory) {
+        try {
+            String type = Files.getFileStore(directory).type().toLowerCase(Locale.ROOT);
+            return !type.contains("fat") && !type.equals("msdos");
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void writeManifestEntry(String fileName, String digest, long size, Path location) throws IOException {
+        String line = fileName + '\t' + ALGORITHM.getDisplayName() + ':' + digest + '\t' + size + '\t'
+                + outputDir.relativize(location);
+        synchronized (manifest) {
+            manifest.write(line);
+            manifest.newLine();
+        }
+    }
+
+    private Path objectPath(String digest) {
+        return objectsDir.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private long countExistingObjects() throws IOException {
+        try (Stream<Path> objects = Files.walk(objectsDir, 2)) {
+            return objects.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private void loadExistingObjects() throws IOException {
+        try (Stream<Path> objects = Files.walk(objectsDir, 2)) {
+            objects.filter(Files::isRegularFile).forEach(object -> {
+                try {
+                    knownObjects.put(BloomFilter.keyOf(object.getFileName().toString()));
+                } catch (NumberFormatException e) {
+                    // Arquivo estranho ao store: ignorado
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (manifest) {
+            manifest.close();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package engine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.ZipException;
+
+// Descompressor gzip/deflate em Java puro. O Inflater nativo não expõe as fronteiras de bloco
+// nem aceita começar no meio de um byte, e é isso que permite criar pontos de controle
+// (posição em bits + últimos 32KB de saída) e retomar a descompressão a partir deles.
+final class DeflateDecoder {
+    static final int WINDOW_SIZE = 32 * 1024;
+    private static final int RING_SIZE = 64 * 1024;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final int MAX_MATCH = 258;
+    private static final int INPUT_BUFFER = 64 * 1024;
+
+    private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+            35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+            3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    private static final int[] DISTANCE_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+            257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DISTANCE_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+            7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final Huffman FIXED_LITERALS;
+    private static final Huffman FIXED_DISTANCES;
+
+    static {
+        int[] lengths = new int[288];
+        for (int i = 0; i < 288; i++) {
+            lengths[i] = i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8;
+        }
+        int[] distances = new int[30];
+        java.util.Arrays.fill(distances, 5);
+        try {
+            FIXED_LITERALS = new Huffman(lengths, 288);
+            FIXED_DISTANCES = new Huffman(distances, 30);
+        } catch (ZipException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private enum Mode { MEMBER_HEADER, BLOCK_HEADER, STORED, COMPRESSED, MEMBER_TRAILER, END }
+
+    private final FileChannel input;
+    private final byte[] inputBuffer = new byte[INPUT_BUFFER];
+    private long inputBase;   // posição no arquivo de inputBuffer[0]
+    private int inputPosition;
+    private int inputLength;
+    private long bitBuffer;
+    private int bitCount;
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private long produced;    // bytes descomprimidos gerados
+    private long consumed;    // bytes já entregues a quem lê
+
+    private Mode mode;
+    private boolean lastBlock;
+    private int storedRemaining;
+    private Huffman literals;
+    private Huffman distances;
+    private BoundaryListener boundaryListener;
+
+    // Início do arquivo gzip
+    DeflateDecoder(FileChannel input) {
+        this.input = input;
+        this.mode = Mode.MEMBER_HEADER;
+    }
+
+    // Retoma num início de bloco registrado por um ponto de controle
+    DeflateDecoder(FileChannel input, long bitOffset, long outputOffset, byte[] window, int windowLength)
+            throws IOException {
+        this.input = input;
+        this.inputBase = bitOffset >>> 3;
+        this.produced = outputOffset;
+        this.consumed = outputOffset;
+        for (int i = 0; i < windowLength; i++) {
+            ring[(int) ((outputOffset - windowLength + i) & RING_MASK)] = window[i];
+        }
+        int skipBits = (int) (bitOffset & 7);
+        if (skipBits > 0) {
+            need(skipBits);
+            drop(skipBits);
+        }
+        this.mode = Mode.BLOCK_HEADER;
+    }
+
+    void setBoundaryListener(BoundaryListener listener) { this.boundaryListener = listener; }
+
+    long getPosition() { return consumed; }
+
+    boolean isFinished() { return mode == Mode.END && produced == consumed; }
+
+    // Últimos bytes gerados (até 32KB): o dicionário necessário para retomar deste ponto
+    int copyWindow(byte[] target) {
+        int length = (int) Math.min(WINDOW_SIZE, produced);
+        for (int i = 0; i < length; i++) {
+            target[i] = ring[(int) ((produced - length + i) & RING_MASK)];
+        }
+        return length;
+    }
+
+    int read(byte[] buffer, int offset, int length) throws IOException {
+        while (produced == consumed) {
+            if (mode == Mode.END) return -1;
+            produce();
+        }
+        int count = (int) Math.min(length, produced - consumed);
+        int start = (int) (consumed & RING_MASK);
+        int first = Math.min(count, RING_SIZE - start);
+        System.arraycopy(ring, start, buffer, offset, first);
+        if (first < count) {
+            System.arraycopy(ring, 0, buffer, offset + first, count - first);
+        }
+        consumed += count;
+        return count;
+    }
+
+    long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            while (produced == consumed) {
+                if (mode == Mode.END) return skipped;
+                produce();
+            }
+            long step = Math.min(count - skipped, produced - consumed);
+            consumed += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    // Gera saída até o anel ficar cheio (sem sobrescrever o que ainda não foi lido) ou o fim do arquivo
+    private void produce() throws IOException {
+        while (mode != Mode.END && produced - consumed <= RING_SIZE - MAX_MATCH) {
+            switch (mode) {
+                case MEMBER_HEADER:
+                    if (!readMemberHeader()) {
+                        mode = Mode.END;
+                    } else {
+                        mode = Mode.BLOCK_HEADER;
+                    }
+                    break;
+                case BLOCK_HEADER:
+                    // Depois do último bloco vem o trailer do membro: não é ponto de retomada
+                    if (!lastBlock && boundaryListener != null) {
+                        boundaryListener.onBlockBoundary(this, getBitOffset(), produced);
+                    }
+                    readBlockHeader();
+                    break;
+                case STORED:
+                    copyStored();
+                    break;
+                case COMPRESSED:
+                    decodeSymbols();
+                    break;
+                case MEMBER_TRAILER:
+                    // CRC32 e tamanho (mod 2^32) do membro; o próximo membro, se houver, começa alinhado
+                    drop(bitCount & 7);
+                    need(32);
+                    drop(32);
+                    need(32);
+                    drop(32);
+                    mode = Mode.MEMBER_HEADER;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // false quando não há outro membro (fim do arquivo ou lixo/zeros depois do último)
+    private boolean readMemberHeader() throws IOException {
+        if (!tryNeed(16) || (bitBuffer & 0xFFFF) != 0x8B1F) {
+            return false;
+        }
+        drop(16);
+        int method = bits(8);
+        if (method != 8) throw new ZipException("Método de compressão gzip desconhecido: " + method);
+        int flags = bits(8);
+        for (int i = 0; i < 6; i++) bits(8); // mtime, xfl, os
+        if ((flags & 4) != 0) {
+            int extra = bits(8) | bits(8) << 8;
+            for (int i = 0; i < extra; i++) bits(8);
+        }
+        if ((flags & 8) != 0) while (bits(8) != 0) { } // nome original
+        if ((flags & 16) != 0) while (bits(8) != 0) { } // comentário
+        if ((flags & 2) != 0) bits(16);
+        return true;
+    }
+
+    private void readBlockHeader() throws IOException {
+        if (lastBlock) {
+            lastBlock = false;
+            mode = Mode.MEMBER_TRAILER;
+            return;
+        }
+        lastBlock = bits(1) == 1;
+        int type = bits(2);
+        switch (type) {
+            case 0:
+                drop(bitCount & 7);
+                int length = bits(16);
+                int complement = bits(16);
+                if ((length ^ 0xFFFF) != complement) throw new ZipException("Bloco armazenado corrompido");
+                storedRemaining = length;
+                mode = Mode.STORED;
+                break;
+            case 1:
+                literals = FIXED_LITERALS;
+                distances = FIXED_DISTANCES;
+                mode = Mode.COMPRESSED;
+                break;
+            case 2:
+                readDynamicTables();
+                mode = Mode.COMPRESSED;
+                break;
+            default:
+                throw new ZipException("Tipo de bloco deflate inválido");
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        int literalCount = bits(5) + 257;
+        int distanceCount = bits(5) + 1;
+        int codeLengthCount = bits(4) + 4;
+
+        int[] codeLengthLengths = new int[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            codeLengthLengths[CODE_LENGTH_ORDER[i]] = bits(3);
+        }
+        Huffman codeLengths = new Huffman(codeLengthLengths, 19);
+
+        int[] lengths = new int[literalCount + distanceCount];
+        for (int i = 0; i < lengths.length; ) {
+            int symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[i++] = symbol;
+                continue;
+            }
+            int repeat, value = 0;
+            if (symbol == 16) {
+                if (i == 0) throw new ZipException("Repetição sem comprimento anterior");
+                value = lengths[i - 1];
+                repeat = 3 + bits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + bits(3);
+            } else {
+                repeat = 11 + bits(7);
+            }
+            if (i + repeat > lengths.length) throw new ZipException("Tabela de códigos corrompida");
+            while (repeat-- > 0) lengths[i++] = value;
+        }
+
+        literals = new Huffman(java.util.Arrays.copyOfRange(lengths, 0, literalCount), literalCount);
+        distances = new Huffman(java.util.Arrays.copyOfRange(lengths, literalCount, lengths.length), distanceCount);
+    }
+
+    private void copyStored() throws IOException {
+        // Alinha e copia direto para o anel, respeitando o espaço livre
+        while (storedRemaining > 0 && produced - consumed < RING_SIZE) {
+            int value;
+            if (bitCount >= 8) {
+                value = bits(8);
+            } else {
+                value = nextByte();
+                if (value < 0) throw new EOFException("Fim inesperado do arquivo gzip");
+            }
+            ring[(int) (produced++ & RING_MASK)] = (byte) value;
+            storedRemaining--;
+        }
+        if (storedRemaining == 0) mode = Mode.BLOCK_HEADER;
+    }
+
+    private void decodeSymbols() throws IOException {
+        while (produced - consumed <= RING_SIZE - MAX_MATCH) {
+            int symbol = decode(literals);
+            if (symbol < 256) {
+                ring[(int) (produced++ & RING_MASK)] = (byte) symbol;
+            } else if (symbol == 256) {
+                mode = Mode.BLOCK_HEADER;
+                return;
+            } else {
+                symbol -= 257;
+                if (symbol >= 29) throw new ZipException("Comprimento inválido");
+                int length = LENGTH_BASE[symbol] + bits(LENGTH_EXTRA[symbol]);
+                int distanceSymbol = decode(distances);
+                if (distanceSymbol >= 30) throw new ZipException("Distância inválida");
+                int distance = DISTANCE_BASE[distanceSymbol] + bits(DISTANCE_EXTRA[distanceSymbol]);
+                if (distance > produced) throw new ZipException("Distância antes do início dos dados");
+                long from = produced - distance;
+                for (int i = 0; i < length; i++) {
+                    ring[(int) (produced++ & RING_MASK)] = ring[(int) (from++ & RING_MASK)];
+                }
+            }
+        }
+    }
+
+    private int decode(Huffman huffman) throws IOException {
+        tryNeed(huffman.maxBits);
+        int entry = huffman.table[(int) (bitBuffer & ((1 << huffman.maxBits) - 1))];
+        int length = entry & 15;
+        if (length == 0 || length > bitCount) throw new ZipException("Código Huffman inválido");
+        drop(length);
+        return entry >>> 4;
+    }
+
+    // Posição absoluta, em bits, do próximo bit ainda não consumido
+    private long getBitOffset() {
+        return (inputBase + inputPosition) * 8 - bitCount;
+    }
+
+    private int bits(int count) throws IOException {
+        if (count == 0) return 0;
+        need(count);
+        int value = (int) (bitBuffer & ((1L << count) - 1));
+        drop(count);
+        return value;
+    }
+
+    private void need(int count) throws IOException {
+        if (!tryNeed(count)) throw new EOFException("Fim inesperado do arquivo gzip");
+    }
+
+    private boolean tryNeed(int count) throws IOException {
+        while (bitCount < count) {
+            int value = nextByte();
+            if (value < 0) return false;
+            bitBuffer |= (long) value << bitCount;
+            bitCount += 8;
+        }
+        return true;
+    }
+
+    private void drop(int count) {
+        bitBuffer >>>= count;
+        bitCount -= count;
+    }
+
+    private int nextByte() throws IOException {
+        if (inputPosition == inputLength) {
+            inputBase += inputLength;
+            inputPosition = 0;
+            inputLength = 0;
+            ByteBuffer target = ByteBuffer.wrap(inputBuffer);
+            while (target.hasRemaining()) {
+                int bytesRead = input.read(target, inputBase + target.position());
+                if (bytesRead <= 0) break;
+            }
+            inputLength = target.position();
+            if (inputLength == 0) return -1;
+        }
+        return inputBuffer[inputPosition++] & 0xFF;
+    }
+
+    // Chamado antes de cada cabeçalho de bloco: ponto onde a descompressão pode ser retomada
+    interface BoundaryListener {
+        void onBlockBoundary(DeflateDecoder decoder, long bitOffset, long outputOffset) throws IOException;
+    }
+
+    // Tabela de decodificação direta: índice = próximos maxBits bits, valor = símbolo << 4 | comprimento
+    private static final class Huffman {
+        final int[] table;
+        final int maxBits;
+
+        Huffman(int[] lengths, int count) throws ZipException {
+            int max = 0;
+            int[] lengthCount = new int[16];
+            for (int i = 0; i < count; i++) {
+                lengthCount[lengths[i]]++;
+                max = Math.max(max, lengths[i]);
+            }
+            this.maxBits = Math.max(1, max);
+            this.table = new int[1 << maxBits];
+
+            int[] nextCode = new int[16];
+            int code = 0;
+            lengthCount[0] = 0;
+            for (int bits = 1; bits <= 15; bits++) {
+                code = (code + lengthCount[bits - 1]) << 1;
+                nextCode[bits] = code;
+            }
+            for (int symbol = 0; symbol < count; symbol++) {
+                int length = lengths[symbol];
+                if (length == 0) continue;
+                int reversed = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                if (reversed >= (1 << length)) throw new ZipException("Tabela Huffman inválida");
+                for (int i = reversed; i < table.length; i += 1 << length) {
+                    table[i] = symbol << 4 | length;
+                }
+            }
+        }
+    }
+}
@@ -1,57 +1,393 @@
 package engine;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 public class DeviceAnalyzer {
+    public static final long DEFAULT_PROBE_TIMEOUT_MS = 2000;
+
+    // Sistemas de arquivos virtuais: não têm o que recuperar
+    private static final Set<String> PSEUDO_FILESYSTEMS = Set.of(
+            "proc", "sysfs", "devtmpfs", "devpts", "tmpfs", "cgroup", "cgroup2", "securityfs", "pstore",
+            "debugfs", "tracefs", "configfs", "fusectl", "mqueue", "hugetlbfs", "bpf", "autofs",
+            "binfmt_misc", "rpc_pipefs", "nsfs", "overlay", "squashfs", "efivarfs", "selinuxfs", "ramfs"
+    );
+
+    private static final int MAX_PROBE_THREADS = 16;
+
+    // Cada sistema de arquivos é consultado em uma thread própria: um ponto de rede travado
+    // estoura o tempo limite sem atrasar os demais. O pool é limitado porque interromper não
+    // destrava um statfs preso (NFS fora do ar): a thread só volta quando o kernel desistir.
+    private static final ThreadPoolExecutor PROBES = new ThreadPoolExecutor(
+            MAX_PROBE_THREADS, MAX_PROBE_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r, "DeviceAnalyzer-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        PROBES.allowCoreThreadTimeOut(true);
+    }
+
+    // Consulta mais recente de cada ponto de montagem, inclusive de atualizações anteriores
+    private static final Map<Path, Future<StorageDevice>> PROBES_BY_ROOT = new ConcurrentHashMap<>();
+
     private List<StorageDevice> devices;
+    private long probeTimeoutMillis;
 
     public DeviceAnalyzer() {
         this.devices = new ArrayList<>();
+        this.probeTimeoutMillis = DEFAULT_PROBE_TIMEOUT_MS;
     }
 
+    public void setProbeTimeout(long millis) { this.probeTimeoutMillis = millis; }
+
+    // Bloqueante: deve rodar fora da EDT (ver DeviceInventory)
     public List<StorageDevice> analyzeSystemDevices() {
-        devices.clear();
+        List<StorageDevice> found = new ArrayList<>();
 
         try {
-            Iterable<Path> roots = FileSystems.getDefault().getRootDirectories();
-
+            List<Path> roots = listMountPoints();
+            Map<Path, Future<StorageDevice>> probes = new LinkedHashMap<>();
             for (Path root : roots) {
+                // Consulta anterior ainda presa: espera por ela em vez de ocupar outra thread
+                probes.put(root, PROBES_BY_ROOT.compute(root, (key, running) ->
+                        running != null && !running.isDone() ? running : PROBES.submit(() -> probeMountPoint(key))));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(probeTimeoutMillis);
+            for (Map.Entry<Path, Future<StorageDevice>> probe : probes.entrySet()) {
                 try {
-                    FileStore store = Files.getFileStore(root);
-                    StorageDevice device = new StorageDevice(
-                            root.toString(),
-                            store.name(),
-                            store.getTotalSpace(),
-                            store.getUsableSpace(),
-                            store.getTotalSpace() - store.getUsableSpace(),
-                            getFileSystemType(store.type())
-                    );
-                    devices.add(device);
-                } catch (Exception e) {
-                    System.err.println("Erro ao analisar dispositivo: " + root + " - " + e.getMessage());
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    StorageDevice device = probe.getValue().get(remaining, TimeUnit.NANOSECONDS);
+                    if (device != null) found.add(device);
+                } catch (TimeoutException e) {
+                    // Sem cancelar: a consulta continua registrada e a próxima atualização a reaproveita
+                    found.add(StorageDevice.unavailable(probe.getKey().toString()));
+                } catch (ExecutionException e) {
+                    System.err.println("Erro ao analisar dispositivo: " + probe.getKey() + " - " + e.getCause().getMessage());
+                }
+            }
+
+            if (isLinux()) {
+                found.addAll(listBlockDevices());
+                for (StorageDevice device : found) {
+                    if (device.isAvailable()) loadIoCharacteristics(device);
                 }
             }
 
             // Adicionar dispositivos físicos no Windows
             if (System.getProperty("os.name").toLowerCase().contains("win")) {
-                analyzePhysicalDrives();
+                analyzePhysicalDrives(found);
             }
 
         } catch (Exception e) {
             System.err.println("Erro na análise de dispositivos: " + e.getMessage());
         }
 
+        devices = found;
         return devices;
     }
 
-    private void analyzePhysicalDrives() {
+    private StorageDevice probeMountPoint(Path root) throws IOException {
+        FileStore store = Files.getFileStore(root);
+        return new StorageDevice(
+                root.toString(),
+                store.name(),
+                store.getTotalSpace(),
+                store.getUsableSpace(),
+                store.getTotalSpace() - store.getUsableSpace(),
+                getFileSystemType(store.type())
+        );
+    }
+
+    // No Linux a lista vem de /proc/self/mounts (getRootDirectories só devolve "/")
+    private List<Path> listMountPoints() {
+        List<Path> roots = new ArrayList<>();
+        Path mounts = Paths.get("/proc/self/mounts");
+        if (isLinux() && Files.isReadable(mounts)) {
+            try {
+                for (String line : Files.readAllLines(mounts, StandardCharsets.UTF_8)) {
+                    String[] fields = line.split(" ");
+                    if (fields.length < 3 || PSEUDO_FILESYSTEMS.contains(fields[2])) continue;
+                    Path mountPoint = Paths.get(fields[1].replace("\\040", " "));
+                    if (!roots.contains(mountPoint)) roots.add(mountPoint);
+                }
+                return roots;
+            } catch (IOException e) {
+                System.err.println("Erro ao ler pontos de montagem: " + e.getMessage());
+            }
+        }
+        for (Path root : FileSystems.getDefault().getRootDirectories()) {
+            roots.add(root);
+        }
+        return roots;
+    }
+
+    // Discos e partições brutos de /sys/block; /proc/partitions quando o sysfs não está disponível
+    private List<StorageDevice> listBlockDevices() {
+        List<StorageDevice> blockDevices = new ArrayList<>();
+        Path sysBlock = Paths.get("/sys/block");
+
+        if (Files.isDirectory(sysBlock)) {
+            try (Stream<Path> disks = Files.list(sysBlock)) {
+                disks.sorted().forEach(disk -> {
+                    String name = disk.getFileName().toString();
+                    if (isVirtualDisk(name)) return;
+
+                    long size = readSectors(disk.resolve("size"));
+                    if (size <= 0) return;
+                    blockDevices.add(StorageDevice.blockDevice("/dev/" + name, diskModel(disk), size,
+                            StorageDevice.DeviceType.DISK));
+
+                    try (Stream<Path> children = Files.list(disk)) {
+                        children.filter(child -> Files.exists(child.resolve("partition")))
+                                .sorted()
+                                .forEach(partition -> blockDevices.add(StorageDevice.blockDevice(
+                                        "/dev/" + partition.getFileName(),
+                                        "Partição de " + name,
+                                        readSectors(partition.resolve("size")),
+                                        StorageDevice.DeviceType.PARTITION)));
+                    } catch (IOException e) {
+                        System.err.println("Erro ao listar partições de " + name + ": " + e.getMessage());
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Erro ao listar dispositivos de bloco: " + e.getMessage());
+            }
+            return blockDevices;
+        }
+
+        try {
+            // major minor #blocks(1KB) name
+            for (String line : Files.readAllLines(Paths.get("/proc/partitions"), StandardCharsets.UTF_8)) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 4 || !fields[2].matches("\\d+") || isVirtualDisk(fields[3])) continue;
+                boolean partition = fields[3].matches(".*\\d") && !fields[3].startsWith("nvme")
+                        || fields[3].matches("nvme\\d+n\\d+p\\d+");
+                blockDevices.add(StorageDevice.blockDevice("/dev/" + fields[3],
+                        partition ? "Partição" : "Disco",
+                        Long.parseLong(fields[2]) * 1024,
+                        partition ? StorageDevice.DeviceType.PARTITION : StorageDevice.DeviceType.DISK));
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Erro ao ler /proc/partitions: " + e.getMessage());
+        }
+        return blockDevices;
+    }
+
+    private static boolean isVirtualDisk(String name) {
+        return name.startsWith("ram") || name.startsWith("zram") || name.startsWith("dm-");
+    }
+
+    // Tamanho em setores de 512 bytes, como exposto pelo sysfs
+    private static long readSectors(Path sizeFile) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(sizeFile), StandardCharsets.US_ASCII).trim()) * 512;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String diskModel(Path disk) {
+        try {
+            String model = new String(Files.readAllBytes(disk.resolve("device").resolve("model")),
+                    StandardCharsets.US_ASCII).trim();
+            if (!model.isEmpty()) return model;
+        } catch (IOException e) {
+            // Sem modelo (loop, virtio, etc.)
+        }
+        return "Disco " + disk.getFileName();
+    }
+
+    // Descreve um caminho qualquer (disco, partição, imagem ou pasta montada) com suas características de E/S
+    public static StorageDevice describe(String path) {
+        StorageDevice device;
+        try {
+            Path target = Paths.get(path);
+            long size = Files.isRegularFile(target) ? Files.size(target) : 0;
+            if (path.startsWith("/dev/")) {
+                String name = target.toRealPath().getFileName().toString();
+                size = readSectors(Paths.get("/sys/class/block", name, "size"));
+                device = StorageDevice.blockDevice(path, name, size,
+                        Files.exists(Paths.get("/sys/class/block", name, "partition"))
+                                ? StorageDevice.DeviceType.PARTITION : StorageDevice.DeviceType.DISK);
+            } else {
+                device = new StorageDevice(path, target.getFileName() != null ? target.getFileName().toString() : path,
+                        size, 0, size, "Arquivo/Pasta");
+            }
+        } catch (IOException | RuntimeException e) {
+            device = StorageDevice.unavailable(path);
+        }
+        if (isLinux()) {
+            loadIoCharacteristics(device);
+        }
+        return device;
+    }
+
+    // Lê do sysfs os atributos da fila do disco que contém o caminho (partições usam os do disco pai)
+    static void loadIoCharacteristics(StorageDevice device) {
+        String name = blockDeviceName(device.getMountPoint());
+        if (name == null) return;
+
+        Path queue = Paths.get("/sys/class/block", name, "queue");
+        try {
+            if (!Files.isDirectory(queue)) {
+                queue = Paths.get("/sys/class/block", name).toRealPath().getParent().resolve("queue");
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (!Files.isDirectory(queue)) return;
+
+        device.logicalSectorSize = (int) readLong(queue.resolve("logical_block_size"), 512);
+        device.physicalSectorSize = (int) readLong(queue.resolve("physical_block_size"), device.logicalSectorSize);
+        device.rotational = readLong(queue.resolve("rotational"), 1) != 0;
+        device.queueDepth = (int) readLong(queue.resolve("nr_requests"), 0);
+        device.readAheadKb = (int) readLong(queue.resolve("read_ahead_kb"), 0);
+        device.ioCharacteristicsKnown = true;
+    }
+
+    // Disco físico que atende as leituras do caminho: partições e imagens levam ao disco inteiro (sda, nvme0n1)
+    static String physicalDeviceName(String path) {
+        String name = blockDeviceName(path);
+        if (name == null) return null;
+        try {
+            Path device = Paths.get("/sys/class/block", name);
+            if (Files.exists(device.resolve("partition"))) {
+                return device.toRealPath().getParent().getFileName().toString();
+            }
+        } catch (IOException e) {
+            // fica com o nome do próprio dispositivo
+        }
+        return name;
+    }
+
+    // Nome do dispositivo de bloco (sda, nvme0n1p2...) de um /dev/... ou do sistema de arquivos que contém o caminho
+    private static String blockDeviceName(String path) {
+        try {
+            Path target = Paths.get(path).toRealPath();
+            if (target.startsWith("/dev/")) {
+                return target.getFileName().toString();
+            }
+
+            String source = null;
+            int longest = -1;
+            for (String line : Files.readAllLines(Paths.get("/proc/self/mounts"), StandardCharsets.UTF_8)) {
+                String[] fields = line.split(" ");
+                if (fields.length < 2 || !fields[0].startsWith("/dev/")) continue;
+                Path mountPoint = Paths.get(fields[1].replace("\\040", " "));
+                if (target.startsWith(mountPoint) && mountPoint.getNameCount() > longest) {
+                    longest = mountPoint.getNameCount();
+                    source = fields[0];
+                }
+            }
+            return source != null ? Paths.get(source).toRealPath().getFileName().toString() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long readLong(Path file, long defaultValue) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // Mede a leitura sequencial em alguns tamanhos de bloco; cada tamanho lê uma região diferente
+    // do início do dispositivo para reduzir o efeito do cache do sistema
+    public static ReadBenchmark benchmark(String path, long bytesPerSize) {
+        int[] blockSizes = ReadBenchmark.BLOCK_SIZES;
+        double[] throughput = new double[blockSizes.length];
+
+        try (BlockSource source = BlockSource.open(Paths.get(path))) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(blockSizes[blockSizes.length - 1]);
+            long region = 0;
+
+            for (int i = 0; i < blockSizes.length; i++) {
+                long deadline = System.nanoTime() + ReadBenchmark.TIME_LIMIT_NANOS;
+                long start = System.nanoTime();
+                long read = 0;
+
+                while (read < bytesPerSize && System.nanoTime() < deadline) {
+                    buffer.clear().limit(blockSizes[i]);
+                    int n = source.read(buffer, region + read);
+                    if (n <= 0) break;
+                    read += n;
+                }
+
+                long elapsed = Math.max(1, System.nanoTime() - start);
+                throughput[i] = read / (1024.0 * 1024.0) / (elapsed / 1e9);
+                region += read;
+            }
+        } catch (IOException e) {
+            System.err.println("Erro no teste de leitura de " + path + ": " + e.getMessage());
+            return null;
+        }
+
+        return new ReadBenchmark(blockSizes, throughput);
+    }
+
+    public static class ReadBenchmark {
+        static final int[] BLOCK_SIZES = {64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024};
+        static final long TIME_LIMIT_NANOS = 500_000_000L;
+
+        private final int[] blockSizes;
+        private final double[] megabytesPerSecond;
+
+        ReadBenchmark(int[] blockSizes, double[] megabytesPerSecond) {
+            this.blockSizes = blockSizes.clone();
+            this.megabytesPerSecond = megabytesPerSecond.clone();
+        }
+
+        public int[] getBlockSizes() { return blockSizes.clone(); }
+        public double[] getMegabytesPerSecond() { return megabytesPerSecond.clone(); }
+
+        // Menor bloco que chega a 95% da melhor vazão: mais memória não compensa além disso
+        public int getBestBlockSize() {
+            double best = 0;
+            for (double value : megabytesPerSecond) best = Math.max(best, value);
+            for (int i = 0; i < blockSizes.length; i++) {
+                if (megabytesPerSecond[i] >= best * 0.95) return blockSizes[i];
+            }
+            return blockSizes[blockSizes.length - 1];
+        }
+
+        public double getBestThroughput() {
+            double best = 0;
+            for (double value : megabytesPerSecond) best = Math.max(best, value);
+            return best;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < blockSizes.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(String.format("%d KB: %.0f MB/s", blockSizes[i] / 1024, megabytesPerSecond[i]));
+            }
+            return sb.toString();
+        }
+    }
+
+    private static boolean isLinux() {
+        return System.getProperty("os.name").toLowerCase().contains("linux");
+    }
+
+    private void analyzePhysicalDrives(List<StorageDevice> found) {
         File[] roots = File.listRoots();
         for (File root : roots) {
             try {
@@ -63,7 +399,7 @@ public class DeviceAnalyzer {
                         root.getTotalSpace() - root.getFreeSpace(),
                         "NTFS/FAT32"
                 );
-                devices.add(device);
+                found.add(device);
             } catch (Exception e) {
                 System.err.println("Erro ao analisar drive físico: " + root + " - " + e.getMessage());
             }
@@ -83,12 +419,37 @@ public class DeviceAnalyzer {
     }
 
     public static class StorageDevice {
+        public enum DeviceType {
+            MOUNT_POINT("Ponto de Montagem"),
+            DISK("Disco Físico"),
+            PARTITION("Partição");
+
+            private final String description;
+
+            DeviceType(String description) {
+                this.description = description;
+            }
+
+            public String getDescription() { return description; }
+        }
+
         private String mountPoint;
         private String name;
         private long totalSpace;
         private long freeSpace;
         private long usedSpace;
         private String fileSystem;
+        private DeviceType type;
+        private boolean available;
+
+        // Características de E/S (sysfs no Linux); valores conservadores quando desconhecidas
+        private int logicalSectorSize = 512;
+        private int physicalSectorSize = 512;
+        private boolean rotational = true;
+        private int queueDepth;
+        private int readAheadKb;
+        private boolean ioCharacteristicsKnown;
+        private ReadBenchmark benchmark;
 
         public StorageDevice(String mountPoint, String name, long totalSpace,
                              long freeSpace, long usedSpace, String fileSystem) {
@@ -98,6 +459,22 @@ public class DeviceAnalyzer {
             this.freeSpace = freeSpace;
             this.usedSpace = usedSpace;
             this.fileSystem = fileSystem;
+            this.type = DeviceType.MOUNT_POINT;
+            this.available = true;
+        }
+
+        // Disco ou partição bruta: o espaço livre não se aplica, a varredura lê o dispositivo inteiro
+        static StorageDevice blockDevice(String path, String name, long size, DeviceType type) {
+            StorageDevice device = new StorageDevice(path, name, size, 0, size, "Dispositivo de Bloco");
+            device.type = type;
+            return device;
+        }
+
+        // Ponto de montagem que não respondeu dentro do tempo limite
+        static StorageDevice unavailable(String mountPoint) {
+            StorageDevice device = new StorageDevice(mountPoint, "Sem resposta", 0, 0, 0, "Desconhecido");
+            device.available = false;
+            return device;
         }
 
         // Getters
@@ -107,6 +484,18 @@ public class DeviceAnalyzer {
         public long getFreeSpace() { return freeSpace; }
         public long getUsedSpace() { return usedSpace; }
         public String getFileSystem() { return fileSystem; }
+        public DeviceType getType() { return type; }
+        public boolean isAvailable() { return available; }
+        public boolean isRawDevice() { return type != DeviceType.MOUNT_POINT; }
+        public int getLogicalSectorSize() { return logicalSectorSize; }
+        public int getPhysicalSectorSize() { return physicalSectorSize; }
+        public boolean isRotational() { return rotational; }
+        public int getQueueDepth() { return queueDepth; }
+        public int getReadAheadKb() { return readAheadKb; }
+        public boolean isIoCharacteristicsKnown() { return ioCharacteristicsKnown; }
+        public ReadBenchmark getBenchmark() { return benchmark; }
+
+        public void setBenchmark(ReadBenchmark benchmark) { this.benchmark = benchmark; }
 
         public double getUsagePercentage() {
             return totalSpace > 0 ? (double) usedSpace / totalSpace * 100 : 0;
@@ -0,0 +1,39 @@
+package engine;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Disco ou partição aberto diretamente; tamanho e setor lógico vêm do sistema (sysfs no Linux)
+class DeviceBlockSource extends ChannelBlockSource {
+    private final long deviceSize;
+
+    private DeviceBlockSource(Path path, FileChannel channel, DeviceAnalyzer.StorageDevice device) {
+        super(path, channel, Math.max(1, device.getLogicalSectorSize()));
+        this.deviceSize = device.getTotalSpace();
+    }
+
+    static DeviceBlockSource open(Path path) throws IOException {
+        return open(path, StandardOpenOption.READ);
+    }
+
+    static DeviceBlockSource openDirect(Path path) throws IOException {
+        return open(path, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+    }
+
+    private static DeviceBlockSource open(Path path, OpenOption... options) throws IOException {
+        FileChannel channel = FileChannel.open(path, options);
+        return new DeviceBlockSource(path, channel, DeviceAnalyzer.describe(path.toString()));
+    }
+
+    // Alguns dispositivos de blocos informam tamanho 0 pelo canal
+    @Override
+    public long size() throws IOException {
+        long size = super.size();
+        return size > 0 ? size : deviceSize;
+    }
+}
@@ -0,0 +1,121 @@
+package engine;
+
+import utils.Checksum;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.*;
+
+// Aquisição em passada única: os mesmos buffers lidos pela varredura são gravados na imagem e
+// entram no hash do dispositivo inteiro numa thread própria, enquanto o scanner procura assinaturas.
+// Terminada a aquisição, preview e recuperação passam a ler da imagem e não do dispositivo original.
+public class DeviceImager implements AutoCloseable {
+    // Dispositivo (caminho normalizado) -> imagem completa adquirida nesta execução
+    private static final Map<String, String> ACQUIRED = new ConcurrentHashMap<>();
+
+    private final Path image;
+    private final FileChannel channel;
+    private final Checksum checksum;
+    private final ExecutorService writer;
+    private volatile long bytesWritten;
+    private long nextPosition;
+
+    DeviceImager(Path image, Checksum.Algorithm algorithm) throws IOException {
+        this.image = image;
+        Path parent = image.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(image, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.checksum = new Checksum(algorithm);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "DeviceImager");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Fonte que deve ser lida para o dispositivo: a imagem adquirida, se houver, ou o próprio dispositivo
+    public static String resolveSource(String devicePath) {
+        if (devicePath == null) return null;
+        String image = ACQUIRED.get(normalize(devicePath));
+        return image != null && Files.exists(Paths.get(image)) ? image : devicePath;
+    }
+
+    public static String getAcquiredImage(String devicePath) {
+        return ACQUIRED.get(normalize(devicePath));
+    }
+
+    private static String normalize(String devicePath) {
+        return Paths.get(devicePath).toAbsolutePath().normalize().toString();
+    }
+
+    // Grava e soma o bloco em segundo plano; o buffer não pode ser reaproveitado até o Future concluir.
+    // Blocos chegam em ordem: o hash é o do dispositivo inteiro (setores ilegíveis entram zerados).
+    Future<?> write(ScanReader.Chunk chunk) {
+        return writer.submit(() -> {
+            if (chunk.position != nextPosition) {
+                throw new IOException("Bloco fora de ordem na aquisição: " + chunk.position);
+            }
+            ByteBuffer data = ByteBuffer.wrap(chunk.data, 0, chunk.length);
+            checksum.update(data);
+            while (data.hasRemaining()) {
+                channel.write(data, chunk.position + data.position());
+            }
+            nextPosition += chunk.length;
+            bytesWritten += chunk.length;
+            return null;
+        });
+    }
+
+    static void await(Future<?> pending) throws IOException, InterruptedException {
+        try {
+            pending.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    long getBytesWritten() { return bytesWritten; }
+    Path getImage() { return image; }
+
+    // Fecha a imagem completa, grava o hash ao lado (formato do sha256sum/md5sum) e passa a usá-la
+    String complete(String devicePath) throws IOException {
+        writer.shutdown();
+        channel.force(true);
+        channel.close();
+
+        String digest = checksum.hexDigest();
+        String algorithm = checksum.getAlgorithm().getDisplayName().toLowerCase().replace("-", "");
+        Path sidecar = image.resolveSibling(image.getFileName() + "." + algorithm);
+        Files.write(sidecar, (digest + "  " + image.getFileName() + "\n").getBytes(StandardCharsets.UTF_8));
+
+        ACQUIRED.put(normalize(devicePath), image.toAbsolutePath().toString());
+        return digest;
+    }
+
+    // Aquisição interrompida: a imagem parcial fica no disco, mas não substitui o dispositivo
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (channel.isOpen()) {
+                channel.close();
+                System.err.println("Aquisição incompleta, imagem parcial em " + image
+                        + " (" + bytesWritten + " bytes)");
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar imagem " + image + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Inventário de dispositivos compartilhado pelas telas: a descoberta roda em segundo plano,
+// o resultado fica em cache e só é refeito quando alguém pede uma atualização
+public class DeviceInventory {
+    private static volatile DeviceInventory instance;
+
+    private final DeviceAnalyzer analyzer;
+    private final ExecutorService discovery;
+    private final List<InventoryListener> listeners;
+    private volatile List<DeviceAnalyzer.StorageDevice> devices;
+    private volatile long lastRefresh;
+    private CompletableFuture<List<DeviceAnalyzer.StorageDevice>> pendingRefresh;
+
+    private DeviceInventory() {
+        this.analyzer = new DeviceAnalyzer();
+        this.discovery = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "DeviceInventory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.devices = Collections.emptyList();
+        this.lastRefresh = 0;
+    }
+
+    public static DeviceInventory getInstance() {
+        if (instance == null) {
+            synchronized (DeviceInventory.class) {
+                if (instance == null) {
+                    instance = new DeviceInventory();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Última lista conhecida, sem bloquear (vazia antes da primeira descoberta)
+    public List<DeviceAnalyzer.StorageDevice> getDevices() {
+        return devices;
+    }
+
+    public boolean isLoaded() {
+        return lastRefresh > 0;
+    }
+
+    public long getLastRefresh() { return lastRefresh; }
+
+    public void setProbeTimeout(long millis) {
+        analyzer.setProbeTimeout(millis);
+    }
+
+    // Pedidos simultâneos compartilham a mesma descoberta em andamento
+    public synchronized CompletableFuture<List<DeviceAnalyzer.StorageDevice>> refresh() {
+        if (pendingRefresh != null && !pendingRefresh.isDone()) {
+            return pendingRefresh;
+        }
+        pendingRefresh = CompletableFuture.supplyAsync(() -> {
+            List<DeviceAnalyzer.StorageDevice> found =
+                    Collections.unmodifiableList(new ArrayList<>(analyzer.analyzeSystemDevices()));
+            devices = found;
+            lastRefresh = System.currentTimeMillis();
+            for (InventoryListener listener : listeners) {
+                listener.onDevicesUpdated(found);
+            }
+            return found;
+        }, discovery);
+        return pendingRefresh;
+    }
+
+    // Descobre apenas se ainda não houver lista em cache
+    public CompletableFuture<List<DeviceAnalyzer.StorageDevice>> load() {
+        return isLoaded() ? CompletableFuture.completedFuture(devices) : refresh();
+    }
+
+    public DeviceAnalyzer.StorageDevice getDeviceByPath(String path) {
+        for (DeviceAnalyzer.StorageDevice device : devices) {
+            if (device.getMountPoint().equals(path)) return device;
+        }
+        return null;
+    }
+
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Chamado na thread de descoberta; telas devem repassar para a EDT
+    public interface InventoryListener {
+        void onDevicesUpdated(List<DeviceAnalyzer.StorageDevice> devices);
+    }
+}
@@ -0,0 +1,163 @@
+package engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Divide um recurso limitado (threads de CPU ou a fila de um disco) entre tarefas por escalonamento
+// proporcional: cada uso avança o tempo virtual da tarefa na razão inversa do seu peso e a próxima
+// vaga vai para quem está mais atrás. Tarefas pausadas não recebem vagas.
+// Com fatia (disco rotacional), quem está com o disco fica com ele por sliceBytes e, entre duas
+// leituras suas, espera-se um instante pelo próximo pedido antes de passar a vez: a cabeça de
+// leitura não fica indo e voltando entre regiões distantes.
+final class FairShareGate {
+    private static final long ANTICIPATION_NANOS = 8_000_000L; // como o slice_idle do CFQ
+    private static final long IDLE_NANOS = 100_000_000L;       // sem usar o recurso por mais que isso = ociosa
+
+    interface Participant {
+        int getWeight();
+        boolean isPaused();
+        boolean isCancelled();
+    }
+
+    private final int permits;
+    private final long sliceBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Participant, Share> shares = new HashMap<>();
+    private int available;
+    private double virtualTime;
+    private Share sliceOwner;
+    private long sliceUsed;
+    private long sliceReleasedAt;
+
+    FairShareGate(int permits, long sliceBytes) {
+        this.permits = Math.max(1, permits);
+        this.sliceBytes = sliceBytes;
+        this.available = this.permits;
+    }
+
+    int getPermits() { return permits; }
+
+    // Tarefa cancelada passa direto: só precisa chegar ao ponto em que percebe o cancelamento
+    void acquire(Participant participant) throws InterruptedException {
+        lock.lock();
+        try {
+            Share share = shares.computeIfAbsent(participant, Share::new);
+            // Volta de um período ocioso: não acumula crédito sobre quem continuou.
+            // Entre duas leituras seguidas a tarefa não está esperando, mas também não está ociosa.
+            boolean idle = share.waiting == 0 && share.holding == 0
+                    && System.nanoTime() - share.lastUsed > IDLE_NANOS;
+            share.waiting++;
+            try {
+                while (!participant.isCancelled()) {
+                    if (participant.isPaused()) idle = true; // idem para quem ficou pausada
+                    long wait = waitNanos(share);
+                    if (wait == 0) break;
+                    if (wait < 0) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(wait);
+                    }
+                }
+            } finally {
+                share.waiting--;
+            }
+            if (idle) share.pass = Math.max(share.pass, virtualTime);
+            available--;
+            share.holding++;
+            virtualTime = Math.max(virtualTime, share.pass);
+            if (available > 0) {
+                changed.signalAll(); // quem esperava atrás desta tarefa pode ficar com a vaga seguinte
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(Participant participant, long bytes) {
+        lock.lock();
+        try {
+            Share share = shares.get(participant);
+            if (share == null) return;
+            share.holding--;
+            available++;
+            share.lastUsed = System.nanoTime();
+            share.pass += (double) Math.max(1, bytes) / Math.max(1, participant.getWeight());
+
+            if (sliceBytes > 0) {
+                if (sliceOwner == share) {
+                    sliceUsed += bytes;
+                    if (sliceUsed >= sliceBytes) sliceOwner = null; // fatia esgotada: vale o tempo virtual
+                } else {
+                    sliceOwner = share;
+                    sliceUsed = bytes;
+                }
+                sliceReleasedAt = System.nanoTime();
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Tarefa terminou: sai da disputa e libera quem esperava pela fatia dela
+    void leave(Participant participant) {
+        lock.lock();
+        try {
+            Share share = shares.remove(participant);
+            if (share != null && sliceOwner == share) sliceOwner = null;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Pausa, retomada, cancelamento ou nova prioridade mudam quem pode seguir
+    void wakeUp() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 0: pode seguir; negativo: esperar um sinal; positivo: esperar no máximo esse tempo
+    private long waitNanos(Share share) {
+        if (share.participant.isPaused() || available <= 0) return -1;
+
+        Share owner = sliceOwner;
+        if (owner != null && owner != share && owner.isActive()) {
+            if (owner.waiting > 0) return -1;
+            long idle = System.nanoTime() - sliceReleasedAt;
+            if (owner.holding == 0 && idle < ANTICIPATION_NANOS) return ANTICIPATION_NANOS - idle;
+        }
+        if (owner == share) return 0;
+
+        for (Share other : shares.values()) {
+            if (other != share && other.waiting > 0 && other.isActive() && other.pass < share.pass) {
+                return -1;
+            }
+        }
+        return 0;
+    }
+
+    private static final class Share {
+        final Participant participant;
+        double pass;
+        int waiting;
+        int holding;
+        long lastUsed;
+
+        Share(Participant participant) {
+            this.participant = participant;
+            this.lastUsed = System.nanoTime() - IDLE_NANOS - 1;
+        }
+
+        boolean isActive() {
+            return !participant.isPaused() && !participant.isCancelled();
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package engine;
 
+import models.RecoveredFile;
+import models.ScanConfig;
+import models.ScanSession;
+import utils.Checksum;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileRecoveryEngine {
@@ -24,85 +32,376 @@ public class FileRecoveryEngine {
     );
 
     private AtomicInteger filesRecovered;
+    private AtomicInteger knownFilesSkipped;
     private boolean isScanning;
     private RecoveryProgressListener progressListener;
+    private volatile ProgressCoalescer progressEvents;
+    private int progressUsers; // operações entre startProgressEvents e stopProgressEvents (guardado por this)
+    private ScanConfig scanConfig;
+    private KnownFileFilter knownFileFilter;
+    private String knownFileFilterSource;
+    private volatile ScanStrategy scanStrategy;
+    private final IoRateLimiter rateLimiter;
+    private volatile BadRangeMap badRanges;
+    private volatile String acquisitionDigest;
+    private volatile String lastError;
+    private volatile ScanControl scanControl;
 
     public FileRecoveryEngine() {
         this.filesRecovered = new AtomicInteger(0);
+        this.knownFilesSkipped = new AtomicInteger(0);
         this.isScanning = false;
+        this.rateLimiter = new IoRateLimiter();
     }
 
     public void setProgressListener(RecoveryProgressListener listener) {
         this.progressListener = listener;
+        replaceProgressEvents(listener != null ? new ProgressCoalescer(listener, getProgressInterval()) : null);
+    }
+
+    // Troca no meio de uma varredura: o coalescedor antigo entrega o pendente e para, o novo já começa ativo
+    private synchronized void replaceProgressEvents(ProgressCoalescer next) {
+        ProgressCoalescer previous = progressEvents;
+        progressEvents = next;
+        if (progressUsers > 0) {
+            if (previous != null) previous.stop();
+            if (next != null) next.start();
+        }
+    }
+
+    private long getProgressInterval() {
+        return scanConfig != null ? scanConfig.getProgressIntervalMs() : ProgressCoalescer.DEFAULT_INTERVAL_MS;
+    }
+
+    public void setScanConfig(ScanConfig config) {
+        this.scanConfig = config;
+        // Só recria o coalescedor se o intervalo de progresso mudou
+        ProgressCoalescer events = progressEvents;
+        if (events != null && events.getIntervalMillis() != ProgressCoalescer.normalizeInterval(getProgressInterval())) {
+            replaceProgressEvents(new ProgressCoalescer(progressListener, getProgressInterval()));
+        }
+        if (config != null) {
+            rateLimiter.setBurstSeconds(config.getReadBurstSeconds());
+            rateLimiter.setLimits(config.getReadLimitMegabytesPerSecond(), config.getReadLimitIops());
+        }
+    }
+
+    // Agendador de várias varreduras: dá a vez no disco físico e a parcela de CPU desta tarefa
+    void setScanControl(ScanControl control) { this.scanControl = control; }
+
+    // Limite de leitura da varredura; pode ser ajustado a qualquer momento, inclusive durante a varredura
+    public IoRateLimiter getRateLimiter() { return rateLimiter; }
+
+    // Estratégia de leitura usada na última varredura (null antes da primeira)
+    public ScanStrategy getScanStrategy() { return scanStrategy; }
+
+    // Hash do dispositivo inteiro da última aquisição completa (null sem modo de imagem)
+    public String getAcquisitionDigest() { return acquisitionDigest; }
+
+    // Regiões ilegíveis do último dispositivo varrido (null antes da primeira varredura)
+    public BadRangeMap getBadRanges() { return badRanges; }
+
+    // Motivo da última varredura ter parado antes do fim (null se terminou normalmente)
+    public String getLastError() { return lastError; }
+
+    // Mapa persistente de setores danificados: um arquivo por dispositivo no diretório de saída
+    public Path getBadRangeMapPath(String devicePath) {
+        String outputDirectory = scanConfig != null ? scanConfig.getOutputDirectory() : new ScanConfig().getOutputDirectory();
+        String name = Paths.get(devicePath).toAbsolutePath().normalize().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        return Paths.get(outputDirectory, "badsectors", name + ".map");
+    }
+
+    private int getReadRetries() {
+        return scanConfig != null ? scanConfig.getReadRetries() : new ScanConfig().getReadRetries();
     }
 
     public List<RecoveredFile> scanForDeletedFiles(String devicePath, Set<String> fileTypes) {
+        return scanForDeletedFiles(devicePath, fileTypes, null);
+    }
+
+    // Varredura de uma sessão: a estratégia de leitura escolhida fica registrada nela
+    public List<RecoveredFile> scanForDeletedFiles(ScanSession session, Set<String> fileTypes) {
+        return scanForDeletedFiles(session.getDevicePath(), fileTypes, session);
+    }
+
+    private List<RecoveredFile> scanForDeletedFiles(String devicePath, Set<String> fileTypes, ScanSession session) {
         List<RecoveredFile> recoveredFiles = new ArrayList<>();
         isScanning = true;
         filesRecovered.set(0);
+        knownFilesSkipped.set(0);
+        ScanRegionFeed.ScanPublisher regions = null;
+        BadRangeMap badMap = null;
+        lastError = null;
+        startProgressEvents();
 
         try {
             Path device = Paths.get(devicePath);
-            if (!Files.exists(device)) {
+            if (!BlockSource.exists(device)) {
                 throw new IOException("Dispositivo não encontrado: " + devicePath);
             }
 
-            long totalSpace = Files.getFileStore(device).getTotalSpace();
+            // Tamanho da fonte em si (imagem, conjunto de segmentos ou dispositivo), não do sistema de arquivos que a contém.
+            // Imagem gzip ainda sem índice só tem uma estimativa: a leitura segue até o fim real, e é
+            // esta própria passada que registra os pontos de controle
+            long totalSpace;
+            boolean sizeExact;
+            try (BlockSource source = BlockSource.open(device)) {
+                totalSpace = source.size();
+                sizeExact = source.isSizeExact();
+            }
+            long readEnd = sizeExact ? totalSpace : Long.MAX_VALUE;
             long scannedBytes = 0;
+            KnownFileFilter knownFiles = getKnownFileFilter();
+            ScanRegionFeed feed = ScanRegionFeed.forDevice(devicePath);
+            regions = feed.newScanPublisher();
+            List<PendingFile> pendingFiles = new ArrayList<>();
+
+            // Buffer, alinhamento e leituras em voo vêm das características do dispositivo;
+            // as leituras passam pelo cache de blocos (preview e recuperação logo após vêm da memória)
+            ScanStrategy strategy = ScanStrategy.forDevice(devicePath, true);
+            scanStrategy = strategy;
+            if (session != null) session.setScanStrategy(strategy.toString());
+
+            // Setores ilegíveis não interrompem a varredura: ficam no mapa persistente do dispositivo
+            badMap = BadRangeMap.load(getBadRangeMapPath(devicePath));
+            badRanges = badMap;
+
+            boolean directIo = scanConfig != null && scanConfig.shouldUseDirectIo();
+            boolean imaging = scanConfig != null && scanConfig.isImagingEnabled();
+            acquisitionDigest = null;
+            try (ScanReader reader = new ScanReader(device, 0, readEnd, strategy, directIo, rateLimiter);
+                 DeviceImager imager = imaging
+                         ? new DeviceImager(Paths.get(scanConfig.getImageOutputPath()), scanConfig.getChecksumAlgorithm())
+                         : null) {
+                reader.setBadRangeMap(badMap);
+                reader.setRetries(getReadRetries());
+                ScanControl control = scanControl;
+                reader.setControl(control);
+
+                ScanReader.Chunk chunk;
+                boolean reachedEnd = false;
+                while (isScanning) {
+                    chunk = reader.next();
+                    if (chunk == null) {
+                        reachedEnd = true;
+                        break;
+                    }
+                    byte[] buffer = chunk.data;
+                    int bytesRead = chunk.length;
+                    long filePointer = chunk.position;
+
+                    // Modo de imagem: gravação e hash do mesmo buffer correm junto com a busca de assinaturas
+                    Future<?> imageWrite = imager != null ? imager.write(chunk) : null;
+
+                    // Mapa ao vivo: a verificação de zeros só roda se houver alguém exibindo
+                    if (feed.isSubscribed()) {
+                        regions.scanned(filePointer, bytesRead, isZero(buffer, bytesRead));
+                    }
+                    if (chunk.badRanges != null) {
+                        for (BadRangeMap.Range bad : chunk.badRanges) {
+                            regions.badSector(bad.getStart(), bad.getLength());
+                        }
+                    }
+
+                    // Com agendador, a busca de assinaturas espera a vez desta tarefa nas threads de CPU
+                    if (control != null) control.beginMatch();
+                    try {
+                        // Continua o hash dos candidatos que começaram em buffers anteriores
+                        if (!pendingFiles.isEmpty()) {
+                            feedPendingFiles(pendingFiles, buffer, bytesRead, recoveredFiles);
+                        }
+
+                        // Verificar assinaturas de arquivo
+                        for (String signature : COMMON_SIGNATURES) {
+                            List<Long> positions = findSignaturePositions(buffer, bytesRead, signature, filePointer);
+                            for (Long position : positions) {
+                                RecoveredFile file = attemptFileRecovery(device, position, signature, fileTypes);
+                                if (file == null) continue;
+                                regions.hit(position);
+
+                                KnownFileFilter.CandidateHash hash = knownFiles != null
+                                        ? knownFiles.startCandidate(file.getFileSize()) : null;
+                                if (hash == null) {
+                                    acceptFile(file, recoveredFiles);
+                                    continue;
+                                }
 
-            // Simulação de varredura do dispositivo
-            try (RandomAccessFile raf = new RandomAccessFile(devicePath, "r")) {
-                byte[] buffer = new byte[8192];
-                long filePointer = 0;
-
-                while (isScanning && filePointer < totalSpace) {
-                    raf.seek(filePointer);
-                    int bytesRead = raf.read(buffer);
-                    if (bytesRead == -1) break;
-
-                    // Verificar assinaturas de arquivo
-                    for (String signature : COMMON_SIGNATURES) {
-                        List<Long> positions = findSignaturePositions(buffer, signature, filePointer);
-                        for (Long position : positions) {
-                            RecoveredFile file = attemptFileRecovery(raf, position, signature, fileTypes);
-                            if (file != null) {
-                                recoveredFiles.add(file);
-                                filesRecovered.incrementAndGet();
-
-                                if (progressListener != null) {
-                                    progressListener.onFileFound(file);
+                                PendingFile pending = new PendingFile(file, hash);
+                                int offset = (int) (position - filePointer);
+                                if (pending.hash.update(buffer, offset, bytesRead - offset)) {
+                                    resolvePendingFile(pending, recoveredFiles);
+                                } else {
+                                    pendingFiles.add(pending);
                                 }
                             }
                         }
+                    } finally {
+                        if (control != null) control.endMatch(bytesRead);
                     }
 
                     scannedBytes += bytesRead;
-                    filePointer += bytesRead;
 
-                    if (progressListener != null) {
-                        int progress = (int) ((scannedBytes * 100) / totalSpace);
-                        progressListener.onProgressUpdate(progress, scannedBytes, totalSpace);
+                    // O buffer volta para o leitor na próxima chamada: a gravação precisa ter terminado
+                    if (imageWrite != null) {
+                        DeviceImager.await(imageWrite);
                     }
 
-                    // Pequena pausa para não sobrecarregar o sistema
-                    Thread.sleep(1);
+                    ProgressCoalescer events = progressEvents;
+                    if (events != null) {
+                        long expected = Math.max(totalSpace, scannedBytes);
+                        int progress = (int) ((scannedBytes * 100) / expected);
+                        events.progress(progress, scannedBytes, expected);
+                    }
+                }
+
+                // Só a imagem completa substitui o dispositivo nas leituras seguintes
+                if (imager != null && reachedEnd) {
+                    acquisitionDigest = imager.complete(devicePath);
                 }
             }
 
+            // Fim do dispositivo: candidatos cujo bloco inicial passa do fim não podem ser conhecidos
+            for (PendingFile pending : pendingFiles) {
+                acceptFile(pending.file, recoveredFiles);
+            }
+
         } catch (Exception e) {
+            lastError = e.getMessage() != null ? e.getMessage() : e.toString();
             System.err.println("Erro durante a recuperação: " + e.getMessage());
         } finally {
             isScanning = false;
+            if (regions != null) {
+                regions.finish();
+            }
+            saveBadRanges(badMap);
+            stopProgressEvents();
         }
 
         return recoveredFiles;
     }
 
-    private List<Long> findSignaturePositions(byte[] buffer, String signature, long baseOffset) {
+    // Segunda passada: relê só as regiões do mapa de setores danificados, setor a setor.
+    // O que volta a ser legível completa a imagem adquirida (se houver) e passa pela busca de
+    // assinaturas antes de sair do mapa; os arquivos encontrados chegam pelo listener.
+    // Retorna quantos bytes voltaram a ser legíveis.
+    public long retryBadRanges(String devicePath) {
+        // Sem a lista da varredura original, procura todos os tipos
+        return retryBadRanges(devicePath, Collections.emptySet());
+    }
+
+    // Mesmos tipos e mesmo filtro de arquivos conhecidos da varredura que gerou o mapa
+    public long retryBadRanges(String devicePath, Set<String> fileTypes) {
+        BadRangeMap badMap = null;
+        long recoveredBytes = 0;
+        String image = DeviceImager.getAcquiredImage(devicePath);
+        startProgressEvents();
+        try {
+            Path device = Paths.get(devicePath);
+            badMap = BadRangeMap.load(getBadRangeMapPath(devicePath));
+            badRanges = badMap;
+            if (badMap.isEmpty()) return 0;
+
+            ScanRegionFeed feed = ScanRegionFeed.forDevice(devicePath);
+            ScanStrategy strategy = ScanStrategy.forDevice(devicePath, false);
+            List<BadRangeMap.Range> ranges = badMap.getRanges();
+            long end = ranges.get(ranges.size() - 1).getEnd();
+
+            // A leitura é sempre do dispositivo; a imagem só recebe os setores recuperados
+            try (ScanReader reader = new ScanReader(device, 0, end, strategy);
+                 RetryScan sink = new RetryScan(device, image != null && Files.exists(Paths.get(image)) ? Paths.get(image) : null,
+                         fileTypes, getKnownFileFilter())) {
+                reader.setRetries(getReadRetries());
+                for (BadRangeMap.Range range : ranges) {
+                    for (BadRangeMap.Range recovered : reader.retryRange(range.getStart(), range.getEnd(), badMap, sink)) {
+                        recoveredBytes += recovered.getLength();
+                        feed.publish(recovered.getStart(), recovered.getLength(), BlockVisualizer.BlockType.SCANNED);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao reler setores danificados: " + e.getMessage());
+        } finally {
+            if (image != null && recoveredBytes > 0) {
+                // Blocos zerados da imagem podem estar no cache
+                BlockCache.getInstance().invalidate(Paths.get(image));
+            }
+            saveBadRanges(badMap);
+            stopProgressEvents();
+        }
+        return recoveredBytes;
+    }
+
+    private void saveBadRanges(BadRangeMap badMap) {
+        if (badMap == null || (badMap.isEmpty() && !Files.exists(badMap.getFile()))) return;
+        try {
+            badMap.save();
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar mapa de setores danificados: " + e.getMessage());
+        }
+    }
+
+    private void acceptFile(RecoveredFile file, List<RecoveredFile> recoveredFiles) {
+        recoveredFiles.add(file);
+        filesRecovered.incrementAndGet();
+
+        if (progressEvents != null) {
+            progressEvents.fileFound(file);
+        }
+    }
+
+    private void resolvePendingFile(PendingFile pending, List<RecoveredFile> recoveredFiles) {
+        if (pending.hash.isKnown()) {
+            // Arquivo de sistema/aplicativo conhecido: descartado antes de recuperação e preview
+            knownFilesSkipped.incrementAndGet();
+        } else {
+            acceptFile(pending.file, recoveredFiles);
+        }
+    }
+
+    private void feedPendingFiles(List<PendingFile> pendingFiles, byte[] buffer, int bytesRead,
+                                  List<RecoveredFile> recoveredFiles) {
+        Iterator<PendingFile> it = pendingFiles.iterator();
+        while (it.hasNext()) {
+            PendingFile pending = it.next();
+            if (pending.hash.update(buffer, 0, bytesRead)) {
+                it.remove();
+                resolvePendingFile(pending, recoveredFiles);
+            }
+        }
+    }
+
+    // Carrega (uma vez por lista) o filtro de hashes conhecidos quando ignoreSystemFiles está ativo
+    private KnownFileFilter getKnownFileFilter() {
+        if (scanConfig == null || !scanConfig.shouldIgnoreSystemFiles()) return null;
+
+        String hashList = scanConfig.getKnownFileHashList();
+        if (hashList == null || hashList.isEmpty()) return null;
+
+        if (knownFileFilter == null || !hashList.equals(knownFileFilterSource)) {
+            try {
+                knownFileFilter = KnownFileFilter.load(Paths.get(hashList));
+                knownFileFilterSource = hashList;
+            } catch (IOException e) {
+                System.err.println("Erro ao carregar lista de hashes conhecidos: " + e.getMessage());
+                knownFileFilter = null;
+                knownFileFilterSource = null;
+            }
+        }
+        return knownFileFilter;
+    }
+
+    private static boolean isZero(byte[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] != 0) return false;
+        }
+        return true;
+    }
+
+    private List<Long> findSignaturePositions(byte[] buffer, int length, String signature, long baseOffset) {
         List<Long> positions = new ArrayList<>();
         byte[] sigBytes = hexStringToByteArray(signature);
 
-        for (int i = 0; i <= buffer.length - sigBytes.length; i++) {
+        for (int i = 0; i <= length - sigBytes.length; i++) {
             boolean match = true;
             for (int j = 0; j < sigBytes.length; j++) {
                 if (buffer[i + j] != sigBytes[j]) {
@@ -118,7 +417,7 @@ public class FileRecoveryEngine {
         return positions;
     }
 
-    private RecoveredFile attemptFileRecovery(RandomAccessFile raf, long startPosition,
+    private RecoveredFile attemptFileRecovery(Path device, long startPosition,
                                               String signature, Set<String> fileTypes) {
         try {
             String fileExtension = getFileExtension(signature);
@@ -128,10 +427,10 @@ public class FileRecoveryEngine {
             }
 
             // Estimar tamanho do arquivo (simulação)
-            long estimatedSize = estimateFileSize(raf, startPosition, signature);
+            long estimatedSize = estimateFileSize(device, startPosition, signature);
 
             RecoveredFile file = new RecoveredFile(
-                    "recovered_" + System.currentTimeMillis() + "." + fileExtension,
+                    String.format("recovered_%012X.%s", startPosition, fileExtension),
                     startPosition,
                     estimatedSize,
                     fileExtension.toUpperCase(),
@@ -146,7 +445,7 @@ public class FileRecoveryEngine {
         }
     }
 
-    private long estimateFileSize(RandomAccessFile raf, long startPosition, String signature) {
+    private long estimateFileSize(Path device, long startPosition, String signature) {
         // Simulação - na implementação real isso seria mais complexo
         switch (signature) {
             case "FFD8FF": return 1024 * 1024; // ~1MB para JPEG
@@ -186,34 +485,77 @@ public class FileRecoveryEngine {
     }
 
     public boolean recoverFile(RecoveredFile file, String outputPath, String devicePath) {
-        try (RandomAccessFile raf = new RandomAccessFile(devicePath, "r");
-             FileOutputStream fos = new FileOutputStream(outputPath + File.separator + file.getFileName())) {
+        startProgressEvents();
+        try (FileSaver saver = new FileSaver(devicePath, 1);
+             DedupStore store = openDedupStore(outputPath)) {
+            configureSaver(saver, store);
+            return saver.saveFile(file, outputPath);
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir dispositivo para recuperação: " + e.getMessage());
+            file.setRecoveryStatus(RecoveredFile.RecoveryStatus.FAILED);
+            return false;
+        } finally {
+            stopProgressEvents();
+        }
+    }
+
+    public int recoverFiles(List<RecoveredFile> files, String outputPath, String devicePath) {
+        startProgressEvents();
+        try (FileSaver saver = new FileSaver(devicePath);
+             DedupStore store = openDedupStore(outputPath)) {
+            configureSaver(saver, store);
+            return saver.saveAll(files, outputPath);
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir dispositivo para recuperação: " + e.getMessage());
+            return 0;
+        } finally {
+            stopProgressEvents();
+        }
+    }
+
+    // Varredura, recuperação e releitura podem se sobrepor no mesmo motor: a ProgressCoalescer
+    // compartilhada só para quando a última delas termina
+    private synchronized void startProgressEvents() {
+        if (progressUsers++ == 0 && progressEvents != null) progressEvents.start();
+    }
 
-            raf.seek(file.getStartPosition());
-            byte[] buffer = new byte[8192];
-            long bytesRemaining = file.getFileSize();
+    private synchronized void stopProgressEvents() {
+        if (--progressUsers == 0 && progressEvents != null) progressEvents.stop();
+    }
 
-            while (bytesRemaining > 0 && isScanning) {
-                int bytesToRead = (int) Math.min(buffer.length, bytesRemaining);
-                int bytesRead = raf.read(buffer, 0, bytesToRead);
-                if (bytesRead == -1) break;
+    private DedupStore openDedupStore(String outputPath) throws IOException {
+        if (scanConfig == null || !scanConfig.shouldDeduplicateOutput()) {
+            return null;
+        }
+        return new DedupStore(outputPath, 1_000_000);
+    }
 
-                fos.write(buffer, 0, bytesRead);
-                bytesRemaining -= bytesRead;
+    private void configureSaver(FileSaver saver, DedupStore store) {
+        saver.setProgressListener(createSaveListener());
+        saver.setDedupStore(store);
+        // Checksum calculado durante a gravação: verificar não custa uma nova leitura do arquivo
+        if (scanConfig != null && scanConfig.shouldVerifyChecksums()) {
+            saver.setChecksumAlgorithm(scanConfig.getChecksumAlgorithm());
+        }
+    }
 
-                if (progressListener != null) {
-                    progressListener.onRecoveryProgress(file,
-                            (int) ((file.getFileSize() - bytesRemaining) * 100 / file.getFileSize()));
+    private FileSaver.SaveProgressListener createSaveListener() {
+        return new FileSaver.SaveProgressListener() {
+            @Override
+            public void onFileProgress(RecoveredFile file, long bytesWritten, long totalBytes) {
+                if (progressEvents != null && totalBytes > 0) {
+                    progressEvents.recoveryProgress(file, (int) (bytesWritten * 100 / totalBytes));
                 }
             }
 
-            file.setRecoveryStatus(RecoveredFile.RecoveryStatus.RECOVERED);
-            return true;
+            @Override
+            public void onFileSaved(RecoveredFile file, boolean success) {
+            }
 
-        } catch (Exception e) {
-            file.setRecoveryStatus(RecoveredFile.RecoveryStatus.FAILED);
-            return false;
-        }
+            @Override
+            public void onAggregateProgress(int filesDone, int totalFiles, long bytesDone, long totalBytes) {
+            }
+        };
     }
 
     public void stopScanning() {
@@ -224,9 +566,147 @@ public class FileRecoveryEngine {
         return filesRecovered.get();
     }
 
+    public int getKnownFilesSkippedCount() {
+        return knownFilesSkipped.get();
+    }
+
+    // Setores recuperados pela releitura: gravados na imagem adquirida e varridos em sequências
+    // contíguas, com os últimos bytes da janela anterior para assinaturas que cruzam a divisão
+    private final class RetryScan implements ScanReader.SectorSink, Closeable {
+        private static final int WINDOW_SIZE = 1024 * 1024;
+
+        private final Path device;
+        private final FileChannel image;
+        private final Set<String> fileTypes;
+        private final KnownFileFilter knownFiles;
+        private final byte[] window;
+        private final int overlap;
+        private final List<RecoveredFile> found = new ArrayList<>();
+        private long windowStart;
+        private long newDataStart; // o que vem antes já foi varrido
+        private int filled;
+
+        RetryScan(Path device, Path image, Set<String> fileTypes, KnownFileFilter knownFiles) throws IOException {
+            this.device = device;
+            this.image = image != null ? FileChannel.open(image, StandardOpenOption.WRITE) : null;
+            this.fileTypes = fileTypes;
+            this.knownFiles = knownFiles;
+            int longest = 0;
+            for (String signature : COMMON_SIGNATURES) {
+                longest = Math.max(longest, signature.length() / 2);
+            }
+            this.overlap = longest - 1;
+            this.window = new byte[WINDOW_SIZE + overlap];
+        }
+
+        @Override
+        public void accept(long position, byte[] data, int length) throws IOException {
+            if (image != null) {
+                ByteBuffer source = ByteBuffer.wrap(data, 0, length);
+                while (source.hasRemaining()) {
+                    image.write(source, position + source.position());
+                }
+            }
+
+            if (filled > 0 && windowStart + filled != position) {
+                scanWindow();
+                filled = 0;
+            }
+            if (filled == 0) {
+                windowStart = position;
+                newDataStart = position;
+            }
+            int copied = 0;
+            while (copied < length) {
+                if (filled == window.length) {
+                    scanWindow();
+                    int keep = Math.min(overlap, filled);
+                    System.arraycopy(window, filled - keep, window, 0, keep);
+                    windowStart += filled - keep;
+                    newDataStart = windowStart + keep;
+                    filled = keep;
+                }
+                int count = Math.min(length - copied, window.length - filled);
+                System.arraycopy(data, copied, window, filled, count);
+                filled += count;
+                copied += count;
+            }
+        }
+
+        // Só conta assinaturas que terminam em dados novos: as outras a janela anterior já achou
+        private void scanWindow() {
+            for (String signature : COMMON_SIGNATURES) {
+                int signatureLength = signature.length() / 2;
+                for (Long position : findSignaturePositions(window, filled, signature, windowStart)) {
+                    if (position + signatureLength <= newDataStart) continue;
+                    RecoveredFile file = attemptFileRecovery(device, position, signature, fileTypes);
+                    if (file == null) continue;
+                    if (isKnownFile(file, position)) {
+                        knownFilesSkipped.incrementAndGet();
+                    } else {
+                        acceptFile(file, found);
+                    }
+                }
+            }
+        }
+
+        // Bloco inicial vem da janela; se continuar além dos setores relidos, o resto é lido do dispositivo
+        private boolean isKnownFile(RecoveredFile file, long position) {
+            KnownFileFilter.CandidateHash hash = knownFiles != null ? knownFiles.startCandidate(file.getFileSize()) : null;
+            if (hash == null) return false;
+
+            int offset = (int) (position - windowStart);
+            if (hash.update(window, offset, filled - offset)) return hash.isKnown();
+
+            byte[] rest = new byte[KnownFileFilter.LEADING_BLOCK_SIZE];
+            try (BlockSource source = BlockSource.open(device)) {
+                int read = source.readFully(ByteBuffer.wrap(rest), windowStart + filled);
+                if (read > 0) hash.update(rest, 0, read);
+            } catch (IOException e) {
+                // Sem o bloco inteiro não dá para confirmar: o arquivo é mantido
+                return false;
+            }
+            return hash.isKnown();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (filled > 0) {
+                scanWindow();
+                filled = 0;
+            }
+            if (image != null) {
+                image.force(false);
+                image.close();
+            }
+        }
+    }
+
+    private static class PendingFile {
+        final RecoveredFile file;
+        final KnownFileFilter.CandidateHash hash;
+
+        PendingFile(RecoveredFile file, KnownFileFilter.CandidateHash hash) {
+            this.file = file;
+            this.hash = hash;
+        }
+    }
+
+    // Os eventos chegam pela ProgressCoalescer, em uma thread própria e no máximo uma vez
+    // por intervalo; quem precisa de todos os eventos sobrescreve wantsEveryEvent()
     public interface RecoveryProgressListener {
         void onProgressUpdate(int progress, long bytesScanned, long totalBytes);
         void onFileFound(RecoveredFile file);
         void onRecoveryProgress(RecoveredFile file, int progress);
+
+        default void onFilesFound(RecoveredFile[] files) {
+            for (RecoveredFile file : files) {
+                onFileFound(file);
+            }
+        }
+
+        default boolean wantsEveryEvent() {
+            return false;
+        }
     }
 }
\ No newline at end of file
@@ -1,4 +1,288 @@
 package engine;
 
-public class FileSaver {
+import models.RecoveredFile;
+import utils.Checksum;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FileSaver implements AutoCloseable {
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024; // 8MB por chamada de transferTo
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;     // buffer para leitura posicional
+
+    private final String devicePath;
+    private final Path sourcePath;
+    private final BlockSource source;
+    private final BlockCache cache;
+    private final int maxWriters;
+    private volatile boolean cancelled;
+    private Checksum.Algorithm checksumAlgorithm;
+    private DedupStore dedupStore;
+    private SaveProgressListener progressListener;
+
+    public FileSaver(String devicePath) throws IOException {
+        this(devicePath, defaultWriterCount());
+    }
+
+    public FileSaver(String devicePath, int maxWriters) throws IOException {
+        this.devicePath = devicePath;
+        this.sourcePath = Paths.get(DeviceImager.resolveSource(devicePath));
+        // Uma única fonte compartilhada: transferTo e read(buffer, posição) não alteram a posição de leitura
+        this.source = BlockSource.open(sourcePath);
+        this.cache = BlockCache.getInstance();
+        this.maxWriters = Math.max(1, maxWriters);
+        this.cancelled = false;
+    }
+
+    private static int defaultWriterCount() {
+        return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public void setProgressListener(SaveProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    // Com um algoritmo definido, o checksum é calculado sobre os mesmos bytes que são gravados
+    public void setChecksumAlgorithm(Checksum.Algorithm algorithm) {
+        this.checksumAlgorithm = algorithm;
+    }
+
+    // Modo deduplicado: o conteúdo vai para o store e o nome final vira um hardlink
+    public void setDedupStore(DedupStore store) {
+        this.dedupStore = store;
+    }
+
+    public String getDevicePath() { return devicePath; }
+    public int getMaxWriters() { return maxWriters; }
+    public Checksum.Algorithm getChecksumAlgorithm() { return checksumAlgorithm; }
+
+    // Recupera um único arquivo na thread atual
+    public boolean saveFile(RecoveredFile file, String outputPath) {
+        return saveFile(file, outputPath, null);
+    }
+
+    // Recupera vários arquivos com um pool limitado de escritores; retorna quantos foram salvos
+    public int saveAll(List<RecoveredFile> files, String outputPath) {
+        cancelled = false;
+        AggregateProgress aggregate = new AggregateProgress(files);
+        AtomicInteger saved = new AtomicInteger(0);
+
+        ExecutorService writers = Executors.newFixedThreadPool(Math.min(maxWriters, Math.max(1, files.size())), r -> {
+            Thread t = new Thread(r, "FileSaver-writer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            for (RecoveredFile file : files) {
+                writers.execute(() -> {
+                    if (cancelled) return;
+                    if (saveFile(file, outputPath, aggregate)) {
+                        saved.incrementAndGet();
+                    }
+                });
+            }
+            writers.shutdown();
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            cancelled = true;
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        return saved.get();
+    }
+
+    private boolean saveFile(RecoveredFile file, String outputPath, AggregateProgress aggregate) {
+        DedupStore store = dedupStore;
+        Path target = store != null ? store.newTempFile() : Paths.get(outputPath, file.getFileName());
+        long total = file.getFileSize();
+        long written = 0;
+        boolean success = false;
+        Checksum checksum = checksumAlgorithm != null ? new Checksum(checksumAlgorithm) : null;
+        Checksum address = addressOf(store, checksum);
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            long position = file.getStartPosition();
+            // transferTo não passa pelo espaço do usuário; para calcular o checksum usa leitura posicional
+            boolean transfer = checksum == null && address == null;
+            ByteBuffer buffer = null;
+
+            while (written < total && !cancelled) {
+                long at = position + written;
+                long count = Math.min(TRANSFER_CHUNK, total - written);
+                long transferred = 0;
+                if (transfer) {
+                    // Só até o próximo bloco ainda no cache de blocos (varrido há pouco), que é copiado da memória
+                    long direct = cache.nextCachedPosition(sourcePath, at, at + count) - at;
+                    if (direct > 0) {
+                        transferred = source.transferTo(at, direct, out);
+                        // Dispositivos de bloco reportam tamanho 0 e não aceitam transferTo
+                        if (transferred <= 0) transfer = false;
+                    } else {
+                        count = Math.min(count, COPY_BUFFER_SIZE); // depois do trecho em cache, transferTo de novo
+                    }
+                }
+
+                if (transferred <= 0) {
+                    if (buffer == null) {
+                        buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+                    }
+                    transferred = copyPositional(out, buffer, at, count, checksum, address);
+                    if (transferred <= 0) break; // fim do dispositivo
+                }
+
+                written += transferred;
+
+                if (progressListener != null) {
+                    progressListener.onFileProgress(file, written, total);
+                }
+                if (aggregate != null) {
+                    aggregate.addBytes(transferred);
+                }
+            }
+
+            success = written == total;
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar arquivo " + file.getFileName() + ": " + e.getMessage());
+        }
+
+        if (store != null) {
+            target = commitToStore(store, file, target, address, success);
+            success = target != null;
+        }
+
+        if (success) {
+            file.setFilePath(target.toString());
+            Checksum reported = checksum != null ? checksum : address;
+            if (reported != null) {
+                file.setChecksum(reported.hexDigest());
+            }
+            file.setRecoveryStatus(RecoveredFile.RecoveryStatus.RECOVERED);
+            ScanRegionFeed.forDevice(devicePath).publish(file.getStartPosition(), file.getFileSize(),
+                    BlockVisualizer.BlockType.RECOVERED);
+        } else {
+            file.setRecoveryStatus(RecoveredFile.RecoveryStatus.FAILED);
+        }
+
+        if (progressListener != null) {
+            progressListener.onFileSaved(file, success);
+        }
+        if (aggregate != null) {
+            aggregate.fileDone(total - written);
+        }
+
+        return success;
+    }
+
+    // Endereço no store: o próprio checksum de verificação quando já é o algoritmo do store
+    static Checksum addressOf(DedupStore store, Checksum checksum) {
+        if (store == null) return null;
+        if (checksum != null && checksum.getAlgorithm() == store.getAlgorithm()) return checksum;
+        return new Checksum(store.getAlgorithm());
+    }
+
+    private Path commitToStore(DedupStore store, RecoveredFile file, Path tempFile,
+                               Checksum address, boolean complete) {
+        if (!complete) {
+            store.discard(tempFile);
+            return null;
+        }
+        try {
+            return store.commit(tempFile, address.hexDigest(), file.getFileName(), file.getFileSize());
+        } catch (IOException e) {
+            System.err.println("Erro ao armazenar " + file.getFileName() + " no store: " + e.getMessage());
+            store.discard(tempFile);
+            return null;
+        }
+    }
+
+    private long copyPositional(FileChannel out, ByteBuffer buffer, long position, long count,
+                                Checksum checksum, Checksum address) throws IOException {
+        long copied = 0;
+        while (copied < count && !cancelled) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - copied));
+            long readPosition = position + copied;
+            // Faltas no cache são lidas direto do dispositivo para não expulsar blocos da varredura
+            int bytesRead = cache.readCachedOrDirect(sourcePath, source, readPosition, buffer);
+            if (bytesRead <= 0) break;
+
+            buffer.flip();
+            if (checksum != null) {
+                checksum.update(buffer);
+            }
+            if (address != null && address != checksum) {
+                address.update(buffer);
+            }
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            copied += bytesRead;
+        }
+        return copied;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    // Progresso agregado de um lote de arquivos (compartilhado entre os escritores)
+    private class AggregateProgress {
+        private final int totalFiles;
+        private final long totalBytes;
+        private final AtomicInteger filesDone = new AtomicInteger(0);
+        private final AtomicLong bytesDone = new AtomicLong(0);
+
+        AggregateProgress(List<RecoveredFile> files) {
+            this.totalFiles = files.size();
+            long bytes = 0;
+            for (RecoveredFile file : files) {
+                bytes += file.getFileSize();
+            }
+            this.totalBytes = bytes;
+        }
+
+        void addBytes(long bytes) {
+            long done = bytesDone.addAndGet(bytes);
+            if (progressListener != null) {
+                progressListener.onAggregateProgress(filesDone.get(), totalFiles, done, totalBytes);
+            }
+        }
+
+        void fileDone(long skippedBytes) {
+            int done = filesDone.incrementAndGet();
+            long bytes = bytesDone.addAndGet(skippedBytes); // bytes não gravados contam como processados
+            if (progressListener != null) {
+                progressListener.onAggregateProgress(done, totalFiles, bytes, totalBytes);
+            }
+        }
+    }
+
+    public interface SaveProgressListener {
+        void onFileProgress(RecoveredFile file, long bytesWritten, long totalBytes);
+        void onFileSaved(RecoveredFile file, boolean success);
+        void onAggregateProgress(int filesDone, int totalFiles, long bytesDone, long totalBytes);
+    }
 }
@@ -0,0 +1,580 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Imagem comprimida com gzip (evidencia.img.gz) vista como canal somente leitura do conteúdo
+// descomprimido. Os pontos de controle (posição em bits de um início de bloco + os 32KB anteriores
+// de saída) são registrados pela própria primeira leitura sequencial da imagem (a varredura) e o
+// índice é gravado ao lado dela quando essa passada chega ao fim; depois disso, uma leitura em
+// qualquer posição descomprime no máximo um intervalo a partir do ponto mais próximo.
+// Os cursores de descompressão têm estado: leituras num mesmo canal são serializadas, e a passada
+// sequencial é uma só por imagem. Ao contrário das outras fontes, a gzip não lê em paralelo.
+public class GzipImageChannel extends FileChannel {
+    public static final long DEFAULT_SPAN = 16L * 1024 * 1024;
+
+    private static final byte[] INDEX_MAGIC = {'C', 'R', 'G', 'Z', 'I', 'D', 'X', '1'};
+    private static final int HEADER_SIZE = INDEX_MAGIC.length + 4 * 8;
+    private static final int POINT_SIZE = 8 + 8 + 8 + 4 + 4;
+    private static final int MAX_CURSORS = 4;
+
+    // Um índice por imagem, compartilhado pelos canais abertos nela (cache, varredura, preview)
+    private static final Map<Path, Index> INDEXES = new HashMap<>();
+
+    private final FileChannel input;
+    private final Index index;
+    private final List<Cursor> cursors = new ArrayList<>(); // mais recente no fim
+    private long position;
+
+    private GzipImageChannel(FileChannel input, Index index) {
+        this.input = input;
+        this.index = index;
+    }
+
+    // Arquivo terminado em .gz (sem diferenciar maiúsculas)
+    public static boolean isGzipImage(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null && fileName.toString().toLowerCase(Locale.ROOT).endsWith(".gz")
+                && Files.isRegularFile(path);
+    }
+
+    public static GzipImageChannel open(Path path) throws IOException {
+        return open(path, DEFAULT_SPAN);
+    }
+
+    // span: distância mínima, em bytes descomprimidos, entre pontos de controle
+    public static GzipImageChannel open(Path path, long span) throws IOException {
+        if (span < DeflateDecoder.WINDOW_SIZE) {
+            throw new IllegalArgumentException("Intervalo entre pontos de controle muito pequeno: " + span);
+        }
+        Index index = Index.acquire(path.toAbsolutePath().normalize(), span);
+        try {
+            return new GzipImageChannel(FileChannel.open(path, StandardOpenOption.READ), index);
+        } catch (IOException | RuntimeException e) {
+            index.release();
+            throw e;
+        }
+    }
+
+    // Índice ao lado da imagem; em pasta somente leitura (mídia de evidência), no diretório temporário
+    static Path indexPathFor(Path image) {
+        Path beside = image.resolveSibling(image.getFileName() + ".idx");
+        Path directory = image.toAbsolutePath().getParent();
+        if (Files.exists(beside) || (directory != null && Files.isWritable(directory))) {
+            return beside;
+        }
+        String name = image.toAbsolutePath().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        return Paths.get(System.getProperty("java.io.tmpdir"), name + ".idx");
+    }
+
+    public Path getIndexPath() { return index.getIndexPath(); }
+
+    // Pontos registrados até agora (todos, depois da primeira passada completa)
+    public int getCheckpointCount() { return index.getCheckpointCount(); }
+
+    // false enquanto a primeira passada não chegou ao fim: size() ainda é uma estimativa
+    public boolean isSizeKnown() { return index.isComplete(); }
+
+    private static ByteBuffer readFully(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Índice gzip truncado");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Cursor já posicionado até target: reaproveita um aberto se estiver mais perto que o melhor ponto
+    private Cursor cursorFor(long target) throws IOException {
+        int point = index.findPoint(target);
+        long pointStart = point >= 0 ? index.getPointOutput(point) : 0;
+
+        Cursor best = null;
+        for (Cursor cursor : cursors) {
+            long current = cursor.decoder.getPosition();
+            if (current <= target && current >= pointStart
+                    && (best == null || current > best.decoder.getPosition())) {
+                best = cursor;
+            }
+        }
+        if (best != null) {
+            cursors.remove(best);
+        } else {
+            best = new Cursor(point >= 0 ? index.restore(point, input) : new DeflateDecoder(input));
+            if (cursors.size() >= MAX_CURSORS) cursors.remove(0);
+        }
+        cursors.add(best);
+        best.decoder.skip(target - best.decoder.getPosition());
+        return best;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst, long logicalPosition) throws IOException {
+        if (logicalPosition < 0) throw new IllegalArgumentException("Posição negativa");
+        ensureOpen();
+        if (!dst.hasRemaining()) return index.isComplete() && logicalPosition >= index.getSize() ? -1 : 0;
+
+        // Ainda na primeira passada: daqui em diante quem lê é ela, registrando os pontos
+        int sequential = index.readSequential(dst, logicalPosition);
+        if (sequential != Index.BEHIND) return sequential;
+        if (index.isComplete() && logicalPosition >= index.getSize()) return -1;
+
+        Cursor cursor = cursorFor(logicalPosition);
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int length = Math.min(dst.remaining(), cursor.buffer.length);
+            int bytesRead = cursor.decoder.read(cursor.buffer, 0, length);
+            if (bytesRead <= 0) break;
+            dst.put(cursor.buffer, 0, bytesRead);
+            total += bytesRead;
+        }
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        int bytesRead = read(dst, position);
+        if (bytesRead > 0) position += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) continue;
+            int bytesRead = read(dsts[i]);
+            if (bytesRead < 0) return total == 0 ? -1 : total;
+            total += bytesRead;
+            if (dsts[i].hasRemaining()) break;
+        }
+        return total;
+    }
+
+    // Sem cópia nativa possível: descomprime em blocos e grava no destino
+    @Override
+    public long transferTo(long logicalPosition, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+        long total = 0;
+        while (total < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - total));
+            int bytesRead = read(buffer, logicalPosition + total);
+            if (bytesRead <= 0) break;
+            buffer.flip();
+            while (buffer.hasRemaining()) target.write(buffer);
+            total += bytesRead;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long position() { return position; }
+
+    @Override
+    public synchronized FileChannel position(long newPosition) {
+        if (newPosition < 0) throw new IllegalArgumentException("Posição negativa");
+        this.position = newPosition;
+        return this;
+    }
+
+    // Exato depois da primeira passada; antes disso, estimado pelo trailer gzip (nunca descomprime)
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return index.getSize();
+    }
+
+    @Override
+    public int write(ByteBuffer src) { throw new NonWritableChannelException(); }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) { throw new NonWritableChannelException(); }
+
+    @Override
+    public int write(ByteBuffer src, long position) { throw new NonWritableChannelException(); }
+
+    @Override
+    public FileChannel truncate(long size) { throw new NonWritableChannelException(); }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public void force(boolean metaData) {
+        // somente leitura: nada a gravar
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) {
+        throw new UnsupportedOperationException("Mapeamento de imagem gzip não suportado");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Bloqueio de imagem gzip não suportado");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Bloqueio de imagem gzip não suportado");
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) throw new ClosedChannelException();
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        synchronized (this) {
+            cursors.clear();
+        }
+        try {
+            input.close();
+        } finally {
+            index.release();
+        }
+    }
+
+    // Pontos de controle e tamanho de uma imagem. Sem índice salvo válido, a leitura que chega ao fim
+    // do que já foi descomprimido conduz a passada sequencial, que grava as janelas num temporário;
+    // no fim da imagem, tabela e cabeçalho completam o arquivo e ele passa a ser o índice.
+    private static final class Index {
+        static final int BEHIND = Integer.MIN_VALUE; // a posição já ficou para trás da passada sequencial
+
+        private final Path image;
+        private final long span;
+        private int references; // guardado por INDEXES
+        private Path indexPath;
+        private FileChannel indexChannel; // índice completo ou, durante a passada, o temporário
+        private long[] pointBits = new long[64];      // posição em bits do início de bloco
+        private long[] pointOutput = new long[64];    // posição descomprimida correspondente
+        private long[] windowOffsets = new long[64];  // janela comprimida dentro do arquivo de índice
+        private int[] windowLengths = new int[64];
+        private int[] storedLengths = new int[64];
+        private int count;
+        private long size = -1; // exato, só com o índice completo
+        private long estimatedSize = -1;
+
+        // Passada sequencial em andamento
+        private Path temp;
+        private FileChannel builderInput;
+        private DeflateDecoder builder;
+        private Deflater deflater;
+        private byte[] window;
+        private byte[] compressed;
+        private byte[] buffer;
+        private long writeOffset;
+
+        private Index(Path image, long span) {
+            this.image = image;
+            this.span = span;
+        }
+
+        static Index acquire(Path image, long span) throws IOException {
+            synchronized (INDEXES) {
+                Index index = INDEXES.get(image);
+                if (index == null) {
+                    index = new Index(image, span);
+                    index.load();
+                    INDEXES.put(image, index);
+                }
+                index.references++;
+                return index;
+            }
+        }
+
+        // Último canal fechado: uma passada interrompida é descartada e recomeça na próxima abertura
+        void release() throws IOException {
+            synchronized (INDEXES) {
+                if (--references > 0) return;
+                INDEXES.remove(image);
+            }
+            close();
+        }
+
+        synchronized Path getIndexPath() { return indexPath; }
+
+        synchronized int getCheckpointCount() { return count; }
+
+        synchronized boolean isComplete() { return size >= 0; }
+
+        synchronized long getSize() throws IOException {
+            if (size >= 0) return size;
+            if (estimatedSize < 0) estimatedSize = estimateSize();
+            return Math.max(estimatedSize, builder != null ? builder.getPosition() : 0);
+        }
+
+        // ISIZE do trailer é o tamanho do último membro mod 2^32: somam-se 4GB até não ficar abaixo
+        // do próprio arquivo comprimido (deflate praticamente não aumenta os dados)
+        private long estimateSize() throws IOException {
+            try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+                long compressedSize = channel.size();
+                if (compressedSize < 18) return 0;
+                ByteBuffer trailer = readFully(channel, compressedSize - 4, 4).order(ByteOrder.LITTLE_ENDIAN);
+                long estimate = trailer.getInt() & 0xFFFFFFFFL;
+                while (estimate < compressedSize - compressedSize / 1000) {
+                    estimate += 1L << 32;
+                }
+                return estimate;
+            }
+        }
+
+        // Índice salvo que ainda corresponde à imagem; senão, os pontos virão da primeira passada
+        private void load() throws IOException {
+            indexPath = indexPathFor(image);
+            if (!Files.exists(indexPath)) return;
+            try {
+                if (loadIndex()) return;
+            } catch (IOException e) {
+                System.err.println("Índice gzip inválido, recriando " + indexPath + ": " + e.getMessage());
+            }
+            closeIndexChannel();
+            count = 0;
+            size = -1;
+        }
+
+        private boolean loadIndex() throws IOException {
+            indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ);
+            ByteBuffer header = readFully(indexChannel, 0, HEADER_SIZE);
+            for (byte b : INDEX_MAGIC) {
+                if (header.get() != b) return false;
+            }
+            long compressedSize = header.getLong();
+            long modified = header.getLong();
+            long uncompressedSize = header.getLong();
+            long indexSpan = header.getLong();
+            if (compressedSize != Files.size(image) || modified != Files.getLastModifiedTime(image).toMillis()) {
+                return false;
+            }
+
+            ByteBuffer tail = readFully(indexChannel, indexChannel.size() - 12, 12);
+            long tableOffset = tail.getLong();
+            count = tail.getInt();
+            ByteBuffer table = readFully(indexChannel, tableOffset, count * POINT_SIZE);
+            pointBits = new long[count];
+            pointOutput = new long[count];
+            windowOffsets = new long[count];
+            windowLengths = new int[count];
+            storedLengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                pointBits[i] = table.getLong();
+                pointOutput[i] = table.getLong();
+                windowOffsets[i] = table.getLong();
+                windowLengths[i] = table.getInt();
+                storedLengths[i] = table.getInt();
+            }
+            if (indexSpan != span) {
+                System.err.println("Índice gzip com intervalo de " + indexSpan + " bytes, usando-o: " + indexPath);
+            }
+            size = uncompressedSize;
+            return true;
+        }
+
+        // Lê pela passada sequencial, registrando um ponto a cada span bytes, sempre num início de bloco.
+        // BEHIND quando o índice já está completo ou a posição já foi descomprimida (vale o ponto mais próximo).
+        synchronized int readSequential(ByteBuffer dst, long logicalPosition) throws IOException {
+            if (size >= 0) return BEHIND;
+            if (builder == null) startBuild();
+            if (logicalPosition < builder.getPosition()) return BEHIND;
+
+            builder.skip(logicalPosition - builder.getPosition());
+            int total = 0;
+            while (dst.hasRemaining() && !builder.isFinished()) {
+                int bytesRead = builder.read(buffer, 0, Math.min(dst.remaining(), buffer.length));
+                if (bytesRead <= 0) break;
+                dst.put(buffer, 0, bytesRead);
+                total += bytesRead;
+            }
+            if (builder.isFinished()) {
+                finishBuild();
+            }
+            return total == 0 ? -1 : total;
+        }
+
+        private void startBuild() throws IOException {
+            temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            indexChannel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeOffset = HEADER_SIZE;
+            count = 0;
+            window = new byte[DeflateDecoder.WINDOW_SIZE];
+            compressed = new byte[DeflateDecoder.WINDOW_SIZE + 1024];
+            buffer = new byte[256 * 1024];
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            builderInput = FileChannel.open(image, StandardOpenOption.READ);
+            builder = new DeflateDecoder(builderInput);
+            builder.setBoundaryListener(this::addPoint);
+        }
+
+        private void addPoint(DeflateDecoder decoder, long bitOffset, long outputOffset) throws IOException {
+            if (count > 0 && outputOffset - pointOutput[count - 1] < span) return;
+            int windowLength = decoder.copyWindow(window);
+            deflater.reset();
+            deflater.setInput(window, 0, windowLength);
+            deflater.finish();
+            int stored = 0;
+            while (!deflater.finished()) {
+                stored += deflater.deflate(compressed, stored, compressed.length - stored);
+            }
+            ByteBuffer data = ByteBuffer.wrap(compressed, 0, stored);
+            while (data.hasRemaining()) {
+                indexChannel.write(data, writeOffset + data.position());
+            }
+
+            if (count == pointBits.length) {
+                int grown = count * 2;
+                pointBits = Arrays.copyOf(pointBits, grown);
+                pointOutput = Arrays.copyOf(pointOutput, grown);
+                windowOffsets = Arrays.copyOf(windowOffsets, grown);
+                windowLengths = Arrays.copyOf(windowLengths, grown);
+                storedLengths = Arrays.copyOf(storedLengths, grown);
+            }
+            pointBits[count] = bitOffset;
+            pointOutput[count] = outputOffset;
+            windowOffsets[count] = writeOffset;
+            windowLengths[count] = windowLength;
+            storedLengths[count] = stored;
+            count++;
+            writeOffset += stored;
+        }
+
+        // Fim da imagem: o tamanho passa a ser exato e o temporário vira o índice salvo
+        private void finishBuild() throws IOException {
+            size = builder.getPosition();
+            stopBuild();
+            try {
+                ByteBuffer table = ByteBuffer.allocate(count * POINT_SIZE + 12);
+                for (int i = 0; i < count; i++) {
+                    table.putLong(pointBits[i]).putLong(pointOutput[i]).putLong(windowOffsets[i])
+                            .putInt(windowLengths[i]).putInt(storedLengths[i]);
+                }
+                table.putLong(writeOffset).putInt(count).flip();
+                while (table.hasRemaining()) {
+                    indexChannel.write(table, writeOffset + table.position());
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(INDEX_MAGIC).putLong(Files.size(image))
+                        .putLong(Files.getLastModifiedTime(image).toMillis()).putLong(size).putLong(span).flip();
+                while (header.hasRemaining()) {
+                    indexChannel.write(header, header.position());
+                }
+                indexChannel.force(true);
+                indexChannel.close();
+                Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                temp = null;
+                indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ);
+            } catch (IOException e) {
+                // Os pontos continuam valendo enquanto a imagem estiver aberta; só não ficam salvos
+                System.err.println("Erro ao gravar índice gzip " + indexPath + ": " + e.getMessage());
+                if (!indexChannel.isOpen()) {
+                    indexChannel = FileChannel.open(temp != null ? temp : indexPath, StandardOpenOption.READ);
+                }
+            }
+        }
+
+        private void stopBuild() throws IOException {
+            builder = null;
+            window = null;
+            compressed = null;
+            buffer = null;
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+            if (builderInput != null) {
+                builderInput.close();
+                builderInput = null;
+            }
+        }
+
+        // Ponto mais próximo antes de target (-1 se nenhum)
+        synchronized int findPoint(long target) {
+            int point = -1;
+            int low = 0, high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (pointOutput[mid] <= target) {
+                    point = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return point;
+        }
+
+        synchronized long getPointOutput(int point) { return pointOutput[point]; }
+
+        synchronized DeflateDecoder restore(int point, FileChannel input) throws IOException {
+            ByteBuffer stored = readFully(indexChannel, windowOffsets[point], storedLengths[point]);
+            byte[] restored = new byte[windowLengths[point]];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored.array(), 0, storedLengths[point]);
+                int length = 0;
+                while (length < restored.length && !inflater.finished()) {
+                    int n = inflater.inflate(restored, length, restored.length - length);
+                    if (n == 0 && inflater.needsInput()) break;
+                    length += n;
+                }
+                if (length != restored.length) throw new IOException("Janela do índice gzip incompleta");
+            } catch (DataFormatException e) {
+                throw new IOException("Janela do índice gzip corrompida: " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+            return new DeflateDecoder(input, pointBits[point], pointOutput[point], restored, restored.length);
+        }
+
+        private void closeIndexChannel() throws IOException {
+            if (indexChannel != null) {
+                indexChannel.close();
+                indexChannel = null;
+            }
+        }
+
+        private synchronized void close() throws IOException {
+            try {
+                stopBuild();
+                closeIndexChannel();
+            } finally {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                    temp = null;
+                }
+            }
+        }
+    }
+
+    private static final class Cursor {
+        final DeflateDecoder decoder;
+        final byte[] buffer = new byte[64 * 1024];
+
+        Cursor(DeflateDecoder decoder) {
+            this.decoder = decoder;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package engine;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Arquivo de imagem: raw simples, conjunto dividido (.001, .002, ...) ou imagem gzip
+class ImageBlockSource extends ChannelBlockSource {
+    private final GzipImageChannel gzip; // null fora de imagens gzip
+
+    private ImageBlockSource(Path path, FileChannel channel) {
+        super(path, channel, DEFAULT_SECTOR_SIZE);
+        this.gzip = channel instanceof GzipImageChannel ? (GzipImageChannel) channel : null;
+    }
+
+    @Override
+    public boolean isSizeExact() { return gzip == null || gzip.isSizeKnown(); }
+
+    static ImageBlockSource open(Path path) throws IOException {
+        FileChannel channel;
+        if (SplitImageChannel.isSplitImage(path)) {
+            channel = SplitImageChannel.open(path);
+        } else if (GzipImageChannel.isGzipImage(path)) {
+            channel = GzipImageChannel.open(path);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return new ImageBlockSource(path, channel);
+    }
+
+    // O_DIRECT só faz sentido num único arquivo sem compressão
+    static ImageBlockSource openDirect(Path path) throws IOException {
+        if (SplitImageChannel.isSplitImage(path)) {
+            throw new UnsupportedOperationException("imagem dividida");
+        }
+        if (GzipImageChannel.isGzipImage(path)) {
+            throw new UnsupportedOperationException("imagem comprimida");
+        }
+        return new ImageBlockSource(path, FileChannel.open(path, StandardOpenOption.READ, ExtendedOpenOption.DIRECT));
+    }
+}
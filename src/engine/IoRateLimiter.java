@@ -0,0 +1,121 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+
+// Limite de leitura por balde de fichas (token bucket): um balde de bytes (MB/s) e outro de operações (IOPS).
+// Cada balde acumula até burstSeconds de folga, então rajadas curtas passam sem espera.
+// Os limites podem mudar durante a varredura; quem está esperando percebe em até MAX_WAIT_NANOS.
+public class IoRateLimiter {
+    public static final double DEFAULT_BURST_SECONDS = 1.0;
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private double bytesPerSecond;   // 0 = sem limite
+    private double operationsPerSecond;
+    private double burstSeconds;
+    private double byteTokens;
+    private double operationTokens;
+    private long lastRefill;
+    private long throttledNanos;
+
+    public IoRateLimiter() {
+        this(0, 0);
+    }
+
+    public IoRateLimiter(double megabytesPerSecond, int iops) {
+        this.burstSeconds = DEFAULT_BURST_SECONDS;
+        this.lastRefill = System.nanoTime();
+        setLimits(megabytesPerSecond, iops);
+    }
+
+    public synchronized void setLimits(double megabytesPerSecond, int iops) {
+        refill(System.nanoTime());
+        this.bytesPerSecond = Math.max(0, megabytesPerSecond) * 1024 * 1024;
+        this.operationsPerSecond = Math.max(0, iops);
+        // Baldes começam cheios: o novo limite vale a partir de agora, sem punir o que já foi lido
+        this.byteTokens = getByteCapacity();
+        this.operationTokens = getOperationCapacity();
+    }
+
+    public synchronized void setMegabytesPerSecond(double megabytesPerSecond) {
+        setLimits(megabytesPerSecond, (int) operationsPerSecond);
+    }
+
+    public synchronized void setIops(int iops) {
+        setLimits(getMegabytesPerSecond(), iops);
+    }
+
+    public synchronized void setBurstSeconds(double burstSeconds) {
+        this.burstSeconds = Math.max(0.01, burstSeconds);
+        byteTokens = Math.min(byteTokens, getByteCapacity());
+        operationTokens = Math.min(operationTokens, getOperationCapacity());
+    }
+
+    public synchronized double getMegabytesPerSecond() { return bytesPerSecond / (1024 * 1024); }
+    public synchronized int getIops() { return (int) operationsPerSecond; }
+    public synchronized double getBurstSeconds() { return burstSeconds; }
+    public synchronized boolean isUnlimited() { return bytesPerSecond <= 0 && operationsPerSecond <= 0; }
+
+    // Tempo total que as leituras passaram esperando pelo limite
+    public synchronized long getThrottledMillis() { return TimeUnit.NANOSECONDS.toMillis(throttledNanos); }
+
+    // Bloqueia até haver fichas para uma leitura de length bytes
+    public void acquire(int length) throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                if (isUnlimited()) return;
+                long now = System.nanoTime();
+                refill(now);
+
+                // Leitura maior que o balde: passa quando ele estiver cheio e deixa o saldo negativo
+                boolean bytesReady = bytesPerSecond <= 0 || byteTokens >= Math.min(length, getByteCapacity());
+                boolean operationReady = operationsPerSecond <= 0 || operationTokens >= 1;
+                if (bytesReady && operationReady) {
+                    if (bytesPerSecond > 0) byteTokens -= length;
+                    if (operationsPerSecond > 0) operationTokens -= 1;
+                    return;
+                }
+
+                wait = 0;
+                if (!bytesReady) {
+                    wait = (long) ((Math.min(length, getByteCapacity()) - byteTokens) / bytesPerSecond * NANOS_PER_SECOND);
+                }
+                if (!operationReady) {
+                    wait = Math.max(wait, (long) ((1 - operationTokens) / operationsPerSecond * NANOS_PER_SECOND));
+                }
+                wait = Math.max(1, Math.min(wait, MAX_WAIT_NANOS));
+                throttledNanos += wait;
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void refill(long now) {
+        double elapsed = (now - lastRefill) / NANOS_PER_SECOND;
+        lastRefill = now;
+        if (bytesPerSecond > 0) {
+            byteTokens = Math.min(getByteCapacity(), byteTokens + elapsed * bytesPerSecond);
+        }
+        if (operationsPerSecond > 0) {
+            operationTokens = Math.min(getOperationCapacity(), operationTokens + elapsed * operationsPerSecond);
+        }
+    }
+
+    private double getByteCapacity() {
+        return bytesPerSecond * burstSeconds;
+    }
+
+    private double getOperationCapacity() {
+        return Math.max(1, operationsPerSecond * burstSeconds);
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (isUnlimited()) return "Sem limite";
+        return String.format("%s, %s, rajada de %.1fs",
+                bytesPerSecond > 0 ? String.format("%.1f MB/s", getMegabytesPerSecond()) : "MB/s livre",
+                operationsPerSecond > 0 ? String.format("%d IOPS", getIops()) : "IOPS livre",
+                burstSeconds);
+    }
+}
@@ -0,0 +1,589 @@
+package engine;
+
+import utils.BloomFilter;
+import utils.Checksum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Filtro de arquivos conhecidos (SO/aplicativos) a partir de uma lista de hashes no estilo NSRL.
+// Na memória fica só o filtro de Bloom; um acerto dele só vale depois de confirmado no arquivo
+// ordenado (mapeado, fora do heap), porque descartar um arquivo do usuário por engano é perda de
+// dados. O arquivo ordenado fica ao lado da lista e é reaproveitado enquanto ela não mudar.
+public class KnownFileFilter {
+    public static final int LEADING_BLOCK_SIZE = 4096;
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final int RUN_RECORDS = 1 << 20;
+    private static final byte[] INDEX_MAGIC = {'C', 'R', 'K', 'H', 'A', 'S', 'H', '1'};
+    private static final int INDEX_HEADER_SIZE = INDEX_MAGIC.length + 8 + 8 + 8 * Checksum.Algorithm.values().length;
+
+    // Com mais de uma coluna de hash por linha (SHA-1 e MD5 no NSRL), só a mais forte é guardada:
+    // cada candidato calcula um único hash
+    private static final Checksum.Algorithm[] PREFERENCE = {
+            Checksum.Algorithm.SHA256, Checksum.Algorithm.SHA1, Checksum.Algorithm.MD5, Checksum.Algorithm.XXH64};
+    private static final Checksum.Algorithm[] NSRL_COLUMNS = {Checksum.Algorithm.SHA1, Checksum.Algorithm.MD5};
+
+    private final BloomFilter filter;
+    private final Map<Checksum.Algorithm, DigestFile> digests;
+    private long entryCount;
+
+    private KnownFileFilter(long expectedEntries, Map<Checksum.Algorithm, DigestFile> digests) {
+        this.filter = new BloomFilter(Math.max(1000, expectedEntries), FALSE_POSITIVE_RATE);
+        this.digests = digests;
+    }
+
+    // Aceita um hash por linha (o que vem depois do primeiro espaço é ignorado) ou o CSV do NSRL
+    // ("SHA-1","MD5","CRC32","FileName",...): as colunas de hash vêm do cabeçalho e o resto é ignorado.
+    // Como o tamanho real de um arquivo recortado não é conhecido, valem os hashes dos primeiros
+    // LEADING_BLOCK_SIZE bytes (ou do arquivo inteiro, quando ele é menor que isso).
+    public static KnownFileFilter load(Path hashList) throws IOException {
+        long listSize = Files.size(hashList);
+        long listModified = Files.getLastModifiedTime(hashList).toMillis();
+        Path indexPath = indexPathFor(hashList);
+
+        Map<Checksum.Algorithm, DigestFile> digests = openIndex(indexPath, listSize, listModified);
+        if (digests == null) {
+            buildIndex(hashList, indexPath, listSize, listModified);
+            digests = openIndex(indexPath, listSize, listModified);
+            if (digests == null) {
+                throw new IOException("Índice da lista de hashes conhecidos não confere: " + indexPath);
+            }
+        }
+
+        long total = 0;
+        for (DigestFile file : digests.values()) {
+            total += file.count;
+        }
+        KnownFileFilter knownFiles = new KnownFileFilter(total, digests);
+        for (DigestFile file : digests.values()) {
+            file.fill(knownFiles.filter);
+        }
+        knownFiles.entryCount = total;
+        return knownFiles;
+    }
+
+    public boolean isKnownDigest(String hexDigest) {
+        if (hexDigest == null) return false;
+        Checksum.Algorithm algorithm = algorithmFor(hexDigest);
+        return algorithm != null && isKnown(algorithm, parseHex(hexDigest));
+    }
+
+    private boolean isKnown(Checksum.Algorithm algorithm, byte[] digest) {
+        if (!filter.mightContain(keyOf(digest))) return false;
+        DigestFile file = digests.get(algorithm);
+        return file != null && file.contains(digest);
+    }
+
+    // Inicia o hash incremental de um candidato encontrado na varredura: só o bloco inicial, com os
+    // algoritmos que a lista usa. Candidatos vazios nunca são descartados (todos têm o mesmo hash).
+    public CandidateHash startCandidate(long fileSize) {
+        return fileSize > 0 && !digests.isEmpty() ? new CandidateHash(Math.min(fileSize, LEADING_BLOCK_SIZE)) : null;
+    }
+
+    public long getEntryCount() { return entryCount; }
+
+    // Só o filtro de Bloom ocupa heap; os arquivos ordenados são mapeados
+    public long getMemoryUsage() { return filter.getMemoryUsage(); }
+
+    public Set<Checksum.Algorithm> getAlgorithms() {
+        return digests.isEmpty() ? EnumSet.noneOf(Checksum.Algorithm.class) : EnumSet.copyOf(digests.keySet());
+    }
+
+    // Índice ao lado da lista; em pasta somente leitura, no diretório temporário
+    static Path indexPathFor(Path hashList) {
+        Path beside = hashList.resolveSibling(hashList.getFileName() + ".idx");
+        Path directory = hashList.toAbsolutePath().getParent();
+        if (Files.exists(beside) || (directory != null && Files.isWritable(directory))) {
+            return beside;
+        }
+        String name = hashList.toAbsolutePath().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        return Paths.get(System.getProperty("java.io.tmpdir"), name + ".idx");
+    }
+
+    // Índice salvo: cabeçalho (versão da lista + quantidade por algoritmo) e uma seção ordenada por
+    // algoritmo, na ordem de Checksum.Algorithm. null se não existir ou for de outra versão da lista.
+    private static Map<Checksum.Algorithm, DigestFile> openIndex(Path indexPath, long listSize, long listModified)
+            throws IOException {
+        if (!Files.exists(indexPath)) return null;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < INDEX_HEADER_SIZE) return null;
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) return null;
+            }
+            header.flip();
+            for (byte b : INDEX_MAGIC) {
+                if (header.get() != b) return null;
+            }
+            if (header.getLong() != listSize || header.getLong() != listModified) return null;
+
+            Map<Checksum.Algorithm, DigestFile> digests = new EnumMap<>(Checksum.Algorithm.class);
+            long offset = INDEX_HEADER_SIZE;
+            for (Checksum.Algorithm algorithm : Checksum.Algorithm.values()) {
+                long count = header.getLong();
+                int digestLength = digestLength(algorithm);
+                if (offset + count * digestLength > channel.size()) return null;
+                if (count > 0) {
+                    digests.put(algorithm, DigestFile.map(channel, offset, digestLength, count));
+                }
+                offset += count * digestLength;
+            }
+            return offset == channel.size() ? digests : null;
+        }
+    }
+
+    // Uma passada pela lista: digests em blocos ordenados e sem repetição, depois intercalados
+    // nas seções do índice, que é gravado num temporário e trocado de uma vez
+    private static void buildIndex(Path hashList, Path indexPath, long listSize, long listModified) throws IOException {
+        Map<Checksum.Algorithm, RunWriter> runs = new EnumMap<>(Checksum.Algorithm.class);
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(hashList, StandardCharsets.ISO_8859_1)) {
+                Checksum.Algorithm[] columns = null;
+                boolean firstLine = true;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+
+                    if (firstLine) {
+                        firstLine = false;
+                        columns = headerColumns(line);
+                        if (columns != null) continue;
+                    }
+                    String digest;
+                    if (columns != null) {
+                        digest = preferredColumn(splitCsv(line), columns);
+                    } else if (line.indexOf(',') >= 0 || line.startsWith("\"")) {
+                        // CSV do NSRL sem cabeçalho: SHA-1 e MD5 nas duas primeiras colunas
+                        digest = preferredColumn(splitCsv(line), NSRL_COLUMNS);
+                    } else {
+                        digest = line.split("\\s+", 2)[0];
+                    }
+
+                    Checksum.Algorithm algorithm = digest != null ? algorithmFor(digest) : null;
+                    if (algorithm == null) continue;
+                    runs.computeIfAbsent(algorithm, a -> new RunWriter(indexPath, a)).add(parseHex(digest));
+                }
+            }
+
+            long[] counts = new long[Checksum.Algorithm.values().length];
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.write(new byte[INDEX_HEADER_SIZE]);
+                for (Checksum.Algorithm algorithm : Checksum.Algorithm.values()) {
+                    RunWriter writer = runs.get(algorithm);
+                    if (writer != null) counts[algorithm.ordinal()] = writer.merge(out);
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            header.put(INDEX_MAGIC).putLong(listSize).putLong(listModified);
+            for (long count : counts) {
+                header.putLong(count);
+            }
+            header.flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) channel.write(header, header.position());
+                channel.force(true);
+            }
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+            for (RunWriter writer : runs.values()) {
+                writer.deleteRuns();
+            }
+        }
+    }
+
+    // Cabeçalho do CSV: coluna -> algoritmo (null nas demais); null se a linha não for cabeçalho
+    private static Checksum.Algorithm[] headerColumns(String line) {
+        List<String> fields = splitCsv(line);
+        Checksum.Algorithm[] columns = new Checksum.Algorithm[fields.size()];
+        boolean found = false;
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim().toUpperCase(Locale.ROOT).replace("-", "").replace("_", "");
+            switch (name) {
+                case "SHA256": columns[i] = Checksum.Algorithm.SHA256; break;
+                case "SHA1": columns[i] = Checksum.Algorithm.SHA1; break;
+                case "MD5": columns[i] = Checksum.Algorithm.MD5; break;
+                case "XXH64": columns[i] = Checksum.Algorithm.XXH64; break;
+                default: continue;
+            }
+            found = true;
+        }
+        return found ? columns : null;
+    }
+
+    private static String preferredColumn(List<String> fields, Checksum.Algorithm[] columns) {
+        for (Checksum.Algorithm preferred : PREFERENCE) {
+            for (int i = 0; i < columns.length && i < fields.size(); i++) {
+                if (columns[i] != preferred) continue;
+                String value = fields.get(i).trim();
+                if (algorithmFor(value) == preferred) return value;
+            }
+        }
+        return null;
+    }
+
+    // Campos de uma linha CSV; vírgulas dentro de aspas (nomes de arquivo) não separam
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int digestLength(Checksum.Algorithm algorithm) {
+        switch (algorithm) {
+            case XXH64: return 8;
+            case MD5: return 16;
+            case SHA1: return 20;
+            default: return 32;
+        }
+    }
+
+    private static Checksum.Algorithm algorithmFor(String hexDigest) {
+        Checksum.Algorithm algorithm;
+        switch (hexDigest.length()) {
+            case 16: algorithm = Checksum.Algorithm.XXH64; break;
+            case 32: algorithm = Checksum.Algorithm.MD5; break;
+            case 40: algorithm = Checksum.Algorithm.SHA1; break;
+            case 64: algorithm = Checksum.Algorithm.SHA256; break;
+            default: return null;
+        }
+        for (int i = 0; i < hexDigest.length(); i++) {
+            if (Character.digit(hexDigest.charAt(i), 16) < 0) return null;
+        }
+        return algorithm;
+    }
+
+    private static byte[] parseHex(String hexDigest) {
+        byte[] digest = new byte[hexDigest.length() / 2];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) ((Character.digit(hexDigest.charAt(2 * i), 16) << 4)
+                    | Character.digit(hexDigest.charAt(2 * i + 1), 16));
+        }
+        return digest;
+    }
+
+    // Mesma chave de BloomFilter.keyOf: os primeiros 8 bytes do digest
+    private static long keyOf(byte[] digest) {
+        long key = 0;
+        for (int i = 0; i < Math.min(8, digest.length); i++) {
+            key = (key << 8) | (digest[i] & 0xFF);
+        }
+        return key;
+    }
+
+    // Hash do bloco inicial de um candidato, alimentado com os buffers da própria varredura
+    public class CandidateHash {
+        private final Checksum.Algorithm[] algorithms;
+        private final Checksum[] leading;
+        private final long length;
+        private long hashed;
+
+        private CandidateHash(long length) {
+            this.length = length;
+            this.algorithms = digests.keySet().toArray(new Checksum.Algorithm[0]);
+            this.leading = new Checksum[algorithms.length];
+            for (int i = 0; i < algorithms.length; i++) {
+                leading[i] = new Checksum(algorithms[i]);
+            }
+        }
+
+        // Retorna true quando o bloco inicial está completo
+        public boolean update(byte[] data, int offset, int count) {
+            int used = (int) Math.min(length - hashed, Math.max(0, count));
+            for (Checksum checksum : leading) {
+                checksum.update(data, offset, used);
+            }
+            hashed += used;
+            return isComplete();
+        }
+
+        public boolean isComplete() {
+            return hashed == length;
+        }
+
+        public boolean isKnown() {
+            if (!isComplete()) return false;
+            for (int i = 0; i < algorithms.length; i++) {
+                if (KnownFileFilter.this.isKnown(algorithms[i], leading[i].digest())) return true;
+            }
+            return false;
+        }
+    }
+
+    // Digests de um algoritmo acumulados em blocos de até RUN_RECORDS, cada um ordenado num long[]
+    // (sem um objeto por entrada), sem repetição e gravado num temporário
+    private static final class RunWriter {
+        private final Path indexPath;
+        private final Checksum.Algorithm algorithm;
+        private final int digestLength;
+        private final int width; // longs por digest
+        private final List<Path> runs = new ArrayList<>();
+        private long[] words;
+        private int count;
+
+        RunWriter(Path indexPath, Checksum.Algorithm algorithm) {
+            this.indexPath = indexPath;
+            this.algorithm = algorithm;
+            this.digestLength = digestLength(algorithm);
+            this.width = (digestLength + 7) / 8;
+            this.words = new long[width * 1024];
+        }
+
+        void add(byte[] digest) throws IOException {
+            if ((count + 1) * width > words.length) {
+                words = Arrays.copyOf(words, Math.min(words.length * 2, width * RUN_RECORDS));
+            }
+            pack(digest, words, count * width);
+            if (++count == RUN_RECORDS) flush();
+        }
+
+        private void flush() throws IOException {
+            if (count == 0) return;
+            sort(0, count - 1, new long[width]);
+            String name = indexPath.getFileName() + "." + algorithm.name().toLowerCase(Locale.ROOT) + runs.size() + ".tmp";
+            Path run = indexPath.resolveSibling(name);
+            runs.add(run);
+            byte[] digest = new byte[digestLength];
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(run), 1 << 16)) {
+                for (int i = 0; i < count; i++) {
+                    if (i > 0 && compare(words, (i - 1) * width, words, i * width) == 0) continue;
+                    unpack(words, i * width, digest);
+                    out.write(digest);
+                }
+            }
+            count = 0;
+        }
+
+        // Intercala os blocos na saída, descartando repetições entre eles; retorna quantos digests gravou
+        long merge(OutputStream out) throws IOException {
+            flush();
+            words = null;
+            PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.current, b.current));
+            long written = 0;
+            try {
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run, digestLength);
+                    if (reader.advance()) queue.add(reader);
+                    else reader.close();
+                }
+                byte[] last = null;
+                while (!queue.isEmpty()) {
+                    RunReader reader = queue.poll();
+                    if (last == null || !Arrays.equals(last, reader.current)) {
+                        out.write(reader.current);
+                        last = reader.current.clone();
+                        written++;
+                    }
+                    if (reader.advance()) queue.add(reader);
+                    else reader.close();
+                }
+            } finally {
+                for (RunReader reader : queue) {
+                    reader.close();
+                }
+            }
+            return written;
+        }
+
+        void deleteRuns() throws IOException {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+
+        private void pack(byte[] digest, long[] target, int at) {
+            for (int w = 0; w < width; w++) {
+                long value = 0;
+                for (int b = 0; b < 8; b++) {
+                    int index = w * 8 + b;
+                    value = (value << 8) | (index < digest.length ? digest[index] & 0xFF : 0);
+                }
+                target[at + w] = value;
+            }
+        }
+
+        private void unpack(long[] source, int at, byte[] digest) {
+            for (int i = 0; i < digest.length; i++) {
+                digest[i] = (byte) (source[at + i / 8] >>> (56 - 8 * (i % 8)));
+            }
+        }
+
+        private int compare(long[] a, int aAt, long[] b, int bAt) {
+            for (int w = 0; w < width; w++) {
+                int cmp = Long.compareUnsigned(a[aAt + w], b[bAt + w]);
+                if (cmp != 0) return cmp;
+            }
+            return 0;
+        }
+
+        // Quicksort sobre registros de largura fixa; recursão só na metade menor
+        private void sort(int low, int high, long[] pivot) {
+            while (high - low > 16) {
+                int middle = (low + high) >>> 1;
+                System.arraycopy(words, middle * width, pivot, 0, width);
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(words, i * width, pivot, 0) < 0) i++;
+                    while (compare(words, j * width, pivot, 0) > 0) j--;
+                    if (i <= j) swap(i++, j--);
+                }
+                if (j - low < high - i) {
+                    sort(low, j, pivot);
+                    low = i;
+                } else {
+                    sort(i, high, pivot);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && compare(words, (j - 1) * width, words, j * width) > 0; j--) {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            for (int w = 0; w < width; w++) {
+                long value = words[a * width + w];
+                words[a * width + w] = words[b * width + w];
+                words[b * width + w] = value;
+            }
+        }
+    }
+
+    private static final class RunReader {
+        private final InputStream in;
+        private final byte[] next;
+        byte[] current;
+
+        RunReader(Path run, int digestLength) throws IOException {
+            this.in = new BufferedInputStream(Files.newInputStream(run), 1 << 16);
+            this.next = new byte[digestLength];
+        }
+
+        boolean advance() throws IOException {
+            int read = in.readNBytes(next, 0, next.length);
+            if (read < next.length) return false;
+            current = next;
+            return true;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Seção ordenada de um algoritmo no índice: registros de tamanho fixo, mapeados em trechos
+    // (um MappedByteBuffer tem no máximo 2GB) e consultados por busca binária
+    private static final class DigestFile {
+        private static final int SEGMENT_RECORDS = 1 << 24;
+
+        private final int digestLength;
+        private final long count;
+        private final MappedByteBuffer[] segments;
+
+        private DigestFile(int digestLength, long count, MappedByteBuffer[] segments) {
+            this.digestLength = digestLength;
+            this.count = count;
+            this.segments = segments;
+        }
+
+        // O mapeamento continua válido depois que o canal é fechado
+        static DigestFile map(FileChannel channel, long offset, int digestLength, long count) throws IOException {
+            int segmentCount = (int) ((count + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long first = (long) i * SEGMENT_RECORDS;
+                long records = Math.min(SEGMENT_RECORDS, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * digestLength,
+                        records * digestLength);
+            }
+            return new DigestFile(digestLength, count, segments);
+        }
+
+        void fill(BloomFilter filter) {
+            byte[] digest = new byte[digestLength];
+            for (long i = 0; i < count; i++) {
+                read(i, digest);
+                filter.put(keyOf(digest));
+            }
+        }
+
+        boolean contains(byte[] digest) {
+            if (digest.length != digestLength) return false;
+            long low = 0;
+            long high = count - 1;
+            while (low <= high) {
+                long middle = (low + high) >>> 1;
+                int cmp = compareAt(middle, digest);
+                if (cmp == 0) return true;
+                if (cmp < 0) low = middle + 1;
+                else high = middle - 1;
+            }
+            return false;
+        }
+
+        // Leituras absolutas: o buffer mapeado é compartilhado entre as threads sem travas
+        private int compareAt(long record, byte[] digest) {
+            MappedByteBuffer segment = segments[(int) (record / SEGMENT_RECORDS)];
+            int at = (int) (record % SEGMENT_RECORDS) * digestLength;
+            for (int i = 0; i < digestLength; i++) {
+                int cmp = Integer.compare(segment.get(at + i) & 0xFF, digest[i] & 0xFF);
+                if (cmp != 0) return cmp;
+            }
+            return 0;
+        }
+
+        private void read(long record, byte[] digest) {
+            MappedByteBuffer segment = segments[(int) (record / SEGMENT_RECORDS)];
+            int at = (int) (record % SEGMENT_RECORDS) * digestLength;
+            for (int i = 0; i < digestLength; i++) {
+                digest[i] = segment.get(at + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Fonte em memória para testes e demonstrações. Registrada num caminho, é aberta por
+// BlockSource.open como se fosse um dispositivo: varredura, cache e recuperação funcionam sem disco.
+public class MemoryBlockSource implements BlockSource {
+    private static final Map<Path, MemoryBlockSource> REGISTERED = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final ByteBuffer data;
+    private final int sectorSize;
+    private final List<Extent> extents;
+    private volatile boolean open = true;
+
+    public MemoryBlockSource(Path path, byte[] data) {
+        this(path, ByteBuffer.wrap(data), DEFAULT_SECTOR_SIZE, null);
+    }
+
+    // extents: regiões com dados, o resto é pulado pela varredura; null = tudo
+    public MemoryBlockSource(Path path, ByteBuffer data, int sectorSize, List<Extent> extents) {
+        this.path = path;
+        this.data = data.slice();
+        this.sectorSize = sectorSize;
+        this.extents = extents != null ? Collections.unmodifiableList(new ArrayList<>(extents)) : null;
+    }
+
+    public static void register(MemoryBlockSource source) {
+        REGISTERED.put(key(source.path), source);
+    }
+
+    public static void unregister(Path path) {
+        REGISTERED.remove(key(path));
+        BlockCache.getInstance().invalidate(path);
+    }
+
+    // Cada abertura recebe uma visão própria: fechá-la não afeta as outras
+    static MemoryBlockSource lookup(Path path) {
+        MemoryBlockSource source = REGISTERED.get(key(path));
+        return source != null ? new MemoryBlockSource(source.path, source.data, source.sectorSize, source.extents) : null;
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public Path getPath() { return path; }
+
+    @Override
+    public long size() { return data.capacity(); }
+
+    @Override
+    public int getSectorSize() { return sectorSize; }
+
+    @Override
+    public List<Extent> getExtents() { return extents; }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        if (position < 0) throw new IllegalArgumentException("Posição negativa");
+        if (position >= data.capacity()) return -1;
+
+        ByteBuffer view = data.duplicate();
+        view.position((int) position);
+        view.limit((int) Math.min(data.capacity(), position + dst.remaining()));
+        int count = view.remaining();
+        dst.put(view);
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() { return open; }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,117 @@
+package engine;
+
+import models.RecoveredFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+// Camada entre o motor e os ouvintes: as threads de varredura só gravam o último estado
+// ou enfileiram o arquivo; uma thread de entrega repassa tudo em lotes a cada intervalo
+public class ProgressCoalescer {
+    public static final long DEFAULT_INTERVAL_MS = 100;
+
+    private static final ScheduledExecutorService DELIVERY = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ProgressCoalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FileRecoveryEngine.RecoveryProgressListener target;
+    private final boolean passThrough;
+    private final long intervalMillis;
+
+    private final Queue<RecoveredFile> foundFiles = new ConcurrentLinkedQueue<>();
+    private final Map<RecoveredFile, Integer> recoveryProgress = new ConcurrentHashMap<>();
+    private volatile int progress;
+    private volatile long bytesScanned;
+    private volatile long totalBytes;
+    private volatile boolean progressChanged;
+    private ScheduledFuture<?> task;
+
+    public ProgressCoalescer(FileRecoveryEngine.RecoveryProgressListener target, long intervalMillis) {
+        this.target = target;
+        this.passThrough = target.wantsEveryEvent();
+        this.intervalMillis = normalizeInterval(intervalMillis);
+    }
+
+    public static long normalizeInterval(long intervalMillis) {
+        return Math.max(1, intervalMillis);
+    }
+
+    public long getIntervalMillis() { return intervalMillis; }
+
+    public synchronized void start() {
+        if (passThrough || task != null) return;
+        task = DELIVERY.scheduleAtFixedRate(this::deliver, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Para a entrega periódica e repassa o que ainda estiver pendente
+    public void stop() {
+        synchronized (this) {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+        deliver();
+    }
+
+    // Chamadas das threads do motor: nunca bloqueiam nem chamam o ouvinte diretamente
+    public void progress(int progress, long bytesScanned, long totalBytes) {
+        if (passThrough) {
+            target.onProgressUpdate(progress, bytesScanned, totalBytes);
+            return;
+        }
+        this.progress = progress;
+        this.bytesScanned = bytesScanned;
+        this.totalBytes = totalBytes;
+        this.progressChanged = true;
+    }
+
+    public void fileFound(RecoveredFile file) {
+        if (passThrough) {
+            target.onFileFound(file);
+            return;
+        }
+        foundFiles.add(file);
+    }
+
+    public void recoveryProgress(RecoveredFile file, int percent) {
+        if (passThrough) {
+            target.onRecoveryProgress(file, percent);
+            return;
+        }
+        recoveryProgress.put(file, percent);
+    }
+
+    private synchronized void deliver() {
+        try {
+            if (!foundFiles.isEmpty()) {
+                List<RecoveredFile> batch = new ArrayList<>();
+                RecoveredFile file;
+                while ((file = foundFiles.poll()) != null) {
+                    batch.add(file);
+                }
+                target.onFilesFound(batch.toArray(new RecoveredFile[0]));
+            }
+
+            if (!recoveryProgress.isEmpty()) {
+                for (RecoveredFile file : new ArrayList<>(recoveryProgress.keySet())) {
+                    Integer percent = recoveryProgress.remove(file);
+                    if (percent != null) target.onRecoveryProgress(file, percent);
+                }
+            }
+
+            if (progressChanged) {
+                progressChanged = false;
+                target.onProgressUpdate(progress, bytesScanned, totalBytes);
+            }
+        } catch (RuntimeException e) {
+            // Um ouvinte com erro não pode derrubar a thread de entrega compartilhada
+            System.err.println("Erro no ouvinte de progresso: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package engine;
+
+import models.RecoveredFile;
+import utils.Checksum;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RecoveryScheduler {
+    private static final int READ_CHUNK = 1024 * 1024;      // leitura de 1MB por vez dentro de uma extensão
+    private static final long DEFAULT_MERGE_GAP = 64 * 1024; // lacunas menores que isso são lidas em vez de buscadas
+    private static final int SSD_QUEUE_DEPTH = 8;
+
+    private final String devicePath;
+    private final String sourcePath; // imagem adquirida do dispositivo, quando houver
+    private final boolean rotational;
+    private final int queueDepth;
+    private long mergeGap;
+    private volatile boolean cancelled;
+    private volatile int skippedCount;
+    private Checksum.Algorithm checksumAlgorithm;
+    private DedupStore dedupStore;
+    private FileSaver.SaveProgressListener progressListener;
+
+    public RecoveryScheduler(String devicePath) {
+        this(devicePath, ScanStrategy.forDevice(DeviceImager.resolveSource(devicePath), false));
+    }
+
+    public RecoveryScheduler(String devicePath, boolean rotational) {
+        this(devicePath, rotational, rotational ? 1 : SSD_QUEUE_DEPTH);
+    }
+
+    // Usa as características medidas do dispositivo: extensões em paralelo conforme a fila do SSD/NVMe
+    public RecoveryScheduler(String devicePath, ScanStrategy strategy) {
+        this(devicePath, strategy.isRotational(), strategy.isRotational() ? 1 : strategy.getReaders());
+    }
+
+    private RecoveryScheduler(String devicePath, boolean rotational, int queueDepth) {
+        this.devicePath = devicePath;
+        this.sourcePath = DeviceImager.resolveSource(devicePath);
+        this.rotational = rotational;
+        // HDD: uma única varredura ascendente (elevador); SSD: várias extensões em paralelo
+        this.queueDepth = queueDepth;
+        this.mergeGap = DEFAULT_MERGE_GAP;
+    }
+
+    public void setProgressListener(FileSaver.SaveProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    public void setChecksumAlgorithm(Checksum.Algorithm algorithm) {
+        this.checksumAlgorithm = algorithm;
+    }
+
+    public void setDedupStore(DedupStore store) {
+        this.dedupStore = store;
+    }
+
+    public void setMergeGap(long mergeGap) { this.mergeGap = Math.max(0, mergeGap); }
+    public long getMergeGap() { return mergeGap; }
+    public boolean isRotationalDevice() { return rotational; }
+    public int getQueueDepth() { return queueDepth; }
+    public int getSkippedCount() { return skippedCount; }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int recoverAll(List<RecoveredFile> files, String outputPath) {
+        cancelled = false;
+        // Arquivos de tamanho zero não têm o que ler: ficam como falha e fora do total
+        int skipped = 0;
+        for (RecoveredFile file : files) {
+            if (file.getFileSize() <= 0) {
+                file.setRecoveryStatus(RecoveredFile.RecoveryStatus.FAILED);
+                skipped++;
+            }
+        }
+        skippedCount = skipped;
+        List<Extent> extents = buildExtents(files, mergeGap);
+
+        long totalBytes = 0;
+        int totalFiles = 0;
+        for (Extent extent : extents) {
+            totalBytes += extent.getLength();
+            totalFiles += extent.files.size();
+        }
+
+        Progress progress = new Progress(totalFiles, totalBytes);
+
+        try (BlockSource source = BlockSource.open(Paths.get(sourcePath))) {
+            if (queueDepth == 1) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(READ_CHUNK);
+                for (Extent extent : extents) {
+                    if (cancelled) break;
+                    processExtent(source, extent, outputPath, buffer, progress);
+                }
+            } else {
+                runParallel(source, extents, outputPath, progress);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir dispositivo para recuperação: " + e.getMessage());
+        }
+
+        return progress.saved.get();
+    }
+
+    private void runParallel(BlockSource source, List<Extent> extents, String outputPath, Progress progress) {
+        ExecutorService readers = Executors.newFixedThreadPool(queueDepth, r -> {
+            Thread t = new Thread(r, "RecoveryScheduler-reader");
+            t.setDaemon(true);
+            return t;
+        });
+        ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_CHUNK));
+
+        try {
+            // As extensões continuam sendo enviadas em ordem de offset para manter a fila do dispositivo ordenada
+            for (Extent extent : extents) {
+                readers.execute(() -> {
+                    if (!cancelled) {
+                        processExtent(source, extent, outputPath, buffers.get(), progress);
+                    }
+                });
+            }
+            readers.shutdown();
+            readers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            cancelled = true;
+            readers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Lê a extensão uma única vez e distribui cada bloco lido para os arquivos que o contêm
+    private void processExtent(BlockSource source, Extent extent, String outputPath,
+                               ByteBuffer buffer, Progress progress) {
+        List<RecoveredFile> pending = extent.files;
+        List<OpenFile> active = new ArrayList<>();
+        int nextFile = 0;
+        long position = extent.start;
+
+        try {
+            while (position < extent.end && !cancelled) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), extent.end - position));
+                int bytesRead = readChunk(source, buffer, position);
+                if (bytesRead <= 0) break; // fim do dispositivo
+
+                long chunkEnd = position + bytesRead;
+
+                while (nextFile < pending.size() && pending.get(nextFile).getStartPosition() < chunkEnd) {
+                    active.add(new OpenFile(pending.get(nextFile++), outputPath));
+                }
+
+                Iterator<OpenFile> it = active.iterator();
+                while (it.hasNext()) {
+                    OpenFile open = it.next();
+                    long from = Math.max(position, open.start);
+                    long to = Math.min(chunkEnd, open.end);
+
+                    if (from < to) {
+                        ByteBuffer slice = buffer.duplicate();
+                        slice.position((int) (from - position));
+                        slice.limit((int) (to - position));
+                        open.write(slice, from - open.start);
+
+                        if (progressListener != null) {
+                            progressListener.onFileProgress(open.file, open.written, open.file.getFileSize());
+                        }
+                    }
+
+                    if (open.end <= chunkEnd) {
+                        open.finish(true, progress);
+                        it.remove();
+                    }
+                }
+
+                position = chunkEnd;
+                progress.addBytes(bytesRead);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao ler extensão " + extent.start + "-" + extent.end + ": " + e.getMessage());
+        }
+
+        // Arquivos que não puderam ser completados (erro, fim do dispositivo ou cancelamento)
+        for (OpenFile open : active) {
+            open.finish(false, progress);
+        }
+        while (nextFile < pending.size()) {
+            RecoveredFile file = pending.get(nextFile++);
+            file.setRecoveryStatus(RecoveredFile.RecoveryStatus.FAILED);
+            progress.fileDone(file, false);
+        }
+        progress.addBytes(extent.end - position);
+    }
+
+    // Blocos ainda no cache (varridos ou pré-visualizados há pouco) vêm da memória; o resto vem direto do disco
+    private int readChunk(BlockSource source, ByteBuffer buffer, long position) throws IOException {
+        return BlockCache.getInstance().readCachedOrDirect(Paths.get(sourcePath), source, position, buffer);
+    }
+
+    // Ordena os arquivos por offset e funde extensões sobrepostas ou adjacentes
+    static List<Extent> buildExtents(List<RecoveredFile> files, long mergeGap) {
+        List<RecoveredFile> sorted = new ArrayList<>();
+        for (RecoveredFile file : files) {
+            if (file.getFileSize() > 0) {
+                sorted.add(file);
+            }
+        }
+        sorted.sort(Comparator.comparingLong(RecoveredFile::getStartPosition));
+
+        List<Extent> extents = new ArrayList<>();
+        Extent current = null;
+
+        for (RecoveredFile file : sorted) {
+            long start = file.getStartPosition();
+            long end = start + file.getFileSize();
+
+            if (current != null && start <= current.end + mergeGap) {
+                current.end = Math.max(current.end, end);
+            } else {
+                current = new Extent(start, end);
+                extents.add(current);
+            }
+            current.files.add(file);
+        }
+
+        return extents;
+    }
+
+    // Detecta discos rotacionais pelo sysfs no Linux; na dúvida assume HDD (ordem de elevador)
+    public static boolean isRotational(String devicePath) {
+        return DeviceAnalyzer.describe(devicePath).isRotational();
+    }
+
+    static class Extent {
+        final long start;
+        long end;
+        final List<RecoveredFile> files = new ArrayList<>();
+
+        Extent(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long getLength() { return end - start; }
+    }
+
+    private class OpenFile {
+        final RecoveredFile file;
+        final long start;
+        final long end;
+        final DedupStore store;
+        final Path target;
+        final Checksum checksum;
+        final Checksum address;
+        FileChannel channel;
+        long written;
+
+        OpenFile(RecoveredFile file, String outputPath) {
+            this.file = file;
+            this.start = file.getStartPosition();
+            this.end = start + file.getFileSize();
+            this.store = dedupStore;
+            this.target = store != null ? store.newTempFile() : Paths.get(outputPath, file.getFileName());
+            this.checksum = checksumAlgorithm != null ? new Checksum(checksumAlgorithm) : null;
+            this.address = FileSaver.addressOf(store, checksum);
+        }
+
+        void write(ByteBuffer data, long filePosition) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            // Os blocos chegam em ordem crescente, então o checksum é calculado na mesma passada
+            if (checksum != null) {
+                checksum.update(data);
+            }
+            if (address != null && address != checksum) {
+                address.update(data);
+            }
+            while (data.hasRemaining()) {
+                filePosition += channel.write(data, filePosition);
+            }
+            written = filePosition;
+        }
+
+        void finish(boolean complete, Progress progress) {
+            boolean success = complete && written == file.getFileSize();
+            try {
+                if (channel != null) channel.close();
+            } catch (IOException e) {
+                success = false;
+            }
+
+            Path location = target;
+            if (store != null) {
+                location = commitToStore(success);
+                success = location != null;
+            }
+
+            if (success) {
+                file.setFilePath(location.toString());
+                Checksum reported = checksum != null ? checksum : address;
+                if (reported != null) {
+                    file.setChecksum(reported.hexDigest());
+                }
+                file.setRecoveryStatus(RecoveredFile.RecoveryStatus.RECOVERED);
+            } else {
+                file.setRecoveryStatus(RecoveredFile.RecoveryStatus.FAILED);
+            }
+            progress.fileDone(file, success);
+        }
+
+        private Path commitToStore(boolean complete) {
+            if (complete) {
+                try {
+                    return store.commit(target, address.hexDigest(), file.getFileName(), file.getFileSize());
+                } catch (IOException e) {
+                    System.err.println("Erro ao armazenar " + file.getFileName() + " no store: " + e.getMessage());
+                }
+            }
+            store.discard(target);
+            return null;
+        }
+    }
+
+    private class Progress {
+        final int totalFiles;
+        final long totalBytes;
+        final AtomicInteger filesDone = new AtomicInteger(0);
+        final AtomicInteger saved = new AtomicInteger(0);
+        final AtomicLong bytesDone = new AtomicLong(0);
+
+        Progress(int totalFiles, long totalBytes) {
+            this.totalFiles = totalFiles;
+            this.totalBytes = totalBytes;
+        }
+
+        void addBytes(long bytes) {
+            if (bytes <= 0) return;
+            long done = bytesDone.addAndGet(bytes);
+            if (progressListener != null) {
+                progressListener.onAggregateProgress(filesDone.get(), totalFiles, done, totalBytes);
+            }
+        }
+
+        void fileDone(RecoveredFile file, boolean success) {
+            if (success) {
+                saved.incrementAndGet();
+                ScanRegionFeed.forDevice(devicePath).publish(file.getStartPosition(), file.getFileSize(),
+                        BlockVisualizer.BlockType.RECOVERED);
+            }
+            filesDone.incrementAndGet();
+            if (progressListener != null) {
+                progressListener.onFileSaved(file, success);
+            }
+        }
+    }
+}
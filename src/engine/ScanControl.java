@@ -0,0 +1,11 @@
+package engine;
+
+// Pontos em que um agendador externo controla a varredura: a vez na fila de E/S do disco físico
+// e a parcela de CPU para procurar assinaturas. Enquanto a tarefa está pausada, os begin* esperam.
+interface ScanControl {
+    void beginRead() throws InterruptedException;
+    void endRead(long bytes);
+
+    void beginMatch() throws InterruptedException;
+    void endMatch(long bytes);
+}
@@ -0,0 +1,457 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+// Leitura antecipada da varredura: mantém até 2x readers blocos em voo e os entrega na ordem
+// do dispositivo. O bloco devolvido por next() vale até a chamada seguinte.
+// No modo direto (O_DIRECT) as leituras não passam pelo page cache nem pelo cache de blocos:
+// a varredura lê cada byte uma única vez e não deve expulsar o que o resto do sistema usa.
+// Erros de leitura não interrompem a varredura: o bloco é relido em pedaços cada vez menores,
+// setores que continuam falhando viram regiões danificadas (zeradas no buffer) e a leitura salta
+// adiante em passos que dobram enquanto a área ruim continua, para não travar em timeouts.
+// Fontes com mapa de extensões têm os blocos fora delas entregues zerados, sem leitura.
+class ScanReader implements AutoCloseable {
+    private final Path device;
+    private final long end;
+    private final int bufferSize;
+    private final int depth;
+    private final ExecutorService readers;
+    private final Queue<Future<Chunk>> inFlight;
+    private final Queue<byte[]> freeBuffers;
+    private final IoRateLimiter rateLimiter;
+    private final List<BlockSource.Extent> extents;
+    private volatile ScanControl control;
+    private long nextPosition;
+    private Chunk current;
+    private volatile boolean closed;
+
+    // Modo direto: buffers fora do heap alinhados ao bloco do dispositivo, reaproveitados entre leituras
+    private final int alignment;
+    private final Queue<ByteBuffer> directBuffers;
+    private volatile BlockSource directSource;
+
+    // Leitura tolerante a setores danificados
+    private static final int DEFAULT_RETRIES = 2;
+    private static final long MAX_SKIP = 64L * 1024 * 1024;
+    private final Object rescueLock = new Object();
+    private final long initialSkip;
+    private volatile BadRangeMap badRanges;
+    private int retries = DEFAULT_RETRIES;
+    private BlockSource rescueSource;
+    private long skipUntil;
+    private long skipSize;
+
+    ScanReader(Path device, long start, long end, ScanStrategy strategy) {
+        this(device, start, end, strategy, false, null);
+    }
+
+    ScanReader(Path device, long start, long end, ScanStrategy strategy, boolean directIo, IoRateLimiter rateLimiter) {
+        this.device = device;
+        this.end = end;
+        this.rateLimiter = rateLimiter;
+        this.directBuffers = new ConcurrentLinkedQueue<>();
+        this.extents = loadExtents(device);
+        this.directSource = directIo ? openDirect(device) : null;
+        this.alignment = directSource != null ? directAlignment(device, strategy) : strategy.getAlignment();
+        this.bufferSize = roundUp(strategy.getBufferSize(), alignment);
+        this.depth = Math.max(1, strategy.getReaders() * 2);
+        this.readers = Executors.newFixedThreadPool(strategy.getReaders(), r -> {
+            Thread thread = new Thread(r, "ScanReader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new ArrayDeque<>();
+        this.freeBuffers = new ArrayDeque<>();
+        // Posições alinhadas ao tamanho do buffer (múltiplo do setor físico)
+        this.nextPosition = start - start % alignment;
+        this.initialSkip = Math.max(alignment, BlockCache.BLOCK_SIZE);
+        this.skipSize = initialSkip;
+    }
+
+    // Regiões ilegíveis são registradas aqui (e lidas daqui para pular áreas já conhecidas)
+    void setBadRangeMap(BadRangeMap badRanges) { this.badRanges = badRanges; }
+    void setRetries(int retries) { this.retries = Math.max(0, retries); }
+
+    // Leituras esperam a vez na fila de E/S do disco físico (agendador com várias tarefas)
+    void setControl(ScanControl control) { this.control = control; }
+
+    // Leituras diretas ficaram ativas (false se o pedido caiu para o modo com cache)
+    boolean isDirect() { return directSource != null; }
+
+    private static BlockSource openDirect(Path device) {
+        try {
+            return BlockSource.openDirect(device);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Imagens divididas ou comprimidas, tmpfs, alguns sistemas de arquivos em rede e plataformas sem O_DIRECT
+            System.err.println("Leitura direta indisponível em " + device + ", usando cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<BlockSource.Extent> loadExtents(Path device) {
+        try {
+            return BlockCache.getInstance().getExtents(device);
+        } catch (IOException e) {
+            return null; // o erro aparece de novo na primeira leitura
+        }
+    }
+
+    private boolean isMapped(long position, int length) {
+        if (extents == null) return true;
+        for (BlockSource.Extent extent : extents) {
+            if (extent.getStart() < position + length && extent.getEnd() > position) return true;
+        }
+        return false;
+    }
+
+    // O_DIRECT exige posição, tamanho e endereço do buffer múltiplos do bloco do sistema de arquivos
+    private static int directAlignment(Path device, ScanStrategy strategy) {
+        long storeBlock = 0;
+        try {
+            storeBlock = Files.getFileStore(device).getBlockSize();
+        } catch (IOException | UnsupportedOperationException e) {
+            // fica com o setor do dispositivo
+        }
+        return (int) Math.max(strategy.getAlignment(), Math.min(storeBlock, BlockCache.BLOCK_SIZE));
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    // Próximo bloco em ordem, ou null no fim do dispositivo
+    Chunk next() throws IOException, InterruptedException {
+        if (current != null) {
+            freeBuffers.add(current.data);
+            current = null;
+        }
+
+        while (inFlight.size() < depth && nextPosition < end) {
+            long position = nextPosition;
+            int length = (int) Math.min(bufferSize, end - position);
+            byte[] buffer = freeBuffers.isEmpty() ? new byte[bufferSize] : freeBuffers.poll();
+            inFlight.add(readers.submit(() -> read(position, buffer, length)));
+            nextPosition += length;
+        }
+
+        Future<Chunk> next = inFlight.poll();
+        if (next == null) return null;
+
+        try {
+            current = next.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+        if (current.length <= 0) {
+            // Fim real do dispositivo antes do tamanho esperado
+            nextPosition = end;
+            return null;
+        }
+        return current;
+    }
+
+    private Chunk read(long position, byte[] buffer, int length) throws IOException, InterruptedException {
+        if (closed) return new Chunk(position, buffer, -1);
+        if (isSkipped(position, length)) {
+            // Bloco inteiro dentro de um salto: nem chega ao disco
+            return skippedChunk(position, buffer, length);
+        }
+        if (!isMapped(position, length)) {
+            Arrays.fill(buffer, 0, length, (byte) 0);
+            return new Chunk(position, buffer, length);
+        }
+        if (rateLimiter != null) {
+            rateLimiter.acquire(length);
+        }
+
+        ScanControl control = this.control;
+        if (control == null) {
+            return readFromDevice(position, buffer, length);
+        }
+        control.beginRead();
+        try {
+            return readFromDevice(position, buffer, length);
+        } finally {
+            control.endRead(length);
+        }
+    }
+
+    private Chunk readFromDevice(long position, byte[] buffer, int length) throws IOException {
+        if (touchesKnownBad(position, length)) {
+            return rescue(position, buffer, length);
+        }
+        BlockSource direct = directSource;
+        try {
+            int bytesRead = direct != null
+                    ? readDirect(direct, position, buffer, length)
+                    : BlockCache.getInstance().read(device, position, buffer, 0, length);
+            resetSkip();
+            return new Chunk(position, buffer, bytesRead);
+        } catch (IOException e) {
+            if (direct != null) {
+                // Repete pelo cache; se lá funcionar, o problema era do modo direto e ele é desligado
+                try {
+                    int bytesRead = BlockCache.getInstance().read(device, position, buffer, 0, length);
+                    disableDirect(direct, e);
+                    return new Chunk(position, buffer, bytesRead);
+                } catch (IOException cacheError) {
+                    // erro do dispositivo: segue para a leitura tolerante
+                }
+            }
+            return rescue(position, buffer, length);
+        }
+    }
+
+    // Relê o bloco em metades sucessivas até o tamanho do setor; cada setor tem `retries` novas tentativas
+    private Chunk rescue(long position, byte[] buffer, int length) throws IOException {
+        List<BadRangeMap.Range> bad = new ArrayList<>();
+        int valid = retryFailed(position, buffer, 0, length, bad);
+        return new Chunk(position, buffer, valid, mergeRanges(bad));
+    }
+
+    // Retorna até onde há dados (lidos ou zerados por setor danificado); menor que length só no fim do dispositivo
+    private int rescueRange(long position, byte[] buffer, int offset, int length, List<BadRangeMap.Range> bad)
+            throws IOException {
+        long start = position + offset;
+        if (isSkipped(start, length)) {
+            markBad(start, buffer, offset, length, bad);
+            return offset + length;
+        }
+
+        if (length > alignment && touchesKnownBad(start, length)) {
+            return retryFailed(position, buffer, offset, length, bad);
+        }
+
+        int bytesRead = readRescue(start, buffer, offset, length);
+        if (bytesRead >= 0) {
+            return offset + bytesRead;
+        }
+        return retryFailed(position, buffer, offset, length, bad);
+    }
+
+    // Trecho que acabou de falhar: divide ao meio ou, se já for um setor, tenta de novo
+    private int retryFailed(long position, byte[] buffer, int offset, int length, List<BadRangeMap.Range> bad)
+            throws IOException {
+        long start = position + offset;
+        if (length > alignment) {
+            int half = roundUp(length / 2, alignment);
+            int reached = rescueRange(position, buffer, offset, half, bad);
+            if (reached < offset + half) return reached;
+            return rescueRange(position, buffer, offset + half, length - half, bad);
+        }
+
+        // Um único setor: novas tentativas antes de desistir
+        for (int attempt = 0; attempt < retries; attempt++) {
+            int bytesRead = readRescue(start, buffer, offset, length);
+            if (bytesRead >= 0) return offset + bytesRead;
+        }
+        registerBadSector(start);
+        markBad(start, buffer, offset, length, bad);
+        return offset + length;
+    }
+
+    // -1 em erro de leitura; leituras curtas só no fim do dispositivo
+    private int readRescue(long position, byte[] buffer, int offset, int length) throws IOException {
+        BlockSource source;
+        synchronized (rescueLock) {
+            if (rescueSource == null) {
+                rescueSource = BlockSource.open(device);
+            }
+            source = rescueSource;
+        }
+        ByteBuffer target = ByteBuffer.wrap(buffer, offset, length);
+        try {
+            while (target.hasRemaining()) {
+                int bytesRead = source.read(target, position + target.position() - offset);
+                if (bytesRead <= 0) break;
+            }
+        } catch (ClosedChannelException e) {
+            throw e;
+        } catch (IOException e) {
+            return -1;
+        }
+        return target.position() - offset;
+    }
+
+    // Passada posterior só sobre regiões já marcadas: setor a setor, sem saltos; devolve o que foi recuperado.
+    // Cada setor relido vai para o sink antes de sair do mapa: se o sink falhar, a região continua marcada.
+    List<BadRangeMap.Range> retryRange(long start, long end, BadRangeMap map, SectorSink sink) throws IOException {
+        List<BadRangeMap.Range> recovered = new ArrayList<>();
+        byte[] sector = new byte[alignment];
+        for (long position = start; position < end && !closed; position += alignment) {
+            int length = (int) Math.min(alignment, end - position);
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                int bytesRead = readRescue(position, sector, 0, length);
+                if (bytesRead < 0) continue;
+                if (bytesRead > 0) {
+                    sink.accept(position, sector, bytesRead);
+                    recovered.add(new BadRangeMap.Range(position, position + bytesRead));
+                }
+                // Leitura curta só no fim do dispositivo: o que passa dele não tem o que reler
+                map.remove(position, position + length);
+                break;
+            }
+        }
+        List<BadRangeMap.Range> merged = mergeRanges(recovered);
+        return merged != null ? merged : recovered;
+    }
+
+    // Setor perdido: a área à frente é pulada, com salto que dobra a cada setor ruim seguido
+    private void registerBadSector(long position) {
+        synchronized (rescueLock) {
+            skipUntil = Math.max(skipUntil, Math.min(end, position + skipSize));
+            skipSize = Math.min(MAX_SKIP, skipSize * 2);
+        }
+    }
+
+    private void resetSkip() {
+        synchronized (rescueLock) {
+            skipSize = initialSkip;
+        }
+    }
+
+    // Dentro de um salto ou de uma região que o mapa persistente já tem como ilegível
+    private boolean isSkipped(long position, int length) {
+        synchronized (rescueLock) {
+            if (position + length <= skipUntil) return true;
+        }
+        BadRangeMap known = badRanges;
+        return known != null && known.covers(position, position + length);
+    }
+
+    // O trecho toca uma região já conhecida: vai direto à leitura em metades, sem pagar o timeout dela
+    private boolean touchesKnownBad(long position, int length) {
+        BadRangeMap known = badRanges;
+        return known != null && known.overlaps(position, position + length);
+    }
+
+    private Chunk skippedChunk(long position, byte[] buffer, int length) {
+        List<BadRangeMap.Range> bad = new ArrayList<>();
+        markBad(position, buffer, 0, length, bad);
+        return new Chunk(position, buffer, length, bad);
+    }
+
+    private void markBad(long from, byte[] buffer, int offset, int length, List<BadRangeMap.Range> bad) {
+        Arrays.fill(buffer, offset, offset + length, (byte) 0);
+        bad.add(new BadRangeMap.Range(from, from + length));
+        if (badRanges != null) {
+            badRanges.add(from, from + length);
+        }
+    }
+
+    private static List<BadRangeMap.Range> mergeRanges(List<BadRangeMap.Range> ranges) {
+        if (ranges.isEmpty()) return null;
+        List<BadRangeMap.Range> merged = new ArrayList<>();
+        BadRangeMap.Range last = null;
+        for (BadRangeMap.Range range : ranges) {
+            if (last != null && last.getEnd() >= range.getStart()) {
+                last = new BadRangeMap.Range(last.getStart(), Math.max(last.getEnd(), range.getEnd()));
+                merged.set(merged.size() - 1, last);
+            } else {
+                last = range;
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    // Lê sempre blocos inteiros alinhados; o final além de length (fim do dispositivo) é descartado
+    private int readDirect(BlockSource source, long position, byte[] buffer, int length) throws IOException {
+        ByteBuffer aligned = directBuffers.poll();
+        if (aligned == null) {
+            aligned = ByteBuffer.allocateDirect(bufferSize + alignment).alignedSlice(alignment);
+        }
+        try {
+            aligned.clear().limit(roundUp(length, alignment));
+            while (aligned.hasRemaining()) {
+                int bytesRead = source.read(aligned, position + aligned.position());
+                // Leitura curta fora do alinhamento: fim do arquivo, não há como continuar em O_DIRECT
+                if (bytesRead <= 0 || aligned.position() % alignment != 0) break;
+            }
+            int total = Math.min(aligned.position(), length);
+            if (total == 0) return -1;
+            aligned.flip();
+            aligned.get(buffer, 0, total);
+            return total;
+        } finally {
+            directBuffers.add(aligned);
+        }
+    }
+
+    private synchronized void disableDirect(BlockSource source, IOException cause) {
+        if (directSource != source) return;
+        directSource = null;
+        System.err.println("Leitura direta falhou em " + device + ", usando cache: " + cause.getMessage());
+        try {
+            source.close();
+        } catch (IOException e) {
+            // já desligado
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // Sem interromper: interrupção durante a leitura fecharia o canal compartilhado do cache de blocos
+        for (Future<Chunk> pending : inFlight) {
+            pending.cancel(false);
+        }
+        inFlight.clear();
+        readers.shutdown();
+
+        BlockSource direct = directSource;
+        directSource = null;
+        if (direct != null) {
+            try {
+                direct.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar leitura direta: " + e.getMessage());
+            }
+        }
+        synchronized (rescueLock) {
+            if (rescueSource != null) {
+                try {
+                    rescueSource.close();
+                } catch (IOException e) {
+                    System.err.println("Erro ao fechar leitura de recuperação: " + e.getMessage());
+                }
+                rescueSource = null;
+            }
+        }
+    }
+
+    // Destino dos setores que a passada de releitura conseguiu ler
+    interface SectorSink {
+        void accept(long position, byte[] data, int length) throws IOException;
+    }
+
+    static final class Chunk {
+        final long position;
+        final byte[] data;
+        final int length;
+        final List<BadRangeMap.Range> badRanges; // null quando tudo foi lido
+
+        Chunk(long position, byte[] data, int length) {
+            this(position, data, length, null);
+        }
+
+        Chunk(long position, byte[] data, int length, List<BadRangeMap.Range> badRanges) {
+            this.position = position;
+            this.data = data;
+            this.length = length;
+            this.badRanges = badRanges;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package engine;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+// Canal de regiões classificadas (lido, zerado, assinatura, setor danificado, recuperado)
+// do motor para o mapa de blocos. Quem publica só enfileira; quem exibe drena no seu ritmo.
+// Sem assinante, publicar não custa nada além de uma leitura volátil.
+public class ScanRegionFeed {
+    public static final long DEFAULT_GRANULARITY = 1024 * 1024;
+    private static final int MAX_RUN_GRANULES = 64; // regiões longas são publicadas aos poucos
+
+    private static final Map<String, ScanRegionFeed> FEEDS = new ConcurrentHashMap<>();
+
+    private final String devicePath;
+    private final Queue<Region> regions;
+    private volatile boolean subscribed;
+
+    private ScanRegionFeed(String devicePath) {
+        this.devicePath = devicePath;
+        this.regions = new ConcurrentLinkedQueue<>();
+    }
+
+    // Um canal por dispositivo: motor de varredura, recuperação e visualizador se encontram pelo caminho
+    public static ScanRegionFeed forDevice(String devicePath) {
+        String key = Paths.get(devicePath).toAbsolutePath().normalize().toString();
+        return FEEDS.computeIfAbsent(key, ScanRegionFeed::new);
+    }
+
+    public String getDevicePath() { return devicePath; }
+    public boolean isSubscribed() { return subscribed; }
+
+    public void subscribe() {
+        subscribed = true;
+    }
+
+    public void unsubscribe() {
+        subscribed = false;
+        regions.clear();
+    }
+
+    public void publish(long offset, long length, BlockVisualizer.BlockType type) {
+        if (!subscribed || length <= 0) return;
+        regions.add(new Region(offset, length, type));
+    }
+
+    // Entrega as regiões pendentes na ordem de publicação; retorna quantas foram entregues
+    public int drain(Consumer<Region> consumer) {
+        int count = 0;
+        Region region;
+        while ((region = regions.poll()) != null) {
+            consumer.accept(region);
+            count++;
+        }
+        return count;
+    }
+
+    public ScanPublisher newScanPublisher() {
+        return new ScanPublisher(DEFAULT_GRANULARITY);
+    }
+
+    public static final class Region {
+        private final long offset;
+        private final long length;
+        private final BlockVisualizer.BlockType type;
+
+        Region(long offset, long length, BlockVisualizer.BlockType type) {
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+        }
+
+        public long getOffset() { return offset; }
+        public long getLength() { return length; }
+        public BlockVisualizer.BlockType getType() { return type; }
+    }
+
+    // Publicador de uma varredura sequencial (uma thread): classifica o dispositivo em
+    // grânulos e junta grânulos vizinhos de mesma classe antes de enfileirar.
+    // Dentro de um grânulo vale a classe mais relevante: danificado > assinatura > dados > zerado.
+    public final class ScanPublisher {
+        private final long granularity;
+        private long granule = -1;
+        private BlockVisualizer.BlockType granuleType;
+        private long runStart = -1;
+        private long runEnd;
+        private BlockVisualizer.BlockType runType;
+
+        private ScanPublisher(long granularity) {
+            this.granularity = granularity;
+        }
+
+        public void scanned(long offset, int length, boolean zero) {
+            if (!subscribed || length <= 0) return;
+            BlockVisualizer.BlockType type = zero ? BlockVisualizer.BlockType.ZERO : BlockVisualizer.BlockType.SCANNED;
+            long first = offset / granularity;
+            long last = (offset + length - 1) / granularity;
+            for (long g = first; g <= last; g++) {
+                classify(g, type);
+            }
+        }
+
+        public void hit(long offset) {
+            if (!subscribed) return;
+            long g = offset / granularity;
+            if (g < granule) {
+                // Grânulo já publicado: a região nova sobrepõe a anterior no mapa
+                publish(g * granularity, granularity, BlockVisualizer.BlockType.RECOVERABLE);
+            } else {
+                classify(g, BlockVisualizer.BlockType.RECOVERABLE);
+            }
+        }
+
+        public void badSector(long offset, long length) {
+            if (!subscribed) return;
+            finish();
+            publish(offset, length, BlockVisualizer.BlockType.BAD_SECTOR);
+        }
+
+        private void classify(long g, BlockVisualizer.BlockType type) {
+            if (g != granule) {
+                closeGranule();
+                granule = g;
+                granuleType = type;
+            } else if (priority(type) > priority(granuleType)) {
+                granuleType = type;
+            }
+        }
+
+        private void closeGranule() {
+            if (granule < 0) return;
+            long start = granule * granularity;
+            if (runStart >= 0 && runType == granuleType && runEnd == start) {
+                runEnd = start + granularity;
+                if (runEnd - runStart >= MAX_RUN_GRANULES * granularity) {
+                    flushRun();
+                }
+                return;
+            }
+            flushRun();
+            runStart = start;
+            runEnd = start + granularity;
+            runType = granuleType;
+        }
+
+        private void flushRun() {
+            if (runStart >= 0) {
+                publish(runStart, runEnd - runStart, runType);
+                runStart = -1;
+            }
+        }
+
+        // Publica o que estiver acumulado (fim da varredura ou antes de uma região avulsa)
+        public void finish() {
+            closeGranule();
+            granule = -1;
+            flushRun();
+        }
+
+        private int priority(BlockVisualizer.BlockType type) {
+            switch (type) {
+                case BAD_SECTOR: return 3;
+                case RECOVERABLE: return 2;
+                case SCANNED: return 1;
+                default: return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package engine;
+
+import models.RecoveredFile;
+import models.ScanSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Várias varreduras ao mesmo tempo. Cada disco físico tem a sua fila de leitura: tarefas em discos
+// diferentes andam em paralelo, e duas tarefas no mesmo HDD se revezam em fatias longas em vez de
+// disputar a cabeça de leitura a cada buffer. A busca de assinaturas divide os núcleos entre as
+// tarefas pela prioridade de cada uma.
+public class ScanScheduler implements AutoCloseable {
+    private static final long ROTATIONAL_SLICE_BYTES = 64L * 1024 * 1024; // ~0,5 s de leitura sequencial num HDD
+
+    public enum Priority {
+        LOW(1), NORMAL(2), HIGH(4);
+
+        private final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+
+        public int getWeight() { return weight; }
+    }
+
+    public enum JobState { QUEUED, RUNNING, PAUSED, COMPLETED, FAILED, CANCELLED }
+
+    private final FairShareGate cpuGate;
+    private final Map<String, FairShareGate> deviceGates = new ConcurrentHashMap<>();
+    private final List<Job> jobs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService executor;
+
+    public ScanScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // cpuWorkers: quantas tarefas procuram assinaturas ao mesmo tempo
+    public ScanScheduler(int cpuWorkers) {
+        this.cpuGate = new FairShareGate(cpuWorkers, 0);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ScanScheduler-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Job submit(ScanSession session) {
+        return submit(session, Priority.NORMAL, null);
+    }
+
+    public Job submit(ScanSession session, Priority priority) {
+        return submit(session, priority, null);
+    }
+
+    // A tarefa começa na hora; o ouvinte (opcional) recebe o progresso e os arquivos desta sessão
+    public Job submit(ScanSession session, Priority priority, FileRecoveryEngine.RecoveryProgressListener listener) {
+        // A fila é a do disco que a varredura lê: o dispositivo da sessão, mesmo que já exista uma
+        // imagem adquirida dele (ela só substitui o dispositivo em preview e recuperação)
+        String source = session.getDevicePath();
+        String key = deviceKey(source);
+        FairShareGate deviceGate = deviceGates.computeIfAbsent(key, k -> createDeviceGate(k, source));
+        Job job = new Job(session, priority, listener, key, deviceGate);
+        jobs.add(job);
+        executor.execute(job::run);
+        return job;
+    }
+
+    public List<Job> getJobs() { return Collections.unmodifiableList(jobs); }
+    public int getCpuWorkers() { return cpuGate.getPermits(); }
+
+    // Vazão somada de todas as tarefas
+    public long getBytesScanned() {
+        long total = 0;
+        for (Job job : jobs) total += job.getBytesScanned();
+        return total;
+    }
+
+    // Espera todas as tarefas enviadas até agora terminarem
+    public void awaitAll() throws InterruptedException {
+        for (Job job : jobs) job.await();
+    }
+
+    @Override
+    public void close() {
+        for (Job job : jobs) job.cancel();
+        executor.shutdown();
+    }
+
+    // Mesmo disco físico = mesma fila. Imagens e partições contam como o disco que as contém.
+    static String deviceKey(String sourcePath) {
+        Path path = Paths.get(sourcePath);
+        if (MemoryBlockSource.lookup(path) != null) {
+            return "mem:" + path;
+        }
+        String name = DeviceAnalyzer.physicalDeviceName(sourcePath);
+        if (name != null) return name;
+        try {
+            return "fs:" + Files.getFileStore(path).name();
+        } catch (IOException | RuntimeException e) {
+            return path.toAbsolutePath().normalize().toString();
+        }
+    }
+
+    // HDD: uma leitura por vez e fatias longas; SSD/NVMe e memória: tantas leituras quanto a fila aguenta
+    private static FairShareGate createDeviceGate(String key, String sourcePath) {
+        if (key.startsWith("mem:")) {
+            return new FairShareGate(Runtime.getRuntime().availableProcessors(), 0);
+        }
+        ScanStrategy strategy = ScanStrategy.forDevice(sourcePath, false);
+        if (strategy.isRotational()) {
+            return new FairShareGate(1, ROTATIONAL_SLICE_BYTES);
+        }
+        return new FairShareGate(strategy.getReaders(), 0);
+    }
+
+    public final class Job implements ScanControl, FairShareGate.Participant {
+        private final ScanSession session;
+        private final FileRecoveryEngine engine;
+        private final FileRecoveryEngine.RecoveryProgressListener listener;
+        private final String deviceKey;
+        private final FairShareGate deviceGate;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Priority priority;
+        private volatile JobState state = JobState.QUEUED;
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+        private volatile int progress;
+        private volatile long bytesScanned;
+        private volatile String error;
+
+        private Job(ScanSession session, Priority priority, FileRecoveryEngine.RecoveryProgressListener listener,
+                    String deviceKey, FairShareGate deviceGate) {
+            this.session = session;
+            this.priority = priority != null ? priority : Priority.NORMAL;
+            this.listener = listener;
+            this.deviceKey = deviceKey;
+            this.deviceGate = deviceGate;
+            this.engine = new FileRecoveryEngine();
+            this.engine.setScanConfig(session.getConfig());
+            this.engine.setScanControl(this);
+        }
+
+        public ScanSession getSession() { return session; }
+        public Priority getPriority() { return priority; }
+        public JobState getState() { return state; }
+        public int getProgress() { return progress; }
+        public long getBytesScanned() { return bytesScanned; }
+        public String getDeviceKey() { return deviceKey; }
+        public String getError() { return error; }
+        public boolean isDone() { return finished.getCount() == 0; }
+
+        // Vale na hora, inclusive no meio da varredura
+        public void setPriority(Priority priority) {
+            this.priority = priority != null ? priority : Priority.NORMAL;
+            wakeGates();
+        }
+
+        // A tarefa para na próxima leitura ou busca e não ocupa o disco nem a CPU enquanto pausada
+        public void pause() {
+            if (isDone()) return;
+            paused = true;
+            state = JobState.PAUSED;
+            session.setStatus("Pausado");
+        }
+
+        public void resume() {
+            if (!paused || isDone()) return;
+            paused = false;
+            state = JobState.RUNNING;
+            session.setStatus("Varrendo");
+            wakeGates();
+        }
+
+        // Os arquivos já encontrados continuam na sessão
+        public void cancel() {
+            cancelled = true;
+            engine.stopScanning();
+            wakeGates();
+        }
+
+        public void await() throws InterruptedException {
+            finished.await();
+        }
+
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        private void run() {
+            try {
+                if (cancelled) {
+                    finish(JobState.CANCELLED, "Cancelado");
+                    return;
+                }
+                if (!paused) state = JobState.RUNNING;
+                session.setStatus(paused ? "Pausado" : "Varrendo");
+                engine.setProgressListener(new SessionProgress());
+
+                Set<String> types = new LinkedHashSet<>();
+                for (String format : session.getTargetFormats()) {
+                    types.add(format.toLowerCase(Locale.ROOT));
+                }
+                engine.scanForDeletedFiles(session, types);
+                error = engine.getLastError();
+
+                if (cancelled) {
+                    finish(JobState.CANCELLED, "Cancelado");
+                } else if (error != null) {
+                    finish(JobState.FAILED, "Falhou: " + error);
+                } else {
+                    finish(JobState.COMPLETED, "Concluído");
+                }
+            } catch (RuntimeException e) {
+                error = e.getMessage() != null ? e.getMessage() : e.toString();
+                System.err.println("Erro na tarefa de varredura " + session.getDevicePath() + ": " + error);
+                finish(JobState.FAILED, "Falhou: " + error);
+            } finally {
+                deviceGate.leave(this);
+                cpuGate.leave(this);
+                finished.countDown();
+            }
+        }
+
+        private void finish(JobState finalState, String status) {
+            paused = false;
+            state = finalState;
+            session.setStatus(status);
+            if (finalState == JobState.COMPLETED) {
+                session.setCompleted(true);
+            } else {
+                session.setEndTime(new Date());
+            }
+        }
+
+        private void wakeGates() {
+            deviceGate.wakeUp();
+            cpuGate.wakeUp();
+        }
+
+        @Override
+        public void beginRead() throws InterruptedException { deviceGate.acquire(this); }
+
+        @Override
+        public void endRead(long bytes) { deviceGate.release(this, bytes); }
+
+        @Override
+        public void beginMatch() throws InterruptedException { cpuGate.acquire(this); }
+
+        @Override
+        public void endMatch(long bytes) { cpuGate.release(this, bytes); }
+
+        @Override
+        public int getWeight() { return priority.getWeight(); }
+
+        @Override
+        public boolean isPaused() { return paused; }
+
+        @Override
+        public boolean isCancelled() { return cancelled; }
+
+        // Arquivos entram na sessão assim que aparecem; o ouvinte externo recebe o mesmo fluxo
+        private final class SessionProgress implements FileRecoveryEngine.RecoveryProgressListener {
+            @Override
+            public void onProgressUpdate(int percent, long scanned, long total) {
+                progress = percent;
+                bytesScanned = scanned;
+                if (listener != null) listener.onProgressUpdate(percent, scanned, total);
+            }
+
+            // A lista da sessão é copia-ao-escrever: cada inclusão copia tudo, então os arquivos entram
+            // em lotes (sem wantsEveryEvent, a ProgressCoalescer só entrega por onFilesFound)
+            @Override
+            public void onFileFound(RecoveredFile file) {
+                session.addRecoveredFiles(Collections.singletonList(file));
+                if (listener != null) listener.onFileFound(file);
+            }
+
+            @Override
+            public void onFilesFound(RecoveredFile[] files) {
+                session.addRecoveredFiles(Arrays.asList(files));
+                if (listener != null) listener.onFilesFound(files);
+            }
+
+            @Override
+            public void onRecoveryProgress(RecoveredFile file, int percent) {
+                if (listener != null) listener.onRecoveryProgress(file, percent);
+            }
+        }
+    }
+}
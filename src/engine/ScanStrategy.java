@@ -0,0 +1,83 @@
+package engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Estratégia de leitura escolhida a partir das características do dispositivo:
+// tamanho do buffer, alinhamento das leituras e quantas leituras ficam em voo
+public class ScanStrategy {
+    private static final long BENCHMARK_BYTES_PER_SIZE = 16L * 1024 * 1024;
+    private static final int ROTATIONAL_BUFFER = 1024 * 1024;
+    private static final int SOLID_STATE_BUFFER = 256 * 1024;
+    private static final int MAX_READERS = 8;
+
+    // Um teste de leitura por dispositivo durante a execução do programa
+    private static final Map<String, ScanStrategy> CACHE = new ConcurrentHashMap<>();
+
+    private final int bufferSize;
+    private final int alignment;
+    private final int readers;
+    private final boolean rotational;
+    private final String basis;
+
+    private ScanStrategy(int bufferSize, int alignment, int readers, boolean rotational, String basis) {
+        this.bufferSize = bufferSize;
+        this.alignment = alignment;
+        this.readers = readers;
+        this.rotational = rotational;
+        this.basis = basis;
+    }
+
+    public static ScanStrategy forDevice(String devicePath, boolean runBenchmark) {
+        String key = devicePath + (runBenchmark ? "#benchmark" : "");
+        return CACHE.computeIfAbsent(key, k -> {
+            DeviceAnalyzer.StorageDevice device = DeviceAnalyzer.describe(devicePath);
+            if (runBenchmark) {
+                device.setBenchmark(DeviceAnalyzer.benchmark(devicePath, BENCHMARK_BYTES_PER_SIZE));
+            }
+            return choose(device);
+        });
+    }
+
+    public static ScanStrategy choose(DeviceAnalyzer.StorageDevice device) {
+        boolean rotational = device.isRotational();
+        int alignment = Math.max(device.getLogicalSectorSize(), device.getPhysicalSectorSize());
+
+        int bufferSize;
+        String basis;
+        DeviceAnalyzer.ReadBenchmark benchmark = device.getBenchmark();
+        if (benchmark != null && benchmark.getBestThroughput() > 0) {
+            bufferSize = benchmark.getBestBlockSize();
+            basis = String.format("medido %.0f MB/s", benchmark.getBestThroughput());
+        } else {
+            // Sem medição: leituras longas no HDD, menores e paralelas no SSD, nunca abaixo do read-ahead
+            bufferSize = Math.max(rotational ? ROTATIONAL_BUFFER : SOLID_STATE_BUFFER, device.getReadAheadKb() * 1024);
+            basis = device.isIoCharacteristicsKnown() ? "sysfs" : "padrão";
+        }
+        bufferSize = roundUp(bufferSize, Math.max(alignment, BlockCache.BLOCK_SIZE));
+
+        // HDD: uma leitura por vez evita buscas; SSD/NVMe: paralelismo proporcional à fila do dispositivo
+        int readers = 1;
+        if (!rotational) {
+            int byQueue = device.getQueueDepth() > 0 ? device.getQueueDepth() / 16 : 4;
+            readers = Math.max(2, Math.min(Math.min(MAX_READERS, Runtime.getRuntime().availableProcessors()), byQueue));
+        }
+
+        return new ScanStrategy(bufferSize, alignment, readers, rotational, basis);
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    public int getBufferSize() { return bufferSize; }
+    public int getAlignment() { return alignment; }
+    public int getReaders() { return readers; }
+    public boolean isRotational() { return rotational; }
+
+    @Override
+    public String toString() {
+        return String.format("Buffer %d KB, alinhamento %d B, %d leitura(s) em paralelo, %s (%s)",
+                bufferSize / 1024, alignment, readers, rotational ? "rotacional" : "estado sólido", basis);
+    }
+}
@@ -0,0 +1,738 @@
+package engine;
+
+import models.RecoveredFile;
+import models.ScanConfig;
+import models.ScanSession;
+import utils.Checksum;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Sessão salva em formato binário compacto: cabeçalho com sessão e configuração, registros dos
+// arquivos encontrados (opcionalmente comprimidos) e um rodapé com a contagem. A gravação é em
+// fluxo, registro a registro; a leitura mapeia o arquivo em memória, então uma sessão com milhões
+// de arquivos reabre em cerca de um segundo, pronta para recuperar sem varrer de novo.
+//
+//   "CRSESS01" | opções | sessão e configuração | registros... | fim (0xFF)
+//   rodapé: quantidade | início dos registros | fim dos registros | "CRSESEND"
+//
+// Números são varints; posições vêm em diferença para a anterior e datas em diferença para o
+// início da sessão. Nomes no padrão do motor (recovered_<offset>.<ext>) não são gravados.
+public final class SessionStore {
+    private static final byte[] MAGIC = {'C', 'R', 'S', 'E', 'S', 'S', '0', '1'};
+    private static final byte[] END_MAGIC = {'C', 'R', 'S', 'E', 'S', 'E', 'N', 'D'};
+    private static final int TRAILER_SIZE = 3 * 8 + END_MAGIC.length;
+    private static final int OPTION_COMPRESSED = 1;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    // Byte de opções de cada registro
+    private static final int CUSTOM_NAME = 1;
+    private static final int HAS_PATH = 1 << 1;
+    private static final int HAS_CHECKSUM = 1 << 2;
+    private static final int CORRUPTED = 1 << 3;
+    private static final int HAS_QUALITY = 1 << 4;
+    private static final int STATUS_SHIFT = 5; // 2 bits: ordinal do RecoveryStatus
+    private static final int CUSTOM_END = 1 << 7;
+    private static final int END_OF_RECORDS = 0xFF; // status 3 não existe, então não colide
+
+    private static final RecoveredFile.RecoveryStatus[] STATUSES = RecoveredFile.RecoveryStatus.values();
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private SessionStore() {
+    }
+
+    public static boolean isSessionFile(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+                // lê o cabeçalho inteiro
+            }
+            return Arrays.equals(magic.array(), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void save(ScanSession session, Path file, boolean compress) throws IOException {
+        save(session, session.getRecoveredFiles(), file, compress);
+    }
+
+    // Os arquivos não precisam estar na sessão: a tabela da interface grava a própria lista
+    public static void save(ScanSession session, Iterable<RecoveredFile> files, Path file, boolean compress)
+            throws IOException {
+        try (Writer writer = Writer.create(file, session, compress)) {
+            for (RecoveredFile recovered : files) {
+                writer.write(recovered);
+            }
+            writer.finish();
+        }
+    }
+
+    // Reabre a sessão com configuração e arquivos encontrados
+    public static ScanSession load(Path file) throws IOException {
+        try (Reader reader = Reader.open(file)) {
+            List<RecoveredFile> files = new ArrayList<>((int) Math.min(reader.getCount(), Integer.MAX_VALUE - 8));
+            RecoveredFile recovered;
+            while ((recovered = reader.next()) != null) {
+                files.add(recovered);
+            }
+            ScanSession session = reader.getSession();
+            session.addRecoveredFiles(files);
+            return session;
+        }
+    }
+
+    // Leitura registro a registro, sem montar a lista: relatórios de sessões enormes em memória constante
+    public static final class Reader implements Closeable {
+        private final Path file;
+        private final FileChannel channel;
+        private final ScanSession session;
+        private final long count;
+        private final Input records;
+        private final RecordDecoder decoder;
+        private long read;
+
+        private Reader(Path file, FileChannel channel, ScanSession session, long count, Input records) {
+            this.file = file;
+            this.channel = channel;
+            this.session = session;
+            this.count = count;
+            this.records = records;
+            this.decoder = new RecordDecoder(session.getStartTime().getTime());
+        }
+
+        public static Reader open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < MAGIC.length + 1 + TRAILER_SIZE) {
+                    throw new IOException("Arquivo de sessão inválido: " + file);
+                }
+                ByteBuffer trailer = readAt(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+                long count = trailer.getLong();
+                long recordsStart = trailer.getLong();
+                long recordsEnd = trailer.getLong();
+                byte[] endMagic = new byte[END_MAGIC.length];
+                trailer.get(endMagic);
+                if (!Arrays.equals(endMagic, END_MAGIC) || count < 0 || recordsStart < MAGIC.length
+                        || recordsEnd < recordsStart || recordsEnd > size - TRAILER_SIZE) {
+                    throw new IOException("Arquivo de sessão incompleto ou corrompido: " + file);
+                }
+
+                ByteBuffer header = readAt(channel, 0, (int) recordsStart);
+                byte[] magic = new byte[MAGIC.length];
+                header.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("Arquivo de sessão inválido: " + file);
+                }
+                Input meta = new Input(header);
+                int options = meta.readByte();
+                ScanSession session = readSession(meta);
+
+                Input records = (options & OPTION_COMPRESSED) != 0
+                        ? new InflatingInput(channel, recordsStart, recordsEnd)
+                        : new MappedInput(channel, recordsStart, recordsEnd);
+                return new Reader(file, channel, session, count, records);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // Sessão e configuração, ainda sem os arquivos
+        public ScanSession getSession() { return session; }
+        public long getCount() { return count; }
+
+        // null depois do último registro
+        public RecoveredFile next() throws IOException {
+            RecoveredFile recovered = decoder.read(records);
+            if (recovered != null) {
+                read++;
+            } else if (read != count) {
+                throw new IOException("Arquivo de sessão corrompido: " + read + " de " + count + " registros em " + file);
+            }
+            return recovered;
+        }
+
+        @Override
+        public void close() throws IOException {
+            records.close();
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Arquivo de sessão truncado");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Gravação em fluxo num temporário; só finish() coloca o arquivo no lugar
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final Output out;
+        private final RecordEncoder encoder;
+        private final long recordsStart;
+        private long count;
+        private boolean finished;
+
+        private Writer(Path target, Path temp, FileChannel channel, Output out, RecordEncoder encoder, long recordsStart) {
+            this.target = target;
+            this.temp = temp;
+            this.channel = channel;
+            this.out = out;
+            this.encoder = encoder;
+            this.recordsStart = recordsStart;
+        }
+
+        public static Writer create(Path file, ScanSession session, boolean compress) throws IOException {
+            Path target = file.toAbsolutePath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                Output out = new Output(channel);
+                out.writeBytes(MAGIC);
+                out.writeByte(compress ? OPTION_COMPRESSED : 0);
+                writeSession(out, session);
+                out.flush();
+                long recordsStart = channel.position();
+                if (compress) out.startDeflating();
+                return new Writer(target, temp, channel, out, new RecordEncoder(session.getStartTime().getTime()),
+                        recordsStart);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+
+        public void write(RecoveredFile file) throws IOException {
+            encoder.write(out, file);
+            count++;
+        }
+
+        public long getCount() { return count; }
+
+        public void finish() throws IOException {
+            out.writeByte(END_OF_RECORDS);
+            out.finish();
+            long recordsEnd = channel.position();
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(count).putLong(recordsStart).putLong(recordsEnd).put(END_MAGIC).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        // Sem finish() (erro no meio da gravação) o temporário é descartado e o arquivo anterior fica
+        @Override
+        public void close() throws IOException {
+            if (finished) return;
+            out.end();
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // ---- Sessão e configuração ----
+
+    private static void writeSession(Output out, ScanSession session) throws IOException {
+        out.writeString(session.getSessionId());
+        out.writeVarLong(session.getStartTime().getTime());
+        out.writeVarLong(session.getEndTime() != null ? session.getEndTime().getTime() + 1 : 0);
+        out.writeString(session.getDevicePath());
+        out.writeString(session.getScanType());
+        out.writeString(session.getStatus());
+        out.writeByte(session.isCompleted() ? 1 : 0);
+
+        List<String> formats = session.getTargetFormats();
+        out.writeVarLong(formats.size());
+        for (String format : formats) {
+            out.writeString(format);
+        }
+
+        // Configuração como pares nome/valor: campos novos ou removidos não quebram sessões antigas
+        Map<String, String> config = session.getConfig() != null ? configEntries(session.getConfig()) : null;
+        out.writeVarLong(config != null ? config.size() + 1 : 0);
+        if (config != null) {
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeString(entry.getValue());
+            }
+        }
+
+        // Campos opcionais no fim do cabeçalho: sessões antigas simplesmente não os têm
+        out.writeString(session.getScanStrategy());
+    }
+
+    private static ScanSession readSession(Input in) throws IOException {
+        String sessionId = in.readString();
+        Date startTime = new Date(in.readVarLong());
+        long endTime = in.readVarLong();
+        String devicePath = in.readString();
+        String scanType = in.readString();
+        String status = in.readString();
+        boolean completed = in.readByte() != 0;
+
+        int formatCount = (int) in.readVarLong();
+        List<String> formats = new ArrayList<>(formatCount);
+        for (int i = 0; i < formatCount; i++) {
+            formats.add(in.readString());
+        }
+
+        ScanConfig config = null;
+        long entries = in.readVarLong();
+        if (entries > 0) {
+            config = new ScanConfig();
+            for (long i = 1; i < entries; i++) {
+                applyConfigEntry(config, in.readString(), in.readString());
+            }
+        }
+        String strategy = in.hasRemaining() ? in.readString() : null;
+
+        ScanSession session = new ScanSession(sessionId, startTime, devicePath, scanType, formats, config);
+        session.setStatus(status);
+        session.setScanStrategy(strategy);
+        if (endTime > 0) session.setEndTime(new Date(endTime - 1));
+        session.setCompleted(completed);
+        return session;
+    }
+
+    private static Map<String, String> configEntries(ScanConfig config) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("scanDepth", config.getScanDepth().name());
+        entries.put("targetFileSystem", config.getTargetFileSystem().name());
+        entries.put("maxScanSize", Long.toString(config.getMaxScanSize()));
+        entries.put("recoverFragmentedFiles", Boolean.toString(config.shouldRecoverFragmentedFiles()));
+        entries.put("ignoreSystemFiles", Boolean.toString(config.shouldIgnoreSystemFiles()));
+        entries.put("knownFileHashList", config.getKnownFileHashList());
+        entries.put("createPreviews", Boolean.toString(config.shouldCreatePreviews()));
+        entries.put("verifyChecksums", Boolean.toString(config.shouldVerifyChecksums()));
+        entries.put("checksumAlgorithm", config.getChecksumAlgorithm().name());
+        entries.put("deduplicateOutput", Boolean.toString(config.shouldDeduplicateOutput()));
+        entries.put("threadCount", Integer.toString(config.getThreadCount()));
+        entries.put("progressIntervalMs", Long.toString(config.getProgressIntervalMs()));
+        entries.put("directIo", Boolean.toString(config.shouldUseDirectIo()));
+        entries.put("readLimitMegabytesPerSecond", Double.toString(config.getReadLimitMegabytesPerSecond()));
+        entries.put("readLimitIops", Integer.toString(config.getReadLimitIops()));
+        entries.put("readBurstSeconds", Double.toString(config.getReadBurstSeconds()));
+        entries.put("readRetries", Integer.toString(config.getReadRetries()));
+        entries.put("imageOutputPath", config.getImageOutputPath());
+        entries.put("outputDirectory", config.getOutputDirectory());
+        return entries;
+    }
+
+    private static void applyConfigEntry(ScanConfig config, String name, String value) {
+        try {
+            switch (name) {
+                case "scanDepth": config.setScanDepth(ScanConfig.ScanDepth.valueOf(value)); break;
+                case "targetFileSystem": config.setTargetFileSystem(ScanConfig.FileSystem.valueOf(value)); break;
+                case "maxScanSize": config.setMaxScanSize(Long.parseLong(value)); break;
+                case "recoverFragmentedFiles": config.setRecoverFragmentedFiles(Boolean.parseBoolean(value)); break;
+                case "ignoreSystemFiles": config.setIgnoreSystemFiles(Boolean.parseBoolean(value)); break;
+                case "knownFileHashList": config.setKnownFileHashList(value); break;
+                case "createPreviews": config.setCreatePreviews(Boolean.parseBoolean(value)); break;
+                case "verifyChecksums": config.setVerifyChecksums(Boolean.parseBoolean(value)); break;
+                case "checksumAlgorithm": config.setChecksumAlgorithm(Checksum.Algorithm.valueOf(value)); break;
+                case "deduplicateOutput": config.setDeduplicateOutput(Boolean.parseBoolean(value)); break;
+                case "threadCount": config.setThreadCount(Integer.parseInt(value)); break;
+                case "progressIntervalMs": config.setProgressIntervalMs(Long.parseLong(value)); break;
+                case "directIo": config.setDirectIo(Boolean.parseBoolean(value)); break;
+                case "readLimitMegabytesPerSecond": config.setReadLimitMegabytesPerSecond(Double.parseDouble(value)); break;
+                case "readLimitIops": config.setReadLimitIops(Integer.parseInt(value)); break;
+                case "readBurstSeconds": config.setReadBurstSeconds(Double.parseDouble(value)); break;
+                case "readRetries": config.setReadRetries(Integer.parseInt(value)); break;
+                case "imageOutputPath": config.setImageOutputPath(value); break;
+                case "outputDirectory": config.setOutputDirectory(value); break;
+                default: break; // campo de outra versão: ignorado
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println("Configuração salva ignorada (" + name + "=" + value + "): " + e.getMessage());
+        }
+    }
+
+    // ---- Registros ----
+
+    private static final class RecordEncoder {
+        private final long baseTime;
+        private final Map<String, Integer> extensions = new HashMap<>();
+        private final StringBuilder name = new StringBuilder(32);
+        private long previousStart;
+
+        RecordEncoder(long baseTime) {
+            this.baseTime = baseTime;
+        }
+
+        void write(Output out, RecoveredFile file) throws IOException {
+            long start = file.getStartOffset();
+            long size = file.getFileSize();
+            String extension = file.getFileExtension();
+            boolean customName = !isDefaultName(file.getFileName(), start, extension);
+            long endDelta = file.getEndOffset() - start - size;
+
+            int flags = file.getRecoveryStatus().ordinal() << STATUS_SHIFT;
+            if (customName) flags |= CUSTOM_NAME;
+            if (file.getFilePath() != null) flags |= HAS_PATH;
+            if (file.getChecksum() != null) flags |= HAS_CHECKSUM;
+            if (file.isCorrupted()) flags |= CORRUPTED;
+            if (file.getRecoveryQuality() != 0) flags |= HAS_QUALITY;
+            if (endDelta != 0) flags |= CUSTOM_END;
+
+            out.writeByte(flags);
+            out.writeZigZag(start - previousStart);
+            out.writeVarLong(size);
+            Integer index = extensions.get(extension);
+            if (index != null) {
+                out.writeVarLong(index);
+            } else {
+                // Primeira ocorrência: índice novo seguido do texto
+                out.writeVarLong(extensions.size());
+                out.writeString(extension);
+                extensions.put(extension, extensions.size());
+            }
+            out.writeZigZag(file.getRecoveryDate() != null ? file.getRecoveryDate().getTime() - baseTime : 0);
+            if (customName) out.writeString(file.getFileName());
+            if (file.getFilePath() != null) out.writeString(file.getFilePath());
+            if (file.getChecksum() != null) out.writeString(file.getChecksum());
+            if (file.getRecoveryQuality() != 0) out.writeLong(Double.doubleToRawLongBits(file.getRecoveryQuality()));
+            if (endDelta != 0) out.writeZigZag(endDelta);
+            previousStart = start;
+        }
+
+        private boolean isDefaultName(String fileName, long start, String extension) {
+            name.setLength(0);
+            appendDefaultName(name, start, extension);
+            return fileName != null && name.length() == fileName.length() && fileName.contentEquals(name);
+        }
+    }
+
+    private static final class RecordDecoder {
+        private final long baseTime;
+        private final List<String> extensions = new ArrayList<>();
+        private final StringBuilder name = new StringBuilder(32);
+        private long previousStart;
+
+        RecordDecoder(long baseTime) {
+            this.baseTime = baseTime;
+        }
+
+        // null no marcador de fim
+        RecoveredFile read(Input in) throws IOException {
+            int flags = in.readByte();
+            if (flags == END_OF_RECORDS) return null;
+            int status = (flags >>> STATUS_SHIFT) & 3;
+            if (status >= STATUSES.length) throw new IOException("Registro inválido no arquivo de sessão");
+
+            long start = previousStart + in.readZigZag();
+            long size = in.readVarLong();
+            int index = (int) in.readVarLong();
+            if (index == extensions.size()) {
+                extensions.add(in.readString());
+            } else if (index > extensions.size()) {
+                throw new IOException("Registro inválido no arquivo de sessão");
+            }
+            String extension = extensions.get(index);
+            long foundAt = baseTime + in.readZigZag();
+
+            String fileName;
+            if ((flags & CUSTOM_NAME) != 0) {
+                fileName = in.readString();
+            } else {
+                name.setLength(0);
+                appendDefaultName(name, start, extension);
+                fileName = name.toString();
+            }
+            String path = (flags & HAS_PATH) != 0 ? in.readString() : null;
+            String checksum = (flags & HAS_CHECKSUM) != 0 ? in.readString() : null;
+            double quality = (flags & HAS_QUALITY) != 0 ? Double.longBitsToDouble(in.readLong()) : 0;
+            long end = start + size + ((flags & CUSTOM_END) != 0 ? in.readZigZag() : 0);
+            previousStart = start;
+
+            RecoveredFile file = new RecoveredFile(fileName, extension, size, start, end);
+            file.setRecoveryDate(new Date(foundAt));
+            file.setRecoveryStatus(STATUSES[status]);
+            file.setCorrupted((flags & CORRUPTED) != 0);
+            file.setRecoveryQuality(quality);
+            file.setFilePath(path);
+            file.setChecksum(checksum);
+            return file;
+        }
+    }
+
+    // Mesmo nome que o motor dá aos arquivos encontrados, sem passar por String.format
+    private static void appendDefaultName(StringBuilder builder, long start, String extension) {
+        builder.append("recovered_");
+        int digits = Math.max(12, (64 - Long.numberOfLeadingZeros(start) + 3) / 4);
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            builder.append(HEX[(int) (start >>> shift) & 0xF]);
+        }
+        builder.append('.').append(extension);
+    }
+
+    // ---- Codificação ----
+
+    // Buffer próprio sobre o canal; na seção de registros pode passar por um Deflater
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer compressed;
+        private Deflater deflater;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void startDeflating() {
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+            compressed = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        void writeByte(int value) throws IOException {
+            if (!buffer.hasRemaining()) drain();
+            buffer.put((byte) value);
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) drain();
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeZigZag(long value) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        // 0 = null; senão tamanho + 1 seguido dos bytes UTF-8
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        void flush() throws IOException {
+            drain();
+        }
+
+        void finish() throws IOException {
+            drain();
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflateInto();
+                }
+                deflater.end();
+            }
+        }
+
+        void end() {
+            if (deflater != null) deflater.end();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            if (deflater == null) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } else if (buffer.hasRemaining()) {
+                deflater.setInput(buffer.array(), 0, buffer.limit());
+                while (!deflater.needsInput()) {
+                    deflateInto();
+                }
+            }
+            buffer.clear();
+        }
+
+        private void deflateInto() throws IOException {
+            int length = deflater.deflate(compressed.array(), 0, compressed.capacity());
+            compressed.clear().limit(length);
+            while (compressed.hasRemaining()) {
+                channel.write(compressed);
+            }
+        }
+    }
+
+    private static class Input {
+        protected ByteBuffer buffer;
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // Chamado só com o buffer esgotado; false no fim dos dados
+        boolean fill() throws IOException {
+            return false;
+        }
+
+        void close() {
+        }
+
+        final boolean hasRemaining() throws IOException {
+            return buffer.hasRemaining() || fill();
+        }
+
+        final int readByte() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) throw new EOFException("Arquivo de sessão truncado");
+            return buffer.get() & 0xFF;
+        }
+
+        final long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Número inválido no arquivo de sessão");
+        }
+
+        final long readZigZag() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        final long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        final String readString() throws IOException {
+            long length = readVarLong();
+            if (length == 0) return null;
+            if (length - 1 > Integer.MAX_VALUE - 8) throw new IOException("Texto inválido no arquivo de sessão");
+            byte[] bytes = new byte[(int) (length - 1)];
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining() && !fill()) throw new EOFException("Arquivo de sessão truncado");
+                int count = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, count);
+                offset += count;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Registros sem compressão: janelas mapeadas do arquivo, sem cópia para o heap
+    private static final class MappedInput extends Input {
+        private final FileChannel channel;
+        private final long end;
+        private long next;
+
+        MappedInput(FileChannel channel, long start, long end) {
+            super(ByteBuffer.allocate(0));
+            this.channel = channel;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        boolean fill() throws IOException {
+            if (next >= end) return false;
+            long length = Math.min(MAP_WINDOW, end - next);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, next, length);
+            next += length;
+            return true;
+        }
+    }
+
+    private static final class InflatingInput extends Input {
+        private final FileChannel channel;
+        private final long end;
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private final byte[] output = new byte[BUFFER_SIZE];
+        private long next;
+
+        InflatingInput(FileChannel channel, long start, long end) {
+            super(ByteBuffer.allocate(0));
+            this.channel = channel;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        boolean fill() throws IOException {
+            try {
+                while (true) {
+                    int length = inflater.inflate(output);
+                    if (length > 0) {
+                        buffer = ByteBuffer.wrap(output, 0, length);
+                        return true;
+                    }
+                    if (inflater.finished()) return false;
+                    if (!inflater.needsInput() || next >= end) {
+                        throw new EOFException("Arquivo de sessão truncado");
+                    }
+                    ByteBuffer chunk = ByteBuffer.wrap(input, 0, (int) Math.min(input.length, end - next));
+                    int read = channel.read(chunk, next);
+                    if (read <= 0) throw new EOFException("Arquivo de sessão truncado");
+                    next += read;
+                    inflater.setInput(input, 0, read);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Arquivo de sessão corrompido: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        void close() {
+            inflater.end();
+        }
+    }
+}
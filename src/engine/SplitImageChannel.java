@@ -0,0 +1,240 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Imagem raw dividida em segmentos (evidencia.001, evidencia.002, ...) vista como um único canal
+// somente leitura. Leituras posicionais atravessam as fronteiras dos segmentos, então varredura,
+// cache de blocos e recuperação usam o conjunto sem remontá-lo em disco.
+public class SplitImageChannel extends FileChannel {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(.*)\\.(\\d{3,})");
+
+    private final FileChannel[] segments;
+    private final long[] offsets;      // posição lógica onde cada segmento começa
+    private final long segmentSize;    // tamanho comum dos segmentos (0 se variam)
+    private final long size;
+    private long position;
+
+    private SplitImageChannel(List<Path> paths) throws IOException {
+        this.segments = new FileChannel[paths.size()];
+        this.offsets = new long[paths.size() + 1];
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = FileChannel.open(paths.get(i), StandardOpenOption.READ);
+                offsets[i + 1] = offsets[i] + segments[i].size();
+            }
+        } catch (IOException e) {
+            closeSegments();
+            throw e;
+        }
+        this.size = offsets[segments.length];
+
+        // Segmentos de mesmo tamanho (o último pode ser menor): posição -> segmento por divisão
+        long common = segments.length > 1 ? offsets[1] : 0;
+        for (int i = 1; i < segments.length - 1 && common > 0; i++) {
+            if (offsets[i + 1] - offsets[i] != common) common = 0;
+        }
+        this.segmentSize = common;
+    }
+
+    // Caminho de um segmento numerado (.001, .000, ...) cujo conjunto tem mais de um arquivo
+    public static boolean isSplitImage(Path path) {
+        return findSegments(path).size() > 1;
+    }
+
+    public static SplitImageChannel open(Path path) throws IOException {
+        List<Path> segments = findSegments(path);
+        if (segments.isEmpty()) {
+            throw new IOException("Não é um segmento de imagem dividida: " + path);
+        }
+        return new SplitImageChannel(segments);
+    }
+
+    // Todos os segmentos do conjunto, em ordem e sem lacunas na numeração, começando no menor número
+    static List<Path> findSegments(Path path) {
+        List<Path> result = new ArrayList<>();
+        Path fileName = path.getFileName();
+        if (fileName == null) return result;
+        Matcher matcher = SEGMENT_NAME.matcher(fileName.toString());
+        if (!matcher.matches() || !Files.isRegularFile(path)) return result;
+
+        String base = matcher.group(1);
+        int width = matcher.group(2).length();
+        Path directory = path.toAbsolutePath().getParent();
+        int first = Files.isRegularFile(segmentPath(directory, base, 0, width)) ? 0 : 1;
+        for (int number = first; ; number++) {
+            Path segment = segmentPath(directory, base, number, width);
+            if (!Files.isRegularFile(segment)) break;
+            result.add(segment);
+        }
+        return result;
+    }
+
+    private static Path segmentPath(Path directory, String base, int number, int width) {
+        return directory.resolve(String.format("%s.%0" + width + "d", base, number));
+    }
+
+    public int getSegmentCount() { return segments.length; }
+
+    private int segmentAt(long logicalPosition) {
+        if (segmentSize > 0) {
+            return (int) Math.min(logicalPosition / segmentSize, segments.length - 1);
+        }
+        // Tamanhos variados: busca binária nas posições iniciais
+        int low = 0, high = segments.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= logicalPosition) low = mid; else high = mid - 1;
+        }
+        return low;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long logicalPosition) throws IOException {
+        if (logicalPosition < 0) throw new IllegalArgumentException("Posição negativa");
+        ensureOpen();
+        if (logicalPosition >= size) return -1;
+
+        int total = 0;
+        int segment = segmentAt(logicalPosition);
+        while (dst.hasRemaining() && segment < segments.length) {
+            long offset = logicalPosition + total - offsets[segment];
+            long available = offsets[segment + 1] - offsets[segment] - offset;
+            if (available <= 0) {
+                segment++;
+                continue;
+            }
+
+            int limit = dst.limit();
+            if (dst.remaining() > available) {
+                dst.limit(dst.position() + (int) available);
+            }
+            try {
+                int bytesRead = segments[segment].read(dst, offset);
+                if (bytesRead <= 0) break;
+                total += bytesRead;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        int bytesRead = read(dst, position);
+        if (bytesRead > 0) position += bytesRead;
+        return bytesRead;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) continue;
+            int bytesRead = read(dsts[i]);
+            if (bytesRead < 0) return total == 0 ? -1 : total;
+            total += bytesRead;
+            if (dsts[i].hasRemaining()) break;
+        }
+        return total;
+    }
+
+    // Cópia segmento a segmento, aproveitando o transferTo nativo de cada arquivo
+    @Override
+    public long transferTo(long logicalPosition, long count, WritableByteChannel target) throws IOException {
+        ensureOpen();
+        long total = 0;
+        while (total < count && logicalPosition + total < size) {
+            long current = logicalPosition + total;
+            int segment = segmentAt(current);
+            long offset = current - offsets[segment];
+            long available = offsets[segment + 1] - current;
+            long transferred = segments[segment].transferTo(offset, Math.min(count - total, available), target);
+            if (transferred <= 0) break;
+            total += transferred;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long position() { return position; }
+
+    @Override
+    public synchronized FileChannel position(long newPosition) {
+        if (newPosition < 0) throw new IllegalArgumentException("Posição negativa");
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() { return size; }
+
+    @Override
+    public int write(ByteBuffer src) { throw new NonWritableChannelException(); }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) { throw new NonWritableChannelException(); }
+
+    @Override
+    public int write(ByteBuffer src, long position) { throw new NonWritableChannelException(); }
+
+    @Override
+    public FileChannel truncate(long size) { throw new NonWritableChannelException(); }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public void force(boolean metaData) {
+        // somente leitura: nada a gravar
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) {
+        throw new UnsupportedOperationException("Mapeamento de imagem dividida não suportado");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Bloqueio de imagem dividida não suportado");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Bloqueio de imagem dividida não suportado");
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) throw new ClosedChannelException();
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        closeSegments();
+    }
+
+    private void closeSegments() throws IOException {
+        IOException failure = null;
+        for (FileChannel segment : segments) {
+            if (segment == null) continue;
+            try {
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -2,14 +2,16 @@ package gui;
 
 import engine.BlockVisualizer;
 import engine.DeviceAnalyzer;
+import engine.DeviceInventory;
+import engine.ScanRegionFeed;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.text.DecimalFormat;
+import java.util.List;
 
 public class DeviceAnalysis extends JPanel {
-    private DeviceAnalyzer deviceAnalyzer;
+    private DeviceInventory deviceInventory;
     private BlockVisualizer blockVisualizer;
     private JTable deviceTable;
     private DefaultTableModel tableModel;
@@ -17,15 +19,22 @@ public class DeviceAnalysis extends JPanel {
     private JLabel infoLabel;
 
     public DeviceAnalysis() {
-        deviceAnalyzer = new DeviceAnalyzer();
+        deviceInventory = DeviceInventory.getInstance();
         initializeComponents();
         setupLayout();
-        loadDevices();
+
+        // A descoberta roda em segundo plano; a tela mostra o cache e é atualizada quando ela termina
+        deviceInventory.addListener(devices -> SwingUtilities.invokeLater(() -> showDevices(devices)));
+        showDevices(deviceInventory.getDevices());
+        if (!deviceInventory.isLoaded()) {
+            infoLabel.setText("Procurando dispositivos...");
+            deviceInventory.load();
+        }
     }
 
     private void initializeComponents() {
         // Tabela de dispositivos
-        String[] columns = {"Ponto de Montagem", "Nome", "Sistema de Arquivos", "Tamanho Total", "Livre", "Usado", "Uso"};
+        String[] columns = {"Caminho", "Nome", "Sistema de Arquivos", "Tamanho Total", "Livre", "Usado", "Uso", "Tipo"};
         tableModel = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -80,10 +89,13 @@ public class DeviceAnalysis extends JPanel {
     }
 
     private void loadDevices() {
-        tableModel.setRowCount(0);
-        var devices = deviceAnalyzer.analyzeSystemDevices();
+        infoLabel.setText("Procurando dispositivos...");
+        deviceInventory.refresh();
+    }
 
-        DecimalFormat df = new DecimalFormat("#.##");
+    private void showDevices(List<DeviceAnalyzer.StorageDevice> devices) {
+        String previousSelection = getSelectedDevice();
+        tableModel.setRowCount(0);
 
         for (var device : devices) {
             tableModel.addRow(new Object[]{
@@ -93,12 +105,23 @@ public class DeviceAnalysis extends JPanel {
                     formatSize(device.getTotalSpace()),
                     formatSize(device.getFreeSpace()),
                     formatSize(device.getUsedSpace()),
-                    String.format("%.1f%%", device.getUsagePercentage())
+                    String.format("%.1f%%", device.getUsagePercentage()),
+                    device.getType().getDescription()
             });
         }
 
         if (!devices.isEmpty()) {
-            deviceTable.setRowSelectionInterval(0, 0);
+            // Mantém o dispositivo que estava selecionado antes da atualização
+            int row = 0;
+            for (int i = 0; i < devices.size(); i++) {
+                if (devices.get(i).getMountPoint().equals(previousSelection)) {
+                    row = i;
+                    break;
+                }
+            }
+            deviceTable.setRowSelectionInterval(row, row);
+        } else if (deviceInventory.isLoaded()) {
+            infoLabel.setText("Nenhum dispositivo encontrado");
         }
     }
 
@@ -107,7 +130,7 @@ public class DeviceAnalysis extends JPanel {
         if (selectedRow == -1) return;
 
         String mountPoint = (String) tableModel.getValueAt(selectedRow, 0);
-        var device = deviceAnalyzer.getDeviceByPath(mountPoint);
+        var device = deviceInventory.getDeviceByPath(mountPoint);
 
         if (device != null) {
             // Atualizar barra de progresso
@@ -126,29 +149,10 @@ public class DeviceAnalysis extends JPanel {
             );
             infoLabel.setText(info);
 
-            // Atualizar visualizador de blocos (simulação)
+            // Mapa de blocos ao vivo: preenchido pela varredura e pela recuperação deste dispositivo
             long totalBlocks = device.getTotalSpace() / 4096; // Blocos de 4KB
             blockVisualizer.setDiskInfo(totalBlocks, 4096);
-
-            // Simular alguns blocos para demonstração
-            simulateBlockData(totalBlocks);
-        }
-    }
-
-    private void simulateBlockData(long totalBlocks) {
-        blockVisualizer.clearBlocks();
-
-        // Simular alguns tipos de blocos para demonstração
-        for (long i = 0; i < Math.min(totalBlocks, 10000); i++) {
-            if (i % 10 == 0) {
-                blockVisualizer.setBlockStatus(i, BlockVisualizer.BlockType.SYSTEM);
-            } else if (i % 7 == 0) {
-                blockVisualizer.setBlockStatus(i, BlockVisualizer.BlockType.ALLOCATED);
-            } else if (i % 15 == 0) {
-                blockVisualizer.setBlockStatus(i, BlockVisualizer.BlockType.DELETED);
-            } else if (i % 20 == 0) {
-                blockVisualizer.setBlockStatus(i, BlockVisualizer.BlockType.RECOVERABLE);
-            }
+            blockVisualizer.attachFeed(ScanRegionFeed.forDevice(mountPoint));
         }
     }
 
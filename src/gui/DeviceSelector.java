@@ -1,6 +1,7 @@
 package gui;
 
 import engine.DeviceAnalyzer;
+import engine.DeviceInventory;
 
 import javax.swing.*;
 import java.awt.*;
@@ -8,14 +9,22 @@ import java.util.List;
 
 public class DeviceSelector extends JPanel {
     private JComboBox<String> deviceComboBox;
-    private DeviceAnalyzer deviceAnalyzer;
+    private DeviceInventory deviceInventory;
+    private List<DeviceAnalyzer.StorageDevice> devices;
     private JLabel infoLabel;
 
     public DeviceSelector() {
-        deviceAnalyzer = new DeviceAnalyzer();
+        deviceInventory = DeviceInventory.getInstance();
+        devices = deviceInventory.getDevices();
         initializeComponents();
         setupLayout();
-        loadDevices();
+
+        deviceInventory.addListener(found -> SwingUtilities.invokeLater(() -> showDevices(found)));
+        showDevices(deviceInventory.getDevices());
+        if (!deviceInventory.isLoaded()) {
+            infoLabel.setText("Procurando dispositivos...");
+            deviceInventory.load();
+        }
     }
 
     private void initializeComponents() {
@@ -38,16 +47,20 @@ public class DeviceSelector extends JPanel {
         add(infoLabel, BorderLayout.CENTER);
 
         JButton refreshButton = new JButton("Atualizar");
-        refreshButton.addActionListener(e -> loadDevices());
+        refreshButton.addActionListener(e -> {
+            infoLabel.setText("Procurando dispositivos...");
+            deviceInventory.refresh();
+        });
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         buttonPanel.add(refreshButton);
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
-    private void loadDevices() {
+    // Lista fixada junto com os itens do combo: os índices sempre correspondem
+    private void showDevices(List<DeviceAnalyzer.StorageDevice> found) {
+        devices = found;
         deviceComboBox.removeAllItems();
-        var devices = deviceAnalyzer.analyzeSystemDevices();
 
         for (var device : devices) {
             deviceComboBox.addItem(device.getMountPoint() + " - " + device.getName() +
@@ -63,7 +76,6 @@ public class DeviceSelector extends JPanel {
         int selectedIndex = deviceComboBox.getSelectedIndex();
         if (selectedIndex == -1) return;
 
-        var devices = deviceAnalyzer.analyzeSystemDevices();
         if (selectedIndex < devices.size()) {
             var device = devices.get(selectedIndex);
 
@@ -90,7 +102,6 @@ public class DeviceSelector extends JPanel {
         int selectedIndex = deviceComboBox.getSelectedIndex();
         if (selectedIndex == -1) return null;
 
-        var devices = deviceAnalyzer.analyzeSystemDevices();
         if (selectedIndex < devices.size()) {
             return devices.get(selectedIndex).getMountPoint();
         }
@@ -1,12 +1,20 @@
 package gui;
 
+import engine.BlockSource;
 import engine.FileRecoveryEngine;
+import models.RecoveredFile;
+import models.ScanConfig;
+import models.ScanSession;
+import reports.StatisticsGenerator;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public class FormatScanner extends JPanel {
     private FileRecoveryEngine recoveryEngine;
@@ -14,9 +22,13 @@ public class FormatScanner extends JPanel {
     private JCheckBox mp3CheckBox, mp4CheckBox, zipCheckBox, allFormatsCheckBox;
     private JButton scanButton, stopButton;
     private JProgressBar progressBar;
+    private JSpinner readLimitSpinner;
     private JTable resultsTable;
-    private DefaultTableModel tableModel;
+    private RecoveredFileTableModel tableModel;
+    private JTextField filterField;
     private JLabel statusLabel;
+    private volatile StatisticsGenerator statistics = new StatisticsGenerator();
+    private Consumer<ScanSession> sessionListener; // recebe a sessão de cada varredura concluída (na EDT)
 
     public FormatScanner() {
         recoveryEngine = new FileRecoveryEngine();
@@ -41,26 +53,29 @@ public class FormatScanner extends JPanel {
         stopButton = new JButton("Parar");
         stopButton.setEnabled(false);
 
+        // Limite de leitura em MB/s (0 = sem limite), ajustável durante a varredura
+        readLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10000, 10));
+        readLimitSpinner.setToolTipText("Limite de leitura em MB/s (0 = sem limite)");
+
         // Barra de progresso
         progressBar = new JProgressBar(0, 100);
         progressBar.setStringPainted(true);
 
         // Tabela de resultados
-        String[] columns = {"Nome do Arquivo", "Tipo", "Tamanho", "Integridade", "Status"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return String.class;
-            }
-        };
+        tableModel = new RecoveredFileTableModel(
+                RecoveredFileTableModel.Column.NAME,
+                RecoveredFileTableModel.Column.TYPE,
+                RecoveredFileTableModel.Column.SIZE,
+                RecoveredFileTableModel.Column.INTEGRITY,
+                RecoveredFileTableModel.Column.STATUS);
 
         resultsTable = new JTable(tableModel);
-        resultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        tableModel.installSorting(resultsTable);
+
+        // Filtro por nome ou tipo (aplicado em segundo plano)
+        filterField = new JTextField(20);
+        tableModel.bindFilter(filterField);
 
         // Label de status
         statusLabel = new JLabel("Pronto para escanear");
@@ -88,6 +103,8 @@ public class FormatScanner extends JPanel {
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         controlPanel.add(scanButton);
         controlPanel.add(stopButton);
+        controlPanel.add(new JLabel("Limite (MB/s):"));
+        controlPanel.add(readLimitSpinner);
         controlPanel.add(progressBar);
 
         // Painel principal norte
@@ -98,6 +115,10 @@ public class FormatScanner extends JPanel {
         // Painel de resultados
         JPanel resultsPanel = new JPanel(new BorderLayout());
         resultsPanel.setBorder(BorderFactory.createTitledBorder("Arquivos Encontrados"));
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filtrar:"));
+        filterPanel.add(filterField);
+        resultsPanel.add(filterPanel, BorderLayout.NORTH);
         resultsPanel.add(new JScrollPane(resultsTable), BorderLayout.CENTER);
         resultsPanel.add(statusLabel, BorderLayout.SOUTH);
 
@@ -120,21 +141,35 @@ public class FormatScanner extends JPanel {
 
         scanButton.addActionListener(e -> startScanning());
         stopButton.addActionListener(e -> stopScanning());
+        readLimitSpinner.addChangeListener(e -> recoveryEngine.getRateLimiter()
+                .setMegabytesPerSecond(((Number) readLimitSpinner.getValue()).doubleValue()));
 
         // Listener para atualização de progresso
         recoveryEngine.setProgressListener(new FileRecoveryEngine.RecoveryProgressListener() {
             @Override
             public void onProgressUpdate(int progress, long bytesScanned, long totalBytes) {
+                // O retrato custa o mesmo com dez ou dez milhões de arquivos encontrados
+                StatisticsGenerator.Snapshot stats = statistics.getSnapshot();
                 SwingUtilities.invokeLater(() -> {
                     progressBar.setValue(progress);
-                    statusLabel.setText(String.format("Escaneando... %d%% (%s de %s)",
-                            progress, formatSize(bytesScanned), formatSize(totalBytes)));
+                    statusLabel.setText(String.format("Escaneando... %d%% (%s de %s) - %d arquivos, mais comum: %s",
+                            progress, formatSize(bytesScanned), formatSize(totalBytes),
+                            stats.getFileCount(), stats.getTopFormat()));
                 });
             }
 
             @Override
             public void onFileFound(RecoveredFile file) {
-                SwingUtilities.invokeLater(() -> addFileToTable(file));
+                statistics.add(file);
+                // O modelo agrupa as inserções; nada de um invokeLater por arquivo
+                tableModel.addFile(file);
+            }
+
+            @Override
+            public void onFilesFound(RecoveredFile[] files) {
+                // Lote entregue pelo motor; o modelo agrupa as inserções antes de notificar a EDT
+                statistics.addAll(files);
+                tableModel.addFiles(files);
             }
 
             @Override
@@ -163,7 +198,7 @@ public class FormatScanner extends JPanel {
         }
 
         // Limpar resultados anteriores
-        tableModel.setRowCount(0);
+        tableModel.clear();
 
         // Configurar interface para escaneamento
         scanButton.setEnabled(false);
@@ -171,17 +206,38 @@ public class FormatScanner extends JPanel {
         progressBar.setValue(0);
 
         // Executar escaneamento em thread separada
+        String device = getSelectedDevice();
         new Thread(() -> {
-            var recoveredFiles = recoveryEngine.scanForDeletedFiles(getSelectedDevice(), selectedFormats);
+            statistics = new StatisticsGenerator(deviceSize(device));
+            // Pela sessão, a estratégia de leitura escolhida fica registrada para quem salvar os resultados
+            ScanSession session = new ScanSession(device, "Varredura de Formatos",
+                    new ArrayList<>(selectedFormats), new ScanConfig());
+            var recoveredFiles = recoveryEngine.scanForDeletedFiles(session, selectedFormats);
 
             SwingUtilities.invokeLater(() -> {
                 scanButton.setEnabled(true);
                 stopButton.setEnabled(false);
                 statusLabel.setText(String.format("Varredura concluída! %d arquivos encontrados.", recoveredFiles.size()));
+                if (sessionListener != null) sessionListener.accept(session);
             });
         }).start();
     }
 
+    // Estatísticas ao vivo da varredura atual (ou da última)
+    public StatisticsGenerator getStatistics() {
+        return statistics;
+    }
+
+    public void setSessionListener(Consumer<ScanSession> listener) { this.sessionListener = listener; }
+
+    private static long deviceSize(String device) {
+        try {
+            return BlockSource.sizeOf(Paths.get(device));
+        } catch (IOException e) {
+            return 0; // sem tamanho, as estatísticas ficam sem o histograma por região
+        }
+    }
+
     private void stopScanning() {
         recoveryEngine.stopScanning();
         scanButton.setEnabled(true);
@@ -221,16 +277,6 @@ public class FormatScanner extends JPanel {
         return formats;
     }
 
-    private void addFileToTable(RecoveredFile file) {
-        tableModel.addRow(new Object[]{
-                file.getFileName(),
-                file.getFileType(),
-                file.getFormattedSize(),
-                String.format("%.1f%%", file.getIntegrityScore() * 100),
-                file.getRecoveryStatus().getDescription()
-        });
-    }
-
     private String getSelectedDevice() {
         // Obter o dispositivo selecionado da aba de análise
         MainFrame mainFrame = (MainFrame) SwingUtilities.getWindowAncestor(this);
@@ -255,8 +301,11 @@ public class FormatScanner extends JPanel {
     }
 
     public java.util.List<RecoveredFile> getSelectedFiles() {
-        // Retornar arquivos selecionados para recuperação
-        // Implementação simplificada
-        return java.util.Collections.emptyList();
+        // Arquivos das linhas selecionadas na tabela (na ordem da visão atual)
+        java.util.List<RecoveredFile> files = new java.util.ArrayList<>();
+        for (int row : resultsTable.getSelectedRows()) {
+            files.add(tableModel.getFileAt(resultsTable.convertRowIndexToModel(row)));
+        }
+        return files;
     }
 }
\ No newline at end of file
@@ -1,4 +1,433 @@
 package gui;
 
+import engine.BlockCache;
+import engine.DeviceImager;
+import models.RecoveredFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// Serviço de miniaturas: decodifica em segundo plano e mantém um cache limitado de ícones
 public class ImagePreview {
+    private static final int DEFAULT_CACHE_ENTRIES = 512;
+    private static final int MAX_PENDING_REQUESTS = 256;
+    private static final int HEADER_SCAN_SIZE = 64 * 1024; // miniatura EXIF fica no início do JPEG
+    // Marca no cache de arquivos que não decodificam: imagens recortadas corrompidas são o caso comum
+    private static final ImageIcon NO_THUMBNAIL = new ImageIcon();
+
+    private final Map<String, ImageIcon> thumbnailCache;
+    private final Map<String, List<Consumer<ImageIcon>>> inFlight;
+    private final Deque<Request> pending;
+    private final int cacheEntries;
+    private volatile boolean running;
+
+    public ImagePreview() {
+        this(DEFAULT_CACHE_ENTRIES, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public ImagePreview(int cacheEntries, int workerCount) {
+        this.cacheEntries = cacheEntries;
+        this.thumbnailCache = new LinkedHashMap<>(cacheEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImageIcon> eldest) {
+                return size() > ImagePreview.this.cacheEntries;
+            }
+        };
+        this.inFlight = new ConcurrentHashMap<>();
+        this.pending = new ArrayDeque<>();
+        this.running = true;
+
+        ImageIO.setUseCache(false); // sem arquivos temporários do ImageIO
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workerLoop, "ImagePreview-worker-" + i);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            worker.start();
+        }
+    }
+
+    // Retorna a miniatura se já estiver no cache; senão agenda a decodificação e chama o callback na EDT
+    public ImageIcon requestThumbnail(RecoveredFile file, String devicePath, int size, Consumer<ImageIcon> callback) {
+        String key = cacheKey(file, size);
+        synchronized (thumbnailCache) {
+            ImageIcon cached = thumbnailCache.get(key);
+            if (cached == NO_THUMBNAIL) return null;
+            if (cached != null) return cached;
+        }
+
+        List<Consumer<ImageIcon>> waiting = new ArrayList<>();
+        List<Consumer<ImageIcon>> existing = inFlight.putIfAbsent(key, waiting);
+        if (existing != null) {
+            // Cada repintura pede de novo: o mesmo destino (callback igual) só é registrado uma vez
+            synchronized (existing) {
+                if (!existing.contains(callback)) existing.add(callback);
+            }
+            return null;
+        }
+        synchronized (waiting) {
+            waiting.add(callback);
+        }
+
+        synchronized (pending) {
+            // Pilha: as linhas visíveis mais recentes são atendidas primeiro; pedidos antigos (rolados para fora) caem
+            pending.addFirst(new Request(key, file, devicePath, size));
+            if (pending.size() > MAX_PENDING_REQUESTS) {
+                inFlight.remove(pending.removeLast().key);
+            }
+            pending.notify();
+        }
+        return null;
+    }
+
+    public ImageIcon getCachedThumbnail(RecoveredFile file, int size) {
+        synchronized (thumbnailCache) {
+            ImageIcon cached = thumbnailCache.get(cacheKey(file, size));
+            return cached != NO_THUMBNAIL ? cached : null;
+        }
+    }
+
+    // Já tentou e não conseguiu decodificar: não adianta pedir de novo até limpar o cache
+    public boolean isThumbnailUnavailable(RecoveredFile file, int size) {
+        synchronized (thumbnailCache) {
+            return thumbnailCache.get(cacheKey(file, size)) == NO_THUMBNAIL;
+        }
+    }
+
+    public void clearCache() {
+        synchronized (thumbnailCache) {
+            thumbnailCache.clear();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        synchronized (pending) {
+            pending.clear();
+            pending.notifyAll();
+        }
+    }
+
+    private void workerLoop() {
+        while (running) {
+            Request request;
+            synchronized (pending) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) return;
+                request = pending.removeFirst();
+            }
+
+            ImageIcon icon = null;
+            try {
+                BufferedImage image = decodeThumbnail(request.file, request.devicePath, request.size);
+                if (image != null) {
+                    icon = new ImageIcon(image);
+                }
+            } catch (Exception | OutOfMemoryError e) {
+                // Arquivo corrompido ou formato não suportado: fica sem miniatura
+            }
+            synchronized (thumbnailCache) {
+                thumbnailCache.put(request.key, icon != null ? icon : NO_THUMBNAIL);
+            }
+
+            List<Consumer<ImageIcon>> callbacks = inFlight.remove(request.key);
+            if (callbacks != null) {
+                ImageIcon result = icon;
+                List<Consumer<ImageIcon>> copy;
+                synchronized (callbacks) {
+                    copy = new ArrayList<>(callbacks);
+                }
+                SwingUtilities.invokeLater(() -> copy.forEach(callback -> callback.accept(result)));
+            }
+        }
+    }
+
+    private BufferedImage decodeThumbnail(RecoveredFile file, String devicePath, int size) throws IOException {
+        if (!file.isImageFile()) return null;
+
+        // Arquivo já recuperado é lido do disco de saída; senão da imagem adquirida ou do dispositivo
+        Path source;
+        long offset;
+        if (file.getFilePath() != null && Files.exists(Paths.get(file.getFilePath()))) {
+            source = Paths.get(file.getFilePath());
+            offset = 0;
+        } else if (devicePath != null) {
+            source = Paths.get(DeviceImager.resolveSource(devicePath));
+            offset = file.getStartPosition();
+        } else {
+            return null;
+        }
+
+        String ext = file.getFileExtension().toLowerCase();
+        if (ext.equals("jpg") || ext.equals("jpeg")) {
+            byte[] header = new byte[(int) Math.min(HEADER_SCAN_SIZE, file.getFileSize())];
+            int bytesRead = BlockCache.getInstance().read(source, offset, header, 0, header.length);
+            byte[] embedded = bytesRead > 0 ? findEmbeddedThumbnail(header, bytesRead) : null;
+            if (embedded != null) {
+                BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(embedded));
+                // Miniatura EXIF (~160px) só serve se não precisar ser ampliada
+                if (thumbnail != null && Math.max(thumbnail.getWidth(), thumbnail.getHeight()) >= size) {
+                    return scale(thumbnail, size);
+                }
+            }
+        }
+
+        return decodeSubsampled(new DeviceInputStream(source, offset, file.getFileSize()), size);
+    }
+
+    // Decodifica lendo só uma linha/coluna a cada N: memória proporcional à miniatura, não à foto
+    private BufferedImage decodeSubsampled(InputStream input, int size) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
+            if (iis == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.max(width, height) / (size * 2));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return scale(reader.read(0, param), size);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Procura a miniatura embutida no segmento EXIF (APP1) ou JFXX (APP0) do JPEG
+    static byte[] findEmbeddedThumbnail(byte[] data, int length) {
+        if (length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) return null;
+
+        int pos = 2;
+        while (pos + 4 <= length && (data[pos] & 0xFF) == 0xFF) {
+            int marker = data[pos + 1] & 0xFF;
+            int segmentLength = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            int segmentStart = pos + 4;
+            int segmentEnd = Math.min(length, pos + 2 + segmentLength);
+
+            if (marker == 0xDA || marker == 0xD9) break; // início dos dados da imagem
+
+            if (marker == 0xE1 && startsWith(data, segmentStart, segmentEnd, "Exif\0\0")) {
+                byte[] thumbnail = exifThumbnail(data, segmentStart + 6, segmentEnd);
+                if (thumbnail != null) return thumbnail;
+            } else if (marker == 0xE0 && startsWith(data, segmentStart, segmentEnd, "JFXX\0")
+                    && segmentStart + 5 < segmentEnd && data[segmentStart + 5] == 0x10) {
+                return Arrays.copyOfRange(data, segmentStart + 6, segmentEnd);
+            }
+
+            pos += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    private static byte[] exifThumbnail(byte[] data, int tiffStart, int end) {
+        if (tiffStart + 8 > end) return null;
+        boolean littleEndian = data[tiffStart] == 'I';
+
+        long ifd0 = readInt(data, tiffStart + 4, littleEndian);
+        int ifd0Pos = (int) (tiffStart + ifd0);
+        if (ifd0 < 8 || ifd0Pos + 2 > end) return null;
+
+        int entries = readShort(data, ifd0Pos, littleEndian);
+        int nextIfdPos = ifd0Pos + 2 + entries * 12;
+        if (nextIfdPos + 4 > end) return null;
+
+        long ifd1 = readInt(data, nextIfdPos, littleEndian);
+        int ifd1Pos = (int) (tiffStart + ifd1);
+        if (ifd1 == 0 || ifd1Pos + 2 > end) return null;
+
+        int ifd1Entries = readShort(data, ifd1Pos, littleEndian);
+        long thumbOffset = -1;
+        long thumbLength = -1;
+        for (int i = 0; i < ifd1Entries; i++) {
+            int entry = ifd1Pos + 2 + i * 12;
+            if (entry + 12 > end) return null;
+            int tag = readShort(data, entry, littleEndian);
+            if (tag == 0x0201) thumbOffset = readInt(data, entry + 8, littleEndian);
+            if (tag == 0x0202) thumbLength = readInt(data, entry + 8, littleEndian);
+        }
+
+        if (thumbOffset <= 0 || thumbLength <= 0) return null;
+        int start = (int) (tiffStart + thumbOffset);
+        if (start + thumbLength > end) return null;
+        return Arrays.copyOfRange(data, start, (int) (start + thumbLength));
+    }
+
+    private static boolean startsWith(byte[] data, int pos, int end, String prefix) {
+        if (pos + prefix.length() > end) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[pos + i] != (byte) prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] data, int pos, boolean littleEndian) {
+        int b0 = data[pos] & 0xFF;
+        int b1 = data[pos + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readInt(byte[] data, int pos, boolean littleEndian) {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = data[pos + (littleEndian ? 3 - i : i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size) {
+        if (image == null) return null;
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static String cacheKey(RecoveredFile file, int size) {
+        return file.getStartPosition() + ":" + file.getFileSize() + ":" + size;
+    }
+
+    // Renderer que pede a miniatura apenas quando a célula fica visível
+    public ThumbnailRenderer createRenderer(Supplier<String> deviceSupplier, IntFunction<RecoveredFile> fileAtRow) {
+        return new ThumbnailRenderer(deviceSupplier, fileAtRow);
+    }
+
+    public class ThumbnailRenderer extends DefaultTableCellRenderer {
+        private final Supplier<String> deviceSupplier;
+        private final IntFunction<RecoveredFile> fileAtRow;
+        private int thumbnailSize = 32;
+
+        ThumbnailRenderer(Supplier<String> deviceSupplier, IntFunction<RecoveredFile> fileAtRow) {
+            this.deviceSupplier = deviceSupplier;
+            this.fileAtRow = fileAtRow;
+            setHorizontalAlignment(CENTER);
+        }
+
+        public void setThumbnailSize(int size) { this.thumbnailSize = size; }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, "", isSelected, hasFocus, row, column);
+            setIcon(null);
+
+            RecoveredFile file = fileAtRow.apply(table.convertRowIndexToModel(row));
+            if (file == null || !file.isImageFile()) return this;
+
+            ImageIcon icon = requestThumbnail(file, deviceSupplier.get(), thumbnailSize,
+                    new CellRepaint(table, row, column));
+            if (icon != null) {
+                setIcon(icon);
+            } else if (!isThumbnailUnavailable(file, thumbnailSize)) {
+                setText("...");
+            }
+            return this;
+        }
+    }
+
+    // Repinta a célula quando a miniatura chega (ou falha, para tirar o "..."); igual por célula
+    private static final class CellRepaint implements Consumer<ImageIcon> {
+        private final JTable table;
+        private final int row;
+        private final int column;
+
+        CellRepaint(JTable table, int row, int column) {
+            this.table = table;
+            this.row = row;
+            this.column = column;
+        }
+
+        @Override
+        public void accept(ImageIcon loaded) {
+            table.repaint(table.getCellRect(row, column, false));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CellRepaint)) return false;
+            CellRepaint other = (CellRepaint) o;
+            return table == other.table && row == other.row && column == other.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(table) + row) + column;
+        }
+    }
+
+    private static final class Request {
+        final String key;
+        final RecoveredFile file;
+        final String devicePath;
+        final int size;
+
+        Request(String key, RecoveredFile file, String devicePath, int size) {
+            this.key = key;
+            this.file = file;
+            this.devicePath = devicePath;
+            this.size = size;
+        }
+    }
+
+    // Fluxo sequencial sobre uma região do dispositivo, lido pelo cache de blocos
+    private static final class DeviceInputStream extends InputStream {
+        private final Path device;
+        private final long end;
+        private long position;
+
+        DeviceInputStream(Path device, long start, long length) {
+            this.device = device;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) return -1;
+            int count = (int) Math.min(len, end - position);
+            int bytesRead = BlockCache.getInstance().read(device, position, b, off, count);
+            if (bytesRead > 0) position += bytesRead;
+            return bytesRead;
+        }
+    }
 }
@@ -43,6 +43,7 @@ public class MainFrame extends JFrame {
         deviceAnalysis = new DeviceAnalysis();
         formatScanner = new FormatScanner();
         recoveryResults = new RecoveryResults();
+        formatScanner.setSessionListener(recoveryResults::setScanSession);
 
         tabbedPane = new JTabbedPane();
     }
@@ -0,0 +1,355 @@
+package gui;
+
+import models.RecoveredFile;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.text.JTextComponent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Modelo de tabela virtualizado: guarda apenas referências aos arquivos, formata as células
+// quando são pintadas, recebe inserções em lote e ordena/filtra fora da EDT
+public class RecoveredFileTableModel extends AbstractTableModel {
+    private static final int FLUSH_INTERVAL_MS = 150;
+
+    public enum Column {
+        SELECTED("Selecionar", Boolean.class),
+        NAME("Nome do Arquivo", String.class),
+        TYPE("Tipo", String.class),
+        SIZE("Tamanho", String.class),
+        INTEGRITY("Integridade", String.class),
+        STATUS("Status", String.class),
+        THUMBNAIL("Miniatura", String.class);
+
+        private final String title;
+        private final Class<?> type;
+
+        Column(String title, Class<?> type) {
+            this.title = title;
+            this.type = type;
+        }
+
+        public String getTitle() { return title; }
+        public Class<?> getType() { return type; }
+    }
+
+    private final Column[] columns;
+    private final List<RecoveredFile> files; // alterada apenas na EDT
+    private final BitSet selected;
+    private final Queue<RecoveredFile> pending;
+    private final AtomicBoolean flushScheduled;
+    private final Timer flushTimer;
+
+    // Visão ordenada/filtrada: índices no modelo; null significa ordem de chegada sem filtro
+    private int[] view;
+    private int viewSize;
+    private Column sortColumn;
+    private boolean ascending;
+    private String filterText;
+    private long generation;
+    private SwingWorker<int[], Void> viewWorker;
+
+    public RecoveredFileTableModel(Column... columns) {
+        this.columns = columns.clone();
+        this.files = new ArrayList<>();
+        this.selected = new BitSet();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.flushScheduled = new AtomicBoolean(false);
+        this.flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flushPending());
+        this.flushTimer.setRepeats(false);
+        this.ascending = true;
+        this.filterText = "";
+    }
+
+    // Pode ser chamado de qualquer thread: as inserções são entregues à EDT no máximo
+    // uma vez a cada FLUSH_INTERVAL_MS, em um único evento de linhas inseridas
+    public void addFile(RecoveredFile file) {
+        pending.add(file);
+        if (flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(flushTimer::restart);
+        }
+    }
+
+    public void addFiles(RecoveredFile[] batch) {
+        Collections.addAll(pending, batch);
+        if (batch.length > 0 && flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(flushTimer::restart);
+        }
+    }
+
+    private void flushPending() {
+        flushScheduled.set(false);
+
+        int first = files.size();
+        RecoveredFile file;
+        while ((file = pending.poll()) != null) {
+            files.add(file);
+        }
+        if (files.size() == first) return;
+
+        if (view == null) {
+            fireTableRowsInserted(first, files.size() - 1);
+        } else {
+            // Com visão ativa, novas linhas entram no fim até a próxima ordenação
+            appendToView(first);
+        }
+    }
+
+    private void appendToView(int fromModelIndex) {
+        int firstRow = viewSize;
+        String filter = filterText;
+        for (int i = fromModelIndex; i < files.size(); i++) {
+            if (!matches(files.get(i), filter)) continue;
+            if (viewSize == view.length) {
+                view = Arrays.copyOf(view, Math.max(16, view.length * 2));
+            }
+            view[viewSize++] = i;
+        }
+        if (viewSize > firstRow) {
+            fireTableRowsInserted(firstRow, viewSize - 1);
+        }
+    }
+
+    // Ordenação por coluna; clicar de novo na mesma coluna inverte a ordem
+    public void sortBy(Column column) {
+        if (column == Column.THUMBNAIL) return;
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        rebuildView();
+    }
+
+    public void setFilter(String text) {
+        String normalized = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (normalized.equals(filterText)) return;
+        filterText = normalized;
+        rebuildView();
+    }
+
+    private void rebuildView() {
+        long currentGeneration = ++generation;
+        if (viewWorker != null) {
+            viewWorker.cancel(true);
+        }
+
+        // Cópia das referências na EDT; o trabalho pesado roda no SwingWorker
+        RecoveredFile[] snapshot = files.toArray(new RecoveredFile[0]);
+        BitSet selectedSnapshot = (BitSet) selected.clone();
+        Column column = sortColumn;
+        boolean ascendingOrder = ascending;
+        String filter = filterText;
+
+        viewWorker = new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return computeView(snapshot, selectedSnapshot, column, ascendingOrder, filter);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || currentGeneration != generation) return;
+                try {
+                    installView(get(), snapshot.length);
+                } catch (Exception e) {
+                    System.err.println("Erro ao ordenar resultados: " + e.getMessage());
+                }
+            }
+        };
+        viewWorker.execute();
+    }
+
+    private static int[] computeView(RecoveredFile[] snapshot, BitSet selectedSnapshot, Column column,
+                                     boolean ascendingOrder, String filter) {
+        if (column == null && filter.isEmpty()) {
+            return null;
+        }
+
+        int count = 0;
+        Integer[] indices = new Integer[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            if (matches(snapshot[i], filter)) {
+                indices[count++] = i;
+            }
+        }
+
+        Comparator<Integer> comparator = comparatorFor(column, snapshot, selectedSnapshot);
+        if (comparator != null) {
+            if (!ascendingOrder) comparator = comparator.reversed();
+            Arrays.sort(indices, 0, count, comparator);
+        }
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = indices[i];
+        }
+        return result;
+    }
+
+    private void installView(int[] computed, int snapshotSize) {
+        view = computed;
+        viewSize = computed != null ? computed.length : 0;
+        fireTableDataChanged();
+
+        // Arquivos que chegaram enquanto a visão era calculada
+        if (view != null && files.size() > snapshotSize) {
+            appendToView(snapshotSize);
+        }
+    }
+
+    private static Comparator<Integer> comparatorFor(Column column, RecoveredFile[] snapshot, BitSet selection) {
+        if (column == null) return null;
+        switch (column) {
+            case SELECTED:
+                return Comparator.comparing(i -> selection.get(i));
+            case NAME:
+                return Comparator.comparing(i -> snapshot[i].getFileName(), String.CASE_INSENSITIVE_ORDER);
+            case TYPE:
+                return Comparator.comparing(i -> snapshot[i].getFileType(), String.CASE_INSENSITIVE_ORDER);
+            case SIZE:
+                return Comparator.comparingLong(i -> snapshot[i].getFileSize());
+            case INTEGRITY:
+                return Comparator.comparingDouble(i -> snapshot[i].getIntegrityScore());
+            case STATUS:
+                return Comparator.comparing(i -> snapshot[i].getRecoveryStatus());
+            default:
+                return null;
+        }
+    }
+
+    private static boolean matches(RecoveredFile file, String filter) {
+        if (filter.isEmpty()) return true;
+        return file.getFileName().toLowerCase(Locale.ROOT).contains(filter)
+                || file.getFileType().toLowerCase(Locale.ROOT).contains(filter);
+    }
+
+    // Liga o clique no cabeçalho à ordenação em segundo plano
+    public void installSorting(JTable table) {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int viewColumn = table.columnAtPoint(e.getPoint());
+                if (viewColumn < 0) return;
+                sortBy(columns[table.convertColumnIndexToModel(viewColumn)]);
+            }
+        });
+    }
+
+    public void bindFilter(JTextComponent field) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { setFilter(field.getText()); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { setFilter(field.getText()); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { setFilter(field.getText()); }
+        });
+    }
+
+    // Acesso às linhas
+    public int getModelIndex(int row) {
+        return view == null ? row : view[row];
+    }
+
+    public RecoveredFile getFileAt(int row) {
+        if (row < 0 || row >= getRowCount()) return null;
+        return files.get(getModelIndex(row));
+    }
+
+    public List<RecoveredFile> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    public List<RecoveredFile> getSelectedFiles() {
+        List<RecoveredFile> result = new ArrayList<>(selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0 && i < files.size(); i = selected.nextSetBit(i + 1)) {
+            result.add(files.get(i));
+        }
+        return result;
+    }
+
+    public void setAllSelected(boolean value) {
+        if (value) {
+            selected.set(0, files.size());
+        } else {
+            selected.clear();
+        }
+        refreshRows();
+    }
+
+    // Os valores são calculados na pintura: basta avisar a tabela que as linhas mudaram
+    public void refreshRows() {
+        if (getRowCount() > 0) {
+            fireTableRowsUpdated(0, getRowCount() - 1);
+        }
+    }
+
+    public void clear() {
+        generation++;
+        if (viewWorker != null) {
+            viewWorker.cancel(true);
+        }
+        pending.clear();
+        files.clear();
+        selected.clear();
+        view = null;
+        viewSize = 0;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? files.size() : viewSize;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].getTitle();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columns[column].getType();
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return columns[column] == Column.SELECTED;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int index = getModelIndex(row);
+        RecoveredFile file = files.get(index);
+
+        switch (columns[column]) {
+            case SELECTED: return selected.get(index);
+            case NAME: return file.getFileName();
+            case TYPE: return file.getFileType();
+            case SIZE: return file.getFormattedSize();
+            case INTEGRITY: return String.format("%.1f%%", file.getIntegrityScore() * 100);
+            case STATUS: return file.getRecoveryStatus().getDescription();
+            default: return ""; // Miniatura: desenhada pelo renderer
+        }
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (columns[column] != Column.SELECTED) return;
+        selected.set(getModelIndex(row), Boolean.TRUE.equals(value));
+        fireTableCellUpdated(row, column);
+    }
+}
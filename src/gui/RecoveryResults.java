@@ -1,20 +1,42 @@
 package gui;
 
+import engine.FileSaver;
+import engine.RecoveryScheduler;
+import engine.SessionStore;
+import models.RecoveredFile;
+import models.ScanConfig;
+import models.ScanSession;
+
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RecoveryResults extends JPanel {
     private JTable resultsTable;
-    private DefaultTableModel tableModel;
+    private RecoveredFileTableModel tableModel;
+    private JTextField filterField;
     private JButton recoverButton, recoverAllButton, previewButton;
     private JButton saveListButton, loadListButton;
     private JProgressBar recoveryProgressBar;
     private JLabel statusLabel;
     private JTextField outputPathField;
+    private RecoveryScheduler activeScheduler;
+    private ImagePreview imagePreview;
+    private ScanSession loadedSession; // sessão reaberta de arquivo: o dispositivo dela vale para a recuperação
+    private ScanSession scanSession;   // última varredura da aba de formatos: dela vem a estratégia de leitura
+
+    private static final int THUMBNAIL_COLUMN = 6;
+    private static final int THUMBNAIL_SIZE = 32;
+    private static final int PREVIEW_SIZE = 320;
 
     public RecoveryResults() {
+        imagePreview = new ImagePreview();
         initializeComponents();
         setupLayout();
         setupEventHandlers();
@@ -22,25 +44,33 @@ public class RecoveryResults extends JPanel {
 
     private void initializeComponents() {
         // Tabela de resultados
-        String[] columns = {"Selecionar", "Nome do Arquivo", "Tipo", "Tamanho", "Integridade", "Status"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 0; // Apenas a coluna de seleção é editável
-            }
-
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 0) return Boolean.class;
-                return String.class;
-            }
-        };
+        tableModel = new RecoveredFileTableModel(
+                RecoveredFileTableModel.Column.SELECTED,
+                RecoveredFileTableModel.Column.NAME,
+                RecoveredFileTableModel.Column.TYPE,
+                RecoveredFileTableModel.Column.SIZE,
+                RecoveredFileTableModel.Column.INTEGRITY,
+                RecoveredFileTableModel.Column.STATUS,
+                RecoveredFileTableModel.Column.THUMBNAIL);
 
         resultsTable = new JTable(tableModel);
+        tableModel.installSorting(resultsTable);
         resultsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         resultsTable.getColumnModel().getColumn(0).setMaxWidth(60);
         resultsTable.getColumnModel().getColumn(0).setMinWidth(60);
 
+        // Miniaturas decodificadas em segundo plano, só para as linhas visíveis
+        ImagePreview.ThumbnailRenderer thumbnailRenderer =
+                imagePreview.createRenderer(this::getSelectedDevice, tableModel::getFileAt);
+        thumbnailRenderer.setThumbnailSize(THUMBNAIL_SIZE);
+        resultsTable.getColumnModel().getColumn(THUMBNAIL_COLUMN).setCellRenderer(thumbnailRenderer);
+        resultsTable.getColumnModel().getColumn(THUMBNAIL_COLUMN).setMaxWidth(THUMBNAIL_SIZE + 16);
+        resultsTable.setRowHeight(THUMBNAIL_SIZE + 4);
+
+        // Filtro por nome ou tipo (aplicado em segundo plano)
+        filterField = new JTextField(20);
+        tableModel.bindFilter(filterField);
+
         // Botões
         recoverButton = new JButton("Recuperar Selecionados");
         recoverAllButton = new JButton("Recuperar Todos");
@@ -96,6 +126,10 @@ public class RecoveryResults extends JPanel {
         // Painel de resultados
         JPanel resultsPanel = new JPanel(new BorderLayout());
         resultsPanel.setBorder(BorderFactory.createTitledBorder("Arquivos para Recuperação"));
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filtrar:"));
+        filterPanel.add(filterField);
+        resultsPanel.add(filterPanel, BorderLayout.NORTH);
         resultsPanel.add(new JScrollPane(resultsTable), BorderLayout.CENTER);
 
         // Painel de progresso
@@ -149,17 +183,9 @@ public class RecoveryResults extends JPanel {
             return;
         }
 
-        int selectedCount = 0;
-        int totalRows = tableModel.getRowCount();
+        List<RecoveredFile> selectedFiles = tableModel.getSelectedFiles();
 
-        for (int i = 0; i < totalRows; i++) {
-            Boolean selected = (Boolean) tableModel.getValueAt(i, 0);
-            if (selected != null && selected) {
-                selectedCount++;
-            }
-        }
-
-        if (selectedCount == 0) {
+        if (selectedFiles.isEmpty()) {
             JOptionPane.showMessageDialog(this,
                     "Selecione pelo menos um arquivo para recuperar",
                     "Nenhum Arquivo Selecionado",
@@ -167,18 +193,23 @@ public class RecoveryResults extends JPanel {
             return;
         }
 
-        // Simular recuperação (implementação real iria usar o FileRecoveryEngine)
-        simulateRecovery(selectedCount);
+        String devicePath = getSelectedDevice();
+        if (devicePath == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Selecione um dispositivo primeiro na aba 'Análise do Dispositivo'",
+                    "Dispositivo Não Selecionado",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        runRecovery(selectedFiles, devicePath, outputPath);
     }
 
     private void recoverAllFiles() {
         // Selecionar todos os arquivos
-        int rowCount = tableModel.getRowCount();
-        for (int i = 0; i < rowCount; i++) {
-            tableModel.setValueAt(true, i, 0);
-        }
+        tableModel.setAllSelected(true);
 
-        // Executar recuperação
+        // Executar recuperação (agendada por offset no dispositivo)
         recoverSelectedFiles();
     }
 
@@ -192,100 +223,225 @@ public class RecoveryResults extends JPanel {
             return;
         }
 
-        String fileName = (String) tableModel.getValueAt(selectedRow, 1);
-        String fileType = (String) tableModel.getValueAt(selectedRow, 2);
-        String integrity = (String) tableModel.getValueAt(selectedRow, 4);
-
+        RecoveredFile file = tableModel.getFileAt(selectedRow);
         String message = String.format(
                 "<html><b>Arquivo:</b> %s<br>" +
                         "<b>Tipo:</b> %s<br>" +
-                        "<b>Integridade:</b> %s<br><br>" +
-                        "Pré-visualização disponível apenas para imagens e textos em versões futuras.</html>",
-                fileName, fileType, integrity
+                        "<b>Tamanho:</b> %s<br>" +
+                        "<b>Integridade:</b> %s</html>",
+                file.getFileName(), file.getFileType(), file.getFormattedSize(),
+                String.format("%.1f%%", file.getIntegrityScore() * 100)
         );
 
-        JOptionPane.showMessageDialog(this, message, "Pré-visualização do Arquivo",
-                JOptionPane.INFORMATION_MESSAGE);
+        JPanel previewPanel = new JPanel(new BorderLayout(10, 10));
+        previewPanel.add(new JLabel(message), BorderLayout.NORTH);
+
+        if (file.isImageFile()) {
+            JLabel imageLabel = new JLabel("Carregando pré-visualização...", SwingConstants.CENTER);
+            imageLabel.setPreferredSize(new Dimension(PREVIEW_SIZE, PREVIEW_SIZE));
+            previewPanel.add(imageLabel, BorderLayout.CENTER);
+
+            // A decodificação roda fora da EDT; o diálogo já aparece e recebe a imagem quando ficar pronta
+            ImageIcon cached = imagePreview.requestThumbnail(file, getSelectedDevice(), PREVIEW_SIZE, icon -> {
+                imageLabel.setText(icon != null ? null : "Não foi possível decodificar a imagem");
+                imageLabel.setIcon(icon);
+            });
+            if (cached != null) {
+                imageLabel.setText(null);
+                imageLabel.setIcon(cached);
+            } else if (imagePreview.isThumbnailUnavailable(file, PREVIEW_SIZE)) {
+                imageLabel.setText("Não foi possível decodificar a imagem");
+            }
+        }
+
+        JOptionPane.showMessageDialog(this, previewPanel, "Pré-visualização do Arquivo",
+                JOptionPane.PLAIN_MESSAGE);
     }
 
     private void saveFileList() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Salvar Lista de Arquivos");
-        fileChooser.setSelectedFile(new File("lista_recuperacao.txt"));
+        fileChooser.setDialogTitle("Salvar Sessão");
+        fileChooser.setSelectedFile(new File("sessao_recuperacao.crs"));
+        JCheckBox compressBox = new JCheckBox("Comprimir", true);
+        fileChooser.setAccessory(compressBox);
 
         int result = fileChooser.showSaveDialog(this);
-        if (result == JFileChooser.APPROVE_OPTION) {
-            // Implementar salvamento da lista
-            JOptionPane.showMessageDialog(this,
-                    "Lista salva com sucesso!", "Sucesso",
-                    JOptionPane.INFORMATION_MESSAGE);
+        if (result != JFileChooser.APPROVE_OPTION) return;
+
+        File target = fileChooser.getSelectedFile();
+        boolean compress = compressBox.isSelected();
+        List<RecoveredFile> files = new ArrayList<>(tableModel.getFiles());
+        ScanSession session = loadedSession != null ? loadedSession : createSession(files);
+        saveListButton.setEnabled(false);
+        statusLabel.setText(String.format("Salvando %d arquivos...", files.size()));
+
+        // Gravação em fluxo fora da EDT: listas com milhões de arquivos não travam a interface
+        new Thread(() -> {
+            IOException error = null;
+            try {
+                SessionStore.save(session, files, target.toPath(), compress);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            IOException failure = error;
+            SwingUtilities.invokeLater(() -> {
+                saveListButton.setEnabled(true);
+                if (failure != null) {
+                    statusLabel.setText("Erro ao salvar a sessão");
+                    JOptionPane.showMessageDialog(this,
+                            "Não foi possível salvar a sessão: " + failure.getMessage(),
+                            "Erro", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                statusLabel.setText(String.format("Sessão salva: %d arquivos em %s", files.size(), target));
+                JOptionPane.showMessageDialog(this,
+                        "Sessão salva com sucesso!", "Sucesso",
+                        JOptionPane.INFORMATION_MESSAGE);
+            });
+        }, "RecoveryResults-save").start();
+    }
+
+    public void setScanSession(ScanSession session) { this.scanSession = session; }
+
+    // Resultados que vieram da varredura desta execução: sessão montada a partir do dispositivo atual
+    private ScanSession createSession(List<RecoveredFile> files) {
+        Set<String> formats = new LinkedHashSet<>();
+        for (RecoveredFile file : files) {
+            formats.add(file.getFileExtension().toUpperCase());
         }
+        ScanSession session = new ScanSession(getSelectedDevice(), "Lista de Resultados",
+                new ArrayList<>(formats), new ScanConfig());
+        ScanSession scanned = scanSession;
+        if (scanned != null && scanned.getDevicePath().equals(session.getDevicePath())) {
+            session.setScanStrategy(scanned.getScanStrategy());
+        }
+        session.setStatus("Concluído");
+        session.setCompleted(true);
+        return session;
     }
 
     private void loadFileList() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Carregar Lista de Arquivos");
+        fileChooser.setDialogTitle("Carregar Sessão");
 
         int result = fileChooser.showOpenDialog(this);
-        if (result == JFileChooser.APPROVE_OPTION) {
-            // Implementar carregamento da lista
-            JOptionPane.showMessageDialog(this,
-                    "Lista carregada com sucesso!", "Sucesso",
-                    JOptionPane.INFORMATION_MESSAGE);
-        }
+        if (result != JFileChooser.APPROVE_OPTION) return;
+
+        File source = fileChooser.getSelectedFile();
+        loadListButton.setEnabled(false);
+        statusLabel.setText("Carregando sessão...");
+
+        new Thread(() -> {
+            ScanSession session = null;
+            IOException error = null;
+            try {
+                session = SessionStore.load(source.toPath());
+            } catch (IOException e) {
+                error = e;
+            }
+
+            ScanSession loaded = session;
+            IOException failure = error;
+            SwingUtilities.invokeLater(() -> {
+                loadListButton.setEnabled(true);
+                if (failure != null) {
+                    statusLabel.setText("Erro ao carregar a sessão");
+                    JOptionPane.showMessageDialog(this,
+                            "Não foi possível carregar a sessão: " + failure.getMessage(),
+                            "Erro", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                // Pronta para recuperar: mesma lista e mesmo dispositivo, sem varrer de novo
+                clearResults();
+                loadedSession = loaded;
+                tableModel.addFiles(loaded.getRecoveredFiles().toArray(new RecoveredFile[0]));
+                statusLabel.setText(String.format("Sessão carregada: %d arquivos de %s",
+                        loaded.getFilesFoundCount(), loaded.getDevicePath()));
+            });
+        }, "RecoveryResults-load").start();
     }
 
-    private void simulateRecovery(int fileCount) {
+    private void runRecovery(List<RecoveredFile> files, String devicePath, String outputPath) {
         recoverButton.setEnabled(false);
         recoverAllButton.setEnabled(false);
 
-        new Thread(() -> {
-            try {
-                for (int i = 0; i <= 100; i++) {
-                    final int progress = i;
+        RecoveryScheduler scheduler = new RecoveryScheduler(devicePath);
+        activeScheduler = scheduler;
+        AtomicInteger lastProgress = new AtomicInteger(-1);
+
+        scheduler.setProgressListener(new FileSaver.SaveProgressListener() {
+            @Override
+            public void onFileProgress(RecoveredFile file, long bytesWritten, long totalBytes) {
+            }
+
+            @Override
+            public void onFileSaved(RecoveredFile file, boolean success) {
+            }
+
+            @Override
+            public void onAggregateProgress(int filesDone, int totalFiles, long bytesDone, long totalBytes) {
+                int progress = totalBytes > 0 ? (int) (bytesDone * 100 / totalBytes) : 100;
+                // Só notifica a EDT quando o percentual muda
+                if (lastProgress.getAndSet(progress) != progress) {
                     SwingUtilities.invokeLater(() -> {
                         recoveryProgressBar.setValue(progress);
                         statusLabel.setText(String.format("Recuperando... %d%% (%d/%d arquivos)",
-                                progress, progress * fileCount / 100, fileCount));
+                                progress, filesDone, totalFiles));
                     });
-
-                    Thread.sleep(50); // Simular trabalho
                 }
+            }
+        });
 
-                SwingUtilities.invokeLater(() -> {
-                    recoveryProgressBar.setValue(0);
-                    statusLabel.setText(String.format("Recuperação concluída! %d arquivos recuperados em: %s",
-                            fileCount, outputPathField.getText()));
-
-                    recoverButton.setEnabled(true);
-                    recoverAllButton.setEnabled(true);
+        new Thread(() -> {
+            int saved = scheduler.recoverAll(files, outputPath);
+            int skipped = scheduler.getSkippedCount();
+            int total = files.size() - skipped; // vazios não contam como falha de gravação
+            String skippedNote = skipped > 0 ? String.format(" (%d vazios ignorados)", skipped) : "";
+
+            SwingUtilities.invokeLater(() -> {
+                activeScheduler = null;
+                tableModel.refreshRows();
+                recoveryProgressBar.setValue(0);
+                statusLabel.setText(String.format("Recuperação concluída! %d de %d arquivos recuperados em: %s%s",
+                        saved, total, outputPath, skippedNote));
+
+                recoverButton.setEnabled(true);
+                recoverAllButton.setEnabled(true);
+
+                JOptionPane.showMessageDialog(this,
+                        String.format("Recuperação concluída!\n%d de %d arquivos salvos em: %s%s",
+                                saved, total, outputPath, skippedNote),
+                        "Recuperação Concluída",
+                        saved == total ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+            });
+        }, "RecoveryResults-recovery").start();
+    }
 
-                    JOptionPane.showMessageDialog(this,
-                            String.format("Recuperação concluída com sucesso!\n%d arquivos salvos em: %s",
-                                    fileCount, outputPathField.getText()),
-                            "Recuperação Concluída",
-                            JOptionPane.INFORMATION_MESSAGE);
-                });
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
+    private String getSelectedDevice() {
+        if (loadedSession != null && loadedSession.getDevicePath() != null) {
+            return loadedSession.getDevicePath();
+        }
+        MainFrame mainFrame = (MainFrame) SwingUtilities.getWindowAncestor(this);
+        if (mainFrame != null) {
+            return mainFrame.getSelectedDevice();
+        }
+        return null;
     }
 
+    // Pode ser chamado da thread de varredura: o modelo agrupa as inserções antes de notificar a EDT
     public void addRecoveredFile(RecoveredFile file) {
-        tableModel.addRow(new Object[]{
-                false, // Selecionado
-                file.getFileName(),
-                file.getFileType(),
-                file.getFormattedSize(),
-                String.format("%.1f%%", file.getIntegrityScore() * 100),
-                file.getRecoveryStatus().getDescription()
-        });
+        tableModel.addFile(file);
     }
 
     public void clearResults() {
-        tableModel.setRowCount(0);
+        if (activeScheduler != null) {
+            activeScheduler.cancel();
+        }
+        loadedSession = null;
+        imagePreview.clearCache();
+        tableModel.clear();
         recoveryProgressBar.setValue(0);
         statusLabel.setText("Pronto para recuperação");
     }
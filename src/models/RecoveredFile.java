@@ -4,6 +4,22 @@ import java.io.File;
 import java.util.Date;
 
 public class RecoveredFile {
+    private static final byte[] NO_PREVIEW = new byte[0];
+
+    public enum RecoveryStatus {
+        RECOVERABLE("Recuperável"),
+        RECOVERED("Recuperado"),
+        FAILED("Falhou");
+
+        private final String description;
+
+        RecoveryStatus(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() { return description; }
+    }
+
     private String fileName;
     private String fileExtension;
     private String fileType;
@@ -17,6 +33,7 @@ public class RecoveredFile {
     private double recoveryQuality;
     private byte[] filePreview;
     private String checksum;
+    private RecoveryStatus recoveryStatus;
 
     public RecoveredFile(String fileName, String fileExtension, long fileSize,
                          long startOffset, long endOffset) {
@@ -30,7 +47,16 @@ public class RecoveredFile {
         this.isRecovered = false;
         this.isCorrupted = false;
         this.recoveryQuality = 0.0;
-        this.filePreview = new byte[0];
+        this.filePreview = NO_PREVIEW; // miniaturas ficam no cache do ImagePreview, não em cada objeto
+        this.recoveryStatus = RecoveryStatus.RECOVERABLE;
+    }
+
+    // Construtor usado pelo motor de varredura (arquivos encontrados por assinatura)
+    public RecoveredFile(String fileName, long startPosition, long fileSize, String format,
+                         Date foundDate, RecoveryStatus status) {
+        this(fileName, format.toLowerCase(), fileSize, startPosition, startPosition + fileSize);
+        this.recoveryDate = foundDate;
+        setRecoveryStatus(status);
     }
 
     private String determineFileType(String extension) {
@@ -61,14 +87,22 @@ public class RecoveredFile {
     public double getRecoveryQuality() { return recoveryQuality; }
     public byte[] getFilePreview() { return filePreview; }
     public String getChecksum() { return checksum; }
+    public long getStartPosition() { return startOffset; }
+    public RecoveryStatus getRecoveryStatus() { return recoveryStatus; }
+    public double getIntegrityScore() { return recoveryQuality / 100.0; }
 
     // Setters
     public void setFilePath(String filePath) { this.filePath = filePath; }
+    public void setRecoveryDate(Date recoveryDate) { this.recoveryDate = recoveryDate; }
     public void setRecovered(boolean recovered) { this.isRecovered = recovered; }
     public void setCorrupted(boolean corrupted) { this.isCorrupted = corrupted; }
     public void setRecoveryQuality(double quality) { this.recoveryQuality = quality; }
     public void setFilePreview(byte[] preview) { this.filePreview = preview; }
     public void setChecksum(String checksum) { this.checksum = checksum; }
+    public void setRecoveryStatus(RecoveryStatus status) {
+        this.recoveryStatus = status;
+        this.isRecovered = status == RecoveryStatus.RECOVERED;
+    }
 
     // Métodos utilitários
     public String getFormattedSize() {
@@ -12,6 +12,7 @@ public class RecoveryStats {
     private Date statsStartTime;
     private double averageRecoveryQuality;
     private int corruptedFiles;
+    private String topFormat; // null: precisa ser recalculado (só depois de remoções)
 
     public RecoveryStats() {
         this.totalFilesFound = 0;
@@ -30,8 +31,9 @@ public class RecoveryStats {
         totalBytesProcessed += file.getFileSize();
 
         String format = file.getFileExtension().toLowerCase();
-        filesByFormat.put(format, filesByFormat.getOrDefault(format, 0) + 1);
-        bytesByFormat.put(format, bytesByFormat.getOrDefault(format, 0L) + file.getFileSize());
+        int formatCount = filesByFormat.merge(format, 1, Integer::sum);
+        bytesByFormat.merge(format, file.getFileSize(), Long::sum);
+        updateTopFormat(format, formatCount);
 
         if (file.isRecovered()) {
             totalFilesRecovered++;
@@ -48,6 +50,40 @@ public class RecoveryStats {
         }
     }
 
+    // Carga de muitos arquivos (sessão reaberta): contagens por formato somadas localmente e
+    // aplicadas uma vez por formato, sem caixas de Integer/Long a cada arquivo
+    public void updateStats(Collection<RecoveredFile> files) {
+        Map<String, long[]> byFormat = new HashMap<>();
+        for (RecoveredFile file : files) {
+            totalFilesFound++;
+            totalBytesProcessed += file.getFileSize();
+
+            long[] format = byFormat.computeIfAbsent(file.getFileExtension(), k -> new long[2]);
+            format[0]++;
+            format[1] += file.getFileSize();
+
+            if (file.isRecovered()) {
+                totalFilesRecovered++;
+                totalBytesRecovered += file.getFileSize();
+            }
+
+            if (file.isCorrupted()) {
+                corruptedFiles++;
+            }
+
+            if (file.getRecoveryQuality() > 0) {
+                averageRecoveryQuality = ((averageRecoveryQuality * (totalFilesFound - 1)) + file.getRecoveryQuality()) / totalFilesFound;
+            }
+        }
+
+        for (Map.Entry<String, long[]> entry : byFormat.entrySet()) {
+            String format = entry.getKey().toLowerCase();
+            int formatCount = filesByFormat.merge(format, (int) entry.getValue()[0], Integer::sum);
+            bytesByFormat.merge(format, entry.getValue()[1], Long::sum);
+            updateTopFormat(format, formatCount);
+        }
+    }
+
     public void removeFileFromStats(RecoveredFile file) {
         totalFilesFound--;
         totalBytesProcessed -= file.getFileSize();
@@ -55,6 +91,7 @@ public class RecoveryStats {
         String format = file.getFileExtension().toLowerCase();
         filesByFormat.put(format, filesByFormat.get(format) - 1);
         bytesByFormat.put(format, bytesByFormat.get(format) - file.getFileSize());
+        if (format.equals(topFormat)) topFormat = null;
 
         if (file.isRecovered()) {
             totalFilesRecovered--;
@@ -92,11 +129,26 @@ public class RecoveryStats {
         return Math.min(100.0, (totalFilesFound * 100.0) / Math.max(totalFilesFound, 100));
     }
 
+    // Mantido a cada arquivo; só depois de uma remoção do formato líder é preciso percorrer o mapa
     public String getTopFormat() {
-        return filesByFormat.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("N/A");
+        if (topFormat == null) {
+            int best = 0;
+            for (Map.Entry<String, Integer> entry : filesByFormat.entrySet()) {
+                if (entry.getValue() > best) {
+                    best = entry.getValue();
+                    topFormat = entry.getKey();
+                }
+            }
+        }
+        return topFormat != null ? topFormat : "N/A";
+    }
+
+    private void updateTopFormat(String format, int count) {
+        if (topFormat != null && count > filesByFormat.getOrDefault(topFormat, 0)) {
+            topFormat = format;
+        } else if (topFormat == null && totalFilesFound == count) {
+            topFormat = format; // primeiro formato
+        }
     }
 
     public int getFilesByFormatCount(String format) {
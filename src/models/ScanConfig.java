@@ -1,5 +1,7 @@
 package models;
 
+import utils.Checksum;
+
 public class ScanConfig {
     public enum ScanDepth {
         QUICK,      // Scan rápido - apenas áreas conhecidas
@@ -21,9 +23,19 @@ public class ScanConfig {
     private long maxScanSize;
     private boolean recoverFragmentedFiles;
     private boolean ignoreSystemFiles;
+    private String knownFileHashList;
     private boolean createPreviews;
     private boolean verifyChecksums;
+    private Checksum.Algorithm checksumAlgorithm;
+    private boolean deduplicateOutput;
     private int threadCount;
+    private long progressIntervalMs;
+    private boolean directIo;
+    private double readLimitMegabytesPerSecond;
+    private int readLimitIops;
+    private double readBurstSeconds;
+    private int readRetries;
+    private String imageOutputPath;
     private String outputDirectory;
 
     public ScanConfig() {
@@ -33,9 +45,19 @@ public class ScanConfig {
         this.maxScanSize = 2L * 1024 * 1024 * 1024; // 2GB
         this.recoverFragmentedFiles = true;
         this.ignoreSystemFiles = true;
+        this.knownFileHashList = null; // lista de hashes conhecidos (estilo NSRL) usada por ignoreSystemFiles
         this.createPreviews = true;
         this.verifyChecksums = false;
+        this.checksumAlgorithm = Checksum.Algorithm.MD5;
+        this.deduplicateOutput = false;
         this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.progressIntervalMs = 100; // intervalo mínimo entre entregas de progresso aos ouvintes
+        this.directIo = false; // varredura com O_DIRECT, sem passar pelo page cache
+        this.readLimitMegabytesPerSecond = 0; // 0 = sem limite
+        this.readLimitIops = 0;
+        this.readBurstSeconds = 1.0; // folga acumulada pelo limitador para rajadas curtas
+        this.readRetries = 2; // novas tentativas por setor antes de marcá-lo como danificado
+        this.imageOutputPath = null; // com caminho definido, a varredura também adquire a imagem do dispositivo
         this.outputDirectory = System.getProperty("user.home") + "/CarvaRecovery";
     }
 
@@ -45,9 +67,20 @@ public class ScanConfig {
     public long getMaxScanSize() { return maxScanSize; }
     public boolean shouldRecoverFragmentedFiles() { return recoverFragmentedFiles; }
     public boolean shouldIgnoreSystemFiles() { return ignoreSystemFiles; }
+    public String getKnownFileHashList() { return knownFileHashList; }
     public boolean shouldCreatePreviews() { return createPreviews; }
     public boolean shouldVerifyChecksums() { return verifyChecksums; }
+    public Checksum.Algorithm getChecksumAlgorithm() { return checksumAlgorithm; }
+    public boolean shouldDeduplicateOutput() { return deduplicateOutput; }
     public int getThreadCount() { return threadCount; }
+    public long getProgressIntervalMs() { return progressIntervalMs; }
+    public boolean shouldUseDirectIo() { return directIo; }
+    public double getReadLimitMegabytesPerSecond() { return readLimitMegabytesPerSecond; }
+    public int getReadLimitIops() { return readLimitIops; }
+    public double getReadBurstSeconds() { return readBurstSeconds; }
+    public int getReadRetries() { return readRetries; }
+    public String getImageOutputPath() { return imageOutputPath; }
+    public boolean isImagingEnabled() { return imageOutputPath != null && !imageOutputPath.isEmpty(); }
     public String getOutputDirectory() { return outputDirectory; }
 
     // Setters
@@ -56,9 +89,19 @@ public class ScanConfig {
     public void setMaxScanSize(long maxScanSize) { this.maxScanSize = maxScanSize; }
     public void setRecoverFragmentedFiles(boolean recoverFragmentedFiles) { this.recoverFragmentedFiles = recoverFragmentedFiles; }
     public void setIgnoreSystemFiles(boolean ignoreSystemFiles) { this.ignoreSystemFiles = ignoreSystemFiles; }
+    public void setKnownFileHashList(String knownFileHashList) { this.knownFileHashList = knownFileHashList; }
     public void setCreatePreviews(boolean createPreviews) { this.createPreviews = createPreviews; }
     public void setVerifyChecksums(boolean verifyChecksums) { this.verifyChecksums = verifyChecksums; }
+    public void setChecksumAlgorithm(Checksum.Algorithm checksumAlgorithm) { this.checksumAlgorithm = checksumAlgorithm; }
+    public void setDeduplicateOutput(boolean deduplicateOutput) { this.deduplicateOutput = deduplicateOutput; }
     public void setThreadCount(int threadCount) { this.threadCount = threadCount; }
+    public void setProgressIntervalMs(long progressIntervalMs) { this.progressIntervalMs = progressIntervalMs; }
+    public void setDirectIo(boolean directIo) { this.directIo = directIo; }
+    public void setReadLimitMegabytesPerSecond(double readLimitMegabytesPerSecond) { this.readLimitMegabytesPerSecond = readLimitMegabytesPerSecond; }
+    public void setReadLimitIops(int readLimitIops) { this.readLimitIops = readLimitIops; }
+    public void setReadBurstSeconds(double readBurstSeconds) { this.readBurstSeconds = readBurstSeconds; }
+    public void setReadRetries(int readRetries) { this.readRetries = readRetries; }
+    public void setImageOutputPath(String imageOutputPath) { this.imageOutputPath = imageOutputPath; }
     public void setOutputDirectory(String outputDirectory) { this.outputDirectory = outputDirectory; }
 
     // Métodos utilitários
@@ -99,6 +142,14 @@ public class ScanConfig {
         }
     }
 
+    public String getFormattedReadLimit() {
+        if (readLimitMegabytesPerSecond <= 0 && readLimitIops <= 0) return "Sem limite";
+        StringBuilder sb = new StringBuilder();
+        if (readLimitMegabytesPerSecond > 0) sb.append(String.format("%.1f MB/s", readLimitMegabytesPerSecond));
+        if (readLimitIops > 0) sb.append(sb.length() > 0 ? ", " : "").append(readLimitIops).append(" IOPS");
+        return sb.toString();
+    }
+
     private String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + " B";
         if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
@@ -116,12 +167,17 @@ public class ScanConfig {
                         "Arquivos Fragmentados: %s\n" +
                         "Ignorar Sistema: %s\n" +
                         "Previews: %s\n" +
-                        "Verificar Checksums: %s\n" +
+                        "Verificar Checksums: %s (%s)\n" +
+                        "Saída Deduplicada: %s\n" +
+                        "Leitura Direta (O_DIRECT): %s\n" +
+                        "Limite de Leitura: %s\n" +
                         "Threads: %d\n" +
                         "Diretório de Saída: %s",
                 getScanDepthDescription(), getFileSystemDescription(), getFormattedMaxScanSize(),
                 recoverFragmentedFiles ? "Sim" : "Não", ignoreSystemFiles ? "Sim" : "Não",
-                createPreviews ? "Sim" : "Não", verifyChecksums ? "Sim" : "Não",
+                createPreviews ? "Sim" : "Não", verifyChecksums ? "Sim" : "Não", checksumAlgorithm.getDisplayName(),
+                deduplicateOutput ? "Sim" : "Não", directIo ? "Sim" : "Não",
+                getFormattedReadLimit(),
                 threadCount, outputDirectory
         );
     }
@@ -14,6 +14,7 @@ public class ScanSession {
     private ScanConfig config;
     private RecoveryStats stats;
     private String status;
+    private String scanStrategy; // leitura escolhida pelo motor para o dispositivo (buffer, alinhamento, paralelismo)
     private boolean isCompleted;
 
     public ScanSession(String devicePath, String scanType, List<String> targetFormats, ScanConfig config) {
@@ -29,6 +30,14 @@ public class ScanSession {
         this.isCompleted = false;
     }
 
+    // Sessão reaberta de um arquivo salvo: mantém identificador e horário de início originais
+    public ScanSession(String sessionId, Date startTime, String devicePath, String scanType,
+                       List<String> targetFormats, ScanConfig config) {
+        this(devicePath, scanType, targetFormats, config);
+        this.sessionId = sessionId;
+        this.startTime = startTime;
+    }
+
     private String generateSessionId() {
         return "SESS_" + System.currentTimeMillis() + "_" + new Random().nextInt(1000);
     }
@@ -44,11 +53,13 @@ public class ScanSession {
     public ScanConfig getConfig() { return config; }
     public RecoveryStats getStats() { return stats; }
     public String getStatus() { return status; }
+    public String getScanStrategy() { return scanStrategy; }
     public boolean isCompleted() { return isCompleted; }
 
     // Setters
     public void setEndTime(Date endTime) { this.endTime = endTime; }
     public void setStatus(String status) { this.status = status; }
+    public void setScanStrategy(String scanStrategy) { this.scanStrategy = scanStrategy; }
     public void setCompleted(boolean completed) {
         this.isCompleted = completed;
         if (completed && endTime == null) {
@@ -62,6 +73,12 @@ public class ScanSession {
         stats.updateStats(file);
     }
 
+    // Vários de uma vez: a lista copia-ao-escrever é copiada uma só vez, não a cada arquivo
+    public void addRecoveredFiles(Collection<RecoveredFile> files) {
+        recoveredFiles.addAll(files);
+        stats.updateStats(files);
+    }
+
     public void removeRecoveredFile(RecoveredFile file) {
         recoveredFiles.remove(file);
         stats.removeFileFromStats(file);
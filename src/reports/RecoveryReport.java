@@ -1,4 +1,458 @@
 package reports;
 
+import engine.SessionStore;
+import models.RecoveredFile;
+import models.ScanConfig;
+import models.ScanSession;
+import utils.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Relatório da recuperação em HTML, CSV e/ou JSON. Os arquivos são escritos linha a linha, direto
+// da lista da sessão ou de uma sessão salva, e todos os formatos pedidos saem de uma única passada:
+// um relatório com dez milhões de arquivos não precisa da lista inteira no heap. Destino terminado
+// em .gz sai comprimido. O resumo vai no fim, com as contas feitas durante a própria passada.
 public class RecoveryReport {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        HTML("html"),
+        CSV("csv"),
+        JSON("json");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() { return extension; }
+
+        // Pela extensão do destino, ignorando um .gz no fim (relatorio.csv.gz é CSV)
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+            for (Format format : values()) {
+                if (name.endsWith("." + format.extension)) return format;
+            }
+            if (name.endsWith(".htm")) return HTML;
+            throw new IllegalArgumentException("Formato de relatório desconhecido: " + path.getFileName());
+        }
+    }
+
+    private final ScanSession session;
+    private final List<Output> outputs = new ArrayList<>();
+    private long deviceSize;
+
+    public RecoveryReport(ScanSession session) {
+        this.session = session;
+    }
+
+    // Tamanho do dispositivo, para o resumo por região (opcional)
+    public void setDeviceSize(long deviceSize) { this.deviceSize = deviceSize; }
+
+    public void addOutput(Path path) {
+        addOutput(Format.forPath(path), path);
+    }
+
+    public void addOutput(Format format, Path path) {
+        outputs.add(new Output(format, path));
+    }
+
+    // Relatório de uma sessão salva, sem carregar os arquivos dela
+    public static void writeFromSessionFile(Path sessionFile, List<Path> targets) throws IOException {
+        try (SessionStore.Reader reader = SessionStore.Reader.open(sessionFile)) {
+            RecoveryReport report = new RecoveryReport(reader.getSession());
+            for (Path target : targets) {
+                report.addOutput(target);
+            }
+            report.write(reader::next);
+        }
+    }
+
+    public void write() throws IOException {
+        write(session.getRecoveredFiles());
+    }
+
+    public void write(Iterable<RecoveredFile> files) throws IOException {
+        java.util.Iterator<RecoveredFile> iterator = files.iterator();
+        write(() -> iterator.hasNext() ? iterator.next() : null);
+    }
+
+    // Uma passada: cada arquivo vai para todos os formatos e para as estatísticas do resumo
+    public void write(FileSource files) throws IOException {
+        if (outputs.isEmpty()) throw new IllegalStateException("Nenhum destino de relatório");
+        StatisticsGenerator statistics = new StatisticsGenerator(deviceSize);
+        List<FormatWriter> writers = new ArrayList<>();
+        boolean completed = false;
+        try {
+            for (Output output : outputs) {
+                FormatWriter writer = output.open();
+                writers.add(writer);
+                writer.header(session);
+            }
+
+            RecoveredFile file;
+            while ((file = files.next()) != null) {
+                statistics.add(file);
+                for (FormatWriter writer : writers) {
+                    writer.row(file);
+                }
+            }
+
+            StatisticsGenerator.Snapshot summary = statistics.getSnapshot();
+            for (FormatWriter writer : writers) {
+                writer.footer(summary);
+                writer.close();
+            }
+            for (Output output : outputs) {
+                output.commit();
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (FormatWriter writer : writers) {
+                    writer.closeQuietly();
+                }
+                for (Output output : outputs) {
+                    output.discard();
+                }
+            }
+        }
+    }
+
+    // Próximo arquivo do relatório; null no fim
+    public interface FileSource {
+        RecoveredFile next() throws IOException;
+    }
+
+    // Destino gravado num temporário e trocado de uma vez no final
+    private static final class Output {
+        private final Format format;
+        private final Path target;
+        private final Path temp;
+
+        Output(Format format, Path path) {
+            this.format = format;
+            this.target = path.toAbsolutePath();
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        }
+
+        FormatWriter open() throws IOException {
+            Files.createDirectories(target.getParent());
+            OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE);
+            if (target.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+                stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+            }
+            Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            switch (format) {
+                case HTML: return new HtmlWriter(out);
+                case CSV: return new CsvWriter(out);
+                default: return new JsonReportWriter(out);
+            }
+        }
+
+        void commit() throws IOException {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void discard() {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                System.err.println("Erro ao remover relatório incompleto " + temp + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private abstract static class FormatWriter {
+        protected final Writer out;
+
+        FormatWriter(Writer out) {
+            this.out = out;
+        }
+
+        abstract void header(ScanSession session) throws IOException;
+        abstract void row(RecoveredFile file) throws IOException;
+        abstract void footer(StatisticsGenerator.Snapshot summary) throws IOException;
+
+        void close() throws IOException {
+            out.close();
+        }
+
+        void closeQuietly() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // o temporário será removido de qualquer forma
+            }
+        }
+    }
+
+    private static String timestamp(Date date) {
+        return date != null ? Instant.ofEpochMilli(date.getTime()).toString() : "";
+    }
+
+    // ---- CSV ----
+
+    // RFC 4180; sem resumo no fim para não atrapalhar quem importa a planilha
+    private static final class CsvWriter extends FormatWriter {
+        CsvWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void header(ScanSession session) throws IOException {
+            out.write("nome,tipo,extensao,offset,tamanho,status,qualidade,corrompido,caminho,checksum,encontrado_em\r\n");
+        }
+
+        @Override
+        void row(RecoveredFile file) throws IOException {
+            field(file.getFileName());
+            out.write(',');
+            field(file.getFileType());
+            out.write(',');
+            field(file.getFileExtension());
+            out.write(',');
+            out.write(Long.toString(file.getStartOffset()));
+            out.write(',');
+            out.write(Long.toString(file.getFileSize()));
+            out.write(',');
+            field(file.getRecoveryStatus().getDescription());
+            out.write(',');
+            out.write(Double.toString(file.getRecoveryQuality()));
+            out.write(',');
+            out.write(file.isCorrupted() ? "sim" : "nao");
+            out.write(',');
+            field(file.getFilePath());
+            out.write(',');
+            field(file.getChecksum());
+            out.write(',');
+            out.write(timestamp(file.getRecoveryDate()));
+            out.write("\r\n");
+        }
+
+        private void field(String value) throws IOException {
+            if (value == null) return;
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        void footer(StatisticsGenerator.Snapshot summary) {
+        }
+    }
+
+    // ---- JSON ----
+
+    private static final class JsonReportWriter extends FormatWriter {
+        private final JsonWriter json;
+
+        JsonReportWriter(Writer out) {
+            super(out);
+            this.json = new JsonWriter(out);
+        }
+
+        @Override
+        void header(ScanSession session) throws IOException {
+            json.beginObject()
+                    .field("generated", Instant.now().toString());
+            json.name("session").beginObject()
+                    .field("id", session.getSessionId())
+                    .field("device", session.getDevicePath())
+                    .field("scanType", session.getScanType())
+                    .field("status", session.getStatus())
+                    .field("started", timestamp(session.getStartTime()))
+                    .field("finished", session.getEndTime() != null ? timestamp(session.getEndTime()) : null);
+            json.name("formats").beginArray();
+            for (String format : session.getTargetFormats()) json.value(format);
+            json.endArray();
+            ScanConfig config = session.getConfig();
+            if (config != null) {
+                json.name("config").beginObject()
+                        .field("depth", config.getScanDepth().name().toLowerCase(Locale.ROOT))
+                        .field("directIo", config.shouldUseDirectIo())
+                        .field("checksum", config.shouldVerifyChecksums() ? config.getChecksumAlgorithm().getDisplayName() : null)
+                        .field("outputDirectory", config.getOutputDirectory())
+                        .endObject();
+            }
+            json.endObject();
+            json.name("files").beginArray();
+        }
+
+        @Override
+        void row(RecoveredFile file) throws IOException {
+            json.beginObject()
+                    .field("name", file.getFileName())
+                    .field("type", file.getFileExtension())
+                    .field("offset", file.getStartOffset())
+                    .field("size", file.getFileSize())
+                    .field("status", file.getRecoveryStatus().name().toLowerCase(Locale.ROOT))
+                    .field("quality", file.getRecoveryQuality())
+                    .field("corrupted", file.isCorrupted())
+                    .field("path", file.getFilePath())
+                    .field("checksum", file.getChecksum())
+                    .field("found", timestamp(file.getRecoveryDate()))
+                    .endObject();
+        }
+
+        @Override
+        void footer(StatisticsGenerator.Snapshot summary) throws IOException {
+            json.endArray();
+            json.name("summary").beginObject()
+                    .field("files", summary.getFileCount())
+                    .field("bytes", summary.getTotalBytes())
+                    .field("recovered", summary.getRecoveredCount())
+                    .field("recoveredBytes", summary.getRecoveredBytes())
+                    .field("corrupted", summary.getCorruptedCount())
+                    .field("averageQuality", summary.getAverageQuality());
+            json.name("byFormat").beginObject();
+            for (Map.Entry<String, Long> entry : summary.getFilesByFormat().entrySet()) {
+                json.name(entry.getKey()).beginObject()
+                        .field("files", entry.getValue())
+                        .field("bytes", summary.getBytesByFormat().get(entry.getKey()))
+                        .endObject();
+            }
+            json.endObject();
+            json.name("bySize").beginArray();
+            long[] sizes = summary.getSizeHistogram();
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] == 0) continue;
+                json.beginObject()
+                        .field("from", StatisticsGenerator.getSizeBucketStart(i))
+                        .field("files", sizes[i])
+                        .endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.endObject();
+            out.write('\n');
+        }
+    }
+
+    // ---- HTML ----
+
+    // A tabela sai antes do resumo: o navegador já mostra as linhas enquanto o arquivo carrega
+    private static final class HtmlWriter extends FormatWriter {
+        HtmlWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void header(ScanSession session) throws IOException {
+            out.write("<!DOCTYPE html>\n<html lang=\"pt-BR\">\n<head>\n<meta charset=\"utf-8\">\n");
+            out.write("<title>Relatório de Recuperação - ");
+            text(session.getDevicePath());
+            out.write("</title>\n<style>\n"
+                    + "body{font-family:sans-serif;margin:20px;color:#222}\n"
+                    + "table{border-collapse:collapse;font-size:13px}\n"
+                    + "th,td{border:1px solid #ccc;padding:3px 8px;text-align:left}\n"
+                    + "th{background:#eee}\n"
+                    + "td.n{text-align:right}\n"
+                    + "</style>\n</head>\n<body>\n");
+            out.write("<h1>Relatório de Recuperação</h1>\n<table>\n");
+            info("Dispositivo", session.getDevicePath());
+            info("Sessão", session.getSessionId());
+            info("Tipo de varredura", session.getScanType());
+            info("Status", session.getStatus());
+            info("Início", timestamp(session.getStartTime()));
+            info("Fim", timestamp(session.getEndTime()));
+            info("Formatos", String.join(", ", session.getTargetFormats()));
+            info("Gerado em", Instant.now().toString());
+            out.write("</table>\n<h2>Arquivos Encontrados</h2>\n<table>\n<thead><tr>"
+                    + "<th>Nome</th><th>Tipo</th><th>Offset</th><th>Tamanho</th><th>Status</th>"
+                    + "<th>Qualidade</th><th>Caminho</th><th>Checksum</th></tr></thead>\n<tbody>\n");
+        }
+
+        @Override
+        void row(RecoveredFile file) throws IOException {
+            out.write("<tr><td>");
+            text(file.getFileName());
+            out.write("</td><td>");
+            text(file.getFileType());
+            out.write("</td><td class=\"n\">");
+            out.write(Long.toString(file.getStartOffset()));
+            out.write("</td><td class=\"n\">");
+            out.write(Long.toString(file.getFileSize()));
+            out.write("</td><td>");
+            text(file.getRecoveryStatus().getDescription());
+            out.write("</td><td>");
+            text(file.getQualityStatus());
+            out.write("</td><td>");
+            text(file.getFilePath());
+            out.write("</td><td>");
+            text(file.getChecksum());
+            out.write("</td></tr>\n");
+        }
+
+        @Override
+        void footer(StatisticsGenerator.Snapshot summary) throws IOException {
+            out.write("</tbody>\n</table>\n<h2>Resumo</h2>\n<table>\n");
+            info("Arquivos encontrados", Long.toString(summary.getFileCount()));
+            info("Bytes encontrados", Long.toString(summary.getTotalBytes()));
+            info("Arquivos recuperados", String.format("%d (%.1f%%)", summary.getRecoveredCount(), summary.getRecoveryRate()));
+            info("Arquivos corrompidos", Long.toString(summary.getCorruptedCount()));
+            info("Formato mais comum", summary.getTopFormat());
+            out.write("</table>\n<h2>Por Formato</h2>\n<table>\n<thead><tr><th>Formato</th><th>Arquivos</th><th>Bytes</th></tr></thead>\n<tbody>\n");
+            for (Map.Entry<String, Long> entry : summary.getFilesByFormat().entrySet()) {
+                out.write("<tr><td>");
+                text(entry.getKey());
+                out.write("</td><td class=\"n\">" + entry.getValue() + "</td><td class=\"n\">"
+                        + summary.getBytesByFormat().get(entry.getKey()) + "</td></tr>\n");
+            }
+            out.write("</tbody>\n</table>\n</body>\n</html>\n");
+        }
+
+        private void info(String label, String value) throws IOException {
+            out.write("<tr><th>");
+            text(label);
+            out.write("</th><td>");
+            text(value);
+            out.write("</td></tr>\n");
+        }
+
+        private void text(String value) throws IOException {
+            if (value == null) return;
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                String entity;
+                switch (value.charAt(i)) {
+                    case '<': entity = "&lt;"; break;
+                    case '>': entity = "&gt;"; break;
+                    case '&': entity = "&amp;"; break;
+                    case '"': entity = "&quot;"; break;
+                    default: continue;
+                }
+                out.write(value, start, i - start);
+                out.write(entity);
+                start = i + 1;
+            }
+            out.write(value, start, value.length() - start);
+        }
+    }
 }
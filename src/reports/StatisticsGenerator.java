@@ -1,4 +1,298 @@
 package reports;
 
+import models.RecoveredFile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Estatísticas ao vivo dos arquivos encontrados: histogramas por formato, faixa de tamanho, região
+// do dispositivo e qualidade, atualizados a cada arquivo. Cada thread que registra tem os seus
+// próprios contadores (um único escritor, sem CAS nem bloqueio); o retrato soma as parciais, num
+// custo que depende do número de threads e de faixas, nunca do número de arquivos.
 public class StatisticsGenerator {
+    public static final int MAX_FORMATS = 64;    // formatos além disso entram em OTHER_FORMAT
+    public static final int SIZE_BUCKETS = 64;   // faixa i: tamanhos em [2^(i-1), 2^i); faixa 0: vazio
+    public static final int DEFAULT_REGIONS = 64;
+    public static final String OTHER_FORMAT = "outros";
+
+    public enum QualityBand {
+        UNRATED("Não avaliada"),
+        POOR("Ruim"),
+        FAIR("Regular"),
+        GOOD("Boa"),
+        EXCELLENT("Excelente");
+
+        private final String description;
+
+        QualityBand(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() { return description; }
+
+        // Mesmas faixas de RecoveredFile.getQualityStatus; qualidade 0 é arquivo ainda não avaliado
+        public static QualityBand of(double quality) {
+            if (quality <= 0) return UNRATED;
+            if (quality >= 90) return EXCELLENT;
+            if (quality >= 70) return GOOD;
+            if (quality >= 50) return FAIR;
+            return POOR;
+        }
+    }
+
+    // Posições dentro do vetor de contadores de cada thread
+    private static final int FILES = 0;
+    private static final int BYTES = 1;
+    private static final int RECOVERED_FILES = 2;
+    private static final int RECOVERED_BYTES = 3;
+    private static final int CORRUPTED = 4;
+    private static final int RATED_FILES = 5;
+    private static final int QUALITY_SUM = 6;    // centésimos de ponto percentual
+    private static final int UPDATES = 7;        // muda a cada registro: detecta retrato desatualizado
+    private static final int FORMAT_FILES = 8;
+    private static final int FORMAT_BYTES = FORMAT_FILES + MAX_FORMATS + 1;
+    private static final int SIZE_HISTOGRAM = FORMAT_BYTES + MAX_FORMATS + 1;
+    private static final int QUALITY_HISTOGRAM = SIZE_HISTOGRAM + SIZE_BUCKETS;
+    private static final int REGION_HISTOGRAM = QUALITY_HISTOGRAM + QualityBand.values().length;
+
+    private static final QualityBand[] BANDS = QualityBand.values();
+
+    private final long deviceSize;
+    private final int regions;
+    private final long regionSize;
+    private final int counterCount;
+    private final Map<String, Integer> formatIndexes = new ConcurrentHashMap<>();
+    private final String[] formatNames = new String[MAX_FORMATS + 1];
+    private final List<AtomicLongArray> partials = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<AtomicLongArray> localPartial = ThreadLocal.withInitial(this::newPartial);
+    private volatile Snapshot lastSnapshot;
+
+    public StatisticsGenerator() {
+        this(0);
+    }
+
+    // deviceSize: tamanho do dispositivo varrido, para o histograma por região (0 = sem regiões)
+    public StatisticsGenerator(long deviceSize) {
+        this(deviceSize, DEFAULT_REGIONS);
+    }
+
+    public StatisticsGenerator(long deviceSize, int regions) {
+        this.deviceSize = Math.max(0, deviceSize);
+        this.regions = this.deviceSize > 0 ? Math.max(1, regions) : 0;
+        this.regionSize = this.regions > 0 ? Math.max(1, (this.deviceSize + this.regions - 1) / this.regions) : 0;
+        this.counterCount = REGION_HISTOGRAM + this.regions;
+        this.formatNames[MAX_FORMATS] = OTHER_FORMAT;
+    }
+
+    public long getDeviceSize() { return deviceSize; }
+    public int getRegionCount() { return regions; }
+    public long getRegionSize() { return regionSize; }
+
+    // Pode ser chamado de qualquer thread, inclusive várias ao mesmo tempo
+    public void add(RecoveredFile file) {
+        record(file, 1);
+    }
+
+    public void addAll(RecoveredFile[] files) {
+        for (RecoveredFile file : files) {
+            record(file, 1);
+        }
+    }
+
+    public void remove(RecoveredFile file) {
+        record(file, -1);
+    }
+
+    // Arquivo já contado que acabou de ser gravado pela recuperação
+    public void markRecovered(RecoveredFile file) {
+        AtomicLongArray counters = localPartial.get();
+        increment(counters, RECOVERED_FILES, 1);
+        increment(counters, RECOVERED_BYTES, file.getFileSize());
+        increment(counters, UPDATES, 1);
+    }
+
+    private void record(RecoveredFile file, int sign) {
+        AtomicLongArray counters = localPartial.get();
+        long size = file.getFileSize();
+        int format = formatIndex(file.getFileExtension());
+
+        increment(counters, FILES, sign);
+        increment(counters, BYTES, sign * size);
+        increment(counters, FORMAT_FILES + format, sign);
+        increment(counters, FORMAT_BYTES + format, sign * size);
+        increment(counters, SIZE_HISTOGRAM + sizeBucket(size), sign);
+
+        double quality = file.getRecoveryQuality();
+        increment(counters, QUALITY_HISTOGRAM + QualityBand.of(quality).ordinal(), sign);
+        if (quality > 0) {
+            increment(counters, RATED_FILES, sign);
+            increment(counters, QUALITY_SUM, sign * Math.round(quality * 100));
+        }
+        if (file.isRecovered()) {
+            increment(counters, RECOVERED_FILES, sign);
+            increment(counters, RECOVERED_BYTES, sign * size);
+        }
+        if (file.isCorrupted()) {
+            increment(counters, CORRUPTED, sign);
+        }
+        if (regions > 0) {
+            int region = (int) Math.min(regions - 1, Math.max(0, file.getStartOffset()) / regionSize);
+            increment(counters, REGION_HISTOGRAM + region, sign);
+        }
+        // Por último: quem lê UPDATES e vê o valor novo também vê os contadores acima
+        increment(counters, UPDATES, 1);
+    }
+
+    // Só a thread dona escreve no vetor: leitura simples e escrita com release bastam
+    private static void increment(AtomicLongArray counters, int index, long delta) {
+        counters.setRelease(index, counters.getPlain(index) + delta);
+    }
+
+    private AtomicLongArray newPartial() {
+        AtomicLongArray partial = new AtomicLongArray(counterCount);
+        partials.add(partial);
+        return partial;
+    }
+
+    private int formatIndex(String extension) {
+        String format = extension != null ? extension.toLowerCase() : "";
+        Integer index = formatIndexes.get(format);
+        if (index != null) return index;
+        synchronized (formatNames) {
+            // Só na primeira vez de cada formato
+            index = formatIndexes.get(format);
+            if (index != null) return index;
+            int next = formatIndexes.size();
+            if (next >= MAX_FORMATS) return MAX_FORMATS;
+            formatNames[next] = format;
+            formatIndexes.put(format, next);
+            return next;
+        }
+    }
+
+    static int sizeBucket(long size) {
+        return size <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(size);
+    }
+
+    // Limite inferior da faixa de tamanho (a faixa vai até o dobro disso)
+    public static long getSizeBucketStart(int bucket) {
+        return bucket <= 0 ? 0 : 1L << (bucket - 1);
+    }
+
+    // Retrato consistente o bastante para exibição: o mesmo objeto volta enquanto nada muda
+    public Snapshot getSnapshot() {
+        long updates = 0;
+        for (AtomicLongArray partial : partials) {
+            updates += partial.get(UPDATES);
+        }
+        Snapshot cached = lastSnapshot;
+        if (cached != null && cached.updates == updates) return cached;
+
+        long[] totals = new long[counterCount];
+        for (AtomicLongArray partial : partials) {
+            long partialUpdates = partial.get(UPDATES); // leitura com acquire antes dos contadores
+            totals[UPDATES] += partialUpdates;
+            for (int i = 0; i < counterCount; i++) {
+                if (i != UPDATES) totals[i] += partial.getAcquire(i);
+            }
+        }
+        String[] names;
+        synchronized (formatNames) {
+            names = formatNames.clone();
+        }
+        Snapshot snapshot = new Snapshot(this, totals, names);
+        lastSnapshot = snapshot;
+        return snapshot;
+    }
+
+    public static final class Snapshot {
+        private final long updates;
+        private final long fileCount;
+        private final long totalBytes;
+        private final long recoveredCount;
+        private final long recoveredBytes;
+        private final long corruptedCount;
+        private final double averageQuality;
+        private final Map<String, Long> filesByFormat;
+        private final Map<String, Long> bytesByFormat;
+        private final String topFormat;
+        private final long[] sizeHistogram;
+        private final long[] qualityHistogram;
+        private final long[] regionHistogram;
+        private final long regionSize;
+
+        private Snapshot(StatisticsGenerator source, long[] totals, String[] names) {
+            this.updates = totals[UPDATES];
+            this.fileCount = totals[FILES];
+            this.totalBytes = totals[BYTES];
+            this.recoveredCount = totals[RECOVERED_FILES];
+            this.recoveredBytes = totals[RECOVERED_BYTES];
+            this.corruptedCount = totals[CORRUPTED];
+            this.averageQuality = totals[RATED_FILES] > 0 ? totals[QUALITY_SUM] / 100.0 / totals[RATED_FILES] : 0.0;
+
+            // Formatos do mais frequente para o menos frequente
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i <= MAX_FORMATS; i++) {
+                if (names[i] != null && totals[FORMAT_FILES + i] > 0) order.add(i);
+            }
+            order.sort((a, b) -> Long.compare(totals[FORMAT_FILES + b], totals[FORMAT_FILES + a]));
+            Map<String, Long> files = new LinkedHashMap<>();
+            Map<String, Long> bytes = new LinkedHashMap<>();
+            for (int i : order) {
+                files.put(names[i], totals[FORMAT_FILES + i]);
+                bytes.put(names[i], totals[FORMAT_BYTES + i]);
+            }
+            this.filesByFormat = Collections.unmodifiableMap(files);
+            this.bytesByFormat = Collections.unmodifiableMap(bytes);
+            this.topFormat = order.isEmpty() ? "N/A" : names[order.get(0)];
+
+            this.sizeHistogram = copy(totals, SIZE_HISTOGRAM, SIZE_BUCKETS);
+            this.qualityHistogram = copy(totals, QUALITY_HISTOGRAM, BANDS.length);
+            this.regionHistogram = copy(totals, REGION_HISTOGRAM, source.regions);
+            this.regionSize = source.regionSize;
+        }
+
+        private static long[] copy(long[] totals, int from, int length) {
+            long[] values = new long[length];
+            System.arraycopy(totals, from, values, 0, length);
+            return values;
+        }
+
+        public long getFileCount() { return fileCount; }
+        public long getTotalBytes() { return totalBytes; }
+        public long getRecoveredCount() { return recoveredCount; }
+        public long getRecoveredBytes() { return recoveredBytes; }
+        public long getCorruptedCount() { return corruptedCount; }
+        public double getAverageQuality() { return averageQuality; }
+        public Map<String, Long> getFilesByFormat() { return filesByFormat; }
+        public Map<String, Long> getBytesByFormat() { return bytesByFormat; }
+        public String getTopFormat() { return topFormat; }
+        public long getRegionSize() { return regionSize; }
+
+        // Cópias: quem recebe pode alterar à vontade
+        public long[] getSizeHistogram() { return sizeHistogram.clone(); }
+        public long[] getRegionHistogram() { return regionHistogram.clone(); }
+
+        public Map<QualityBand, Long> getQualityHistogram() {
+            Map<QualityBand, Long> histogram = new LinkedHashMap<>();
+            for (QualityBand band : BANDS) {
+                histogram.put(band, qualityHistogram[band.ordinal()]);
+            }
+            return histogram;
+        }
+
+        public long getFileCount(String format) {
+            return filesByFormat.getOrDefault(format.toLowerCase(), 0L);
+        }
+
+        public double getRecoveryRate() {
+            return fileCount > 0 ? (recoveredCount * 100.0) / fileCount : 0.0;
+        }
+    }
 }
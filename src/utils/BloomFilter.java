@@ -0,0 +1,72 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Filtro de Bloom thread-safe sobre chaves de 64 bits (hashes já calculados)
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        double fpp = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+
+        long words = Math.max(1, (long) Math.ceil(-entries * Math.log(fpp) / (LN2 * LN2) / 64));
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filtro muito grande para " + expectedEntries + " entradas");
+        }
+
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / entries * LN2));
+    }
+
+    public void put(long hash) {
+        long h1 = hash;
+        long h2 = mix(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = mix(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Chave de 64 bits a partir de um digest em hexadecimal (MD5, SHA-256 ou XXH64)
+    public static long keyOf(String hexDigest) {
+        return Long.parseUnsignedLong(hexDigest.substring(0, Math.min(16, hexDigest.length())), 16);
+    }
+
+    public long getBitCount() { return bitCount; }
+    public int getHashFunctions() { return hashFunctions; }
+
+    public long getMemoryUsage() {
+        return bitCount / 8;
+    }
+
+    // Finalizador do SplitMix64: segundo hash independente para o double hashing
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) | 1L;
+    }
+}
@@ -0,0 +1,188 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Checksum incremental: alimentado com os mesmos buffers que são gravados, sem reler o arquivo
+public class Checksum {
+
+    public enum Algorithm {
+        MD5("MD5"),
+        SHA1("SHA-1"),
+        SHA256("SHA-256"),
+        XXH64("XXH64"); // hash rápido não criptográfico de 64 bits
+
+        private final String displayName;
+
+        Algorithm(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() { return displayName; }
+    }
+
+    private final Algorithm algorithm;
+    private final MessageDigest digest;
+    private final XXHash64 xxHash;
+    private byte[] result;
+
+    public Checksum(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        if (algorithm == Algorithm.XXH64) {
+            this.digest = null;
+            this.xxHash = new XXHash64(0);
+        } else {
+            try {
+                this.digest = MessageDigest.getInstance(algorithm.getDisplayName());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Algoritmo indisponível: " + algorithm.getDisplayName(), e);
+            }
+            this.xxHash = null;
+        }
+    }
+
+    public Algorithm getAlgorithm() { return algorithm; }
+
+    public void update(byte[] data, int offset, int length) {
+        if (digest != null) {
+            digest.update(data, offset, length);
+        } else {
+            xxHash.update(ByteBuffer.wrap(data, offset, length));
+        }
+    }
+
+    // Consome os bytes restantes do buffer sem alterar sua posição
+    public void update(ByteBuffer data) {
+        ByteBuffer view = data.duplicate();
+        if (digest != null) {
+            digest.update(view);
+        } else {
+            xxHash.update(view);
+        }
+    }
+
+    // Finaliza o cálculo; chamadas seguintes devolvem o mesmo resultado
+    public byte[] digest() {
+        if (result == null) {
+            result = digest != null
+                    ? digest.digest()
+                    : ByteBuffer.allocate(8).putLong(xxHash.getValue()).array();
+        }
+        return result.clone();
+    }
+
+    public String hexDigest() {
+        return toHex(digest());
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    // Implementação incremental do xxHash64 (https://github.com/Cyan4973/xxHash)
+    private static final class XXHash64 {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+
+        private final long seed;
+        private long v1, v2, v3, v4;
+        private long totalLength;
+        private final ByteBuffer pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+
+        XXHash64(long seed) {
+            this.seed = seed;
+            this.v1 = seed + P1 + P2;
+            this.v2 = seed + P2;
+            this.v3 = seed;
+            this.v4 = seed - P1;
+        }
+
+        void update(ByteBuffer input) {
+            input.order(ByteOrder.LITTLE_ENDIAN);
+            totalLength += input.remaining();
+
+            // Completa o bloco de 32 bytes pendente da chamada anterior
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && input.hasRemaining()) {
+                    pending.put(input.get());
+                }
+                if (pending.hasRemaining()) return;
+                pending.flip();
+                processStripe(pending);
+                pending.clear();
+            }
+
+            while (input.remaining() >= 32) {
+                processStripe(input);
+            }
+            while (input.hasRemaining()) {
+                pending.put(input.get());
+            }
+        }
+
+        private void processStripe(ByteBuffer in) {
+            v1 = round(v1, in.getLong());
+            v2 = round(v2, in.getLong());
+            v3 = round(v3, in.getLong());
+            v4 = round(v4, in.getLong());
+        }
+
+        long getValue() {
+            long h;
+            if (totalLength >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else {
+                h = seed + P5;
+            }
+            h += totalLength;
+
+            ByteBuffer tail = pending.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            tail.flip();
+            while (tail.remaining() >= 8) {
+                h ^= round(0, tail.getLong());
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (tail.remaining() >= 4) {
+                h ^= (tail.getInt() & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+            }
+            while (tail.hasRemaining()) {
+                h ^= (tail.get() & 0xFF) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        private static long round(long acc, long input) {
+            acc += input * P2;
+            acc = Long.rotateLeft(acc, 31);
+            return acc * P1;
+        }
+
+        private static long mergeRound(long acc, long value) {
+            acc ^= round(0, value);
+            return acc * P1 + P4;
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package utils;
 
+import engine.BlockCache;
+
 import java.io.*;
 import java.nio.file.*;
-import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.List;
 
@@ -38,20 +39,15 @@ public class FileUtils {
     }
 
     public static byte[] readFileHeader(File file, int headerSize) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-            byte[] header = new byte[headerSize];
-            int bytesRead = raf.read(header);
-            return bytesRead == headerSize ? header : Arrays.copyOf(header, bytesRead);
-        }
+        return extractFilePreview(file, 0, headerSize);
     }
 
+    // Lê pelo cache de blocos compartilhado: regiões recém-varridas não voltam ao disco
     public static byte[] extractFilePreview(File file, long offset, int previewSize) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-            raf.seek(offset);
-            byte[] preview = new byte[previewSize];
-            int bytesRead = raf.read(preview);
-            return bytesRead == previewSize ? preview : Arrays.copyOf(preview, bytesRead);
-        }
+        byte[] preview = new byte[previewSize];
+        int bytesRead = BlockCache.getInstance().read(file.toPath(), offset, preview, 0, previewSize);
+        if (bytesRead <= 0) return new byte[0];
+        return bytesRead == previewSize ? preview : Arrays.copyOf(preview, bytesRead);
     }
 
     public static boolean isValidFilePath(String path) {
@@ -104,22 +100,20 @@ public class FileUtils {
     }
 
     public static String calculateChecksum(File file) {
+        return calculateChecksum(file, Checksum.Algorithm.MD5);
+    }
+
+    public static String calculateChecksum(File file, Checksum.Algorithm algorithm) {
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
+            Checksum checksum = new Checksum(algorithm);
             try (FileInputStream fis = new FileInputStream(file)) {
                 byte[] buffer = new byte[8192];
                 int bytesRead;
                 while ((bytesRead = fis.read(buffer)) != -1) {
-                    md.update(buffer, 0, bytesRead);
+                    checksum.update(buffer, 0, bytesRead);
                 }
             }
-            byte[] digest = md.digest();
-
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
+            return checksum.hexDigest();
         } catch (Exception e) {
             return "error";
         }
@@ -165,8 +159,8 @@ public class FileUtils {
             double sizeRatio = (double) recoveredSize / originalSize;
             if (sizeRatio < 0.5 || sizeRatio > 2.0) return 10.0; // Tamanho muito diferente
 
-            // Verifica checksum se possível
-            if (recoveredSize < 10 * 1024 * 1024) { // Só para arquivos menores que 10MB
+            // Verifica checksum se possível (tamanhos diferentes nunca têm o mesmo conteúdo)
+            if (recoveredSize == originalSize && recoveredSize < 10 * 1024 * 1024) { // Só para arquivos menores que 10MB
                 String originalChecksum = calculateChecksum(original);
                 String recoveredChecksum = calculateChecksum(recovered);
 
@@ -183,6 +177,25 @@ public class FileUtils {
         }
     }
 
+    // Versão que usa o checksum já calculado durante a gravação: só o original é lido
+    public static double calculateRecoveryQuality(File original, long recoveredSize,
+                                                  String recoveredChecksum, Checksum.Algorithm algorithm) {
+        if (!original.exists() || recoveredSize <= 0) return 0.0;
+
+        long originalSize = original.length();
+        if (originalSize == 0) return 0.0;
+
+        double sizeRatio = (double) recoveredSize / originalSize;
+        if (sizeRatio < 0.5 || sizeRatio > 2.0) return 10.0; // Tamanho muito diferente
+
+        if (recoveredChecksum != null && recoveredSize == originalSize
+                && recoveredChecksum.equals(calculateChecksum(original, algorithm))) {
+            return 100.0; // Arquivo perfeito
+        }
+
+        return Math.min(100.0, sizeRatio * 80.0);
+    }
+
     public static boolean safeDelete(File file) {
         if (file.exists()) {
             try {
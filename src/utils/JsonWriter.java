@@ -0,0 +1,156 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Escrita de JSON em fluxo, sem montar a árvore em memória: resultados com milhões de arquivos
+// vão direto para o destino. Vírgulas, aspas e escapes ficam por conta daqui.
+public class JsonWriter implements Closeable, Flushable {
+    private final Writer out;
+    private final boolean pretty;
+    private final Deque<Boolean> containers = new ArrayDeque<>(); // true se já tem algum elemento
+    private boolean afterName;
+
+    public JsonWriter(Writer out) {
+        this(out, false);
+    }
+
+    // pretty: uma entrada por linha, indentada (para arquivos); sem ele, tudo numa linha só
+    public JsonWriter(Writer out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+    }
+
+    public JsonWriter beginObject() throws IOException { return open('{'); }
+    public JsonWriter endObject() throws IOException { return close('}'); }
+    public JsonWriter beginArray() throws IOException { return open('['); }
+    public JsonWriter endArray() throws IOException { return close(']'); }
+
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        writeString(name);
+        out.write(pretty ? ": " : ":");
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    // NaN e infinito não existem em JSON: viram null
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return nullValue();
+        beforeValue();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    // Atalhos para o caso comum de um campo com valor
+    public JsonWriter field(String name, String value) throws IOException { return name(name).value(value); }
+    public JsonWriter field(String name, long value) throws IOException { return name(name).value(value); }
+    public JsonWriter field(String name, double value) throws IOException { return name(name).value(value); }
+    public JsonWriter field(String name, boolean value) throws IOException { return name(name).value(value); }
+
+    private JsonWriter open(char bracket) throws IOException {
+        beforeValue();
+        out.write(bracket);
+        containers.push(false);
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (containers.isEmpty() || afterName) {
+            throw new IllegalStateException("JSON mal formado: " + bracket + " inesperado");
+        }
+        boolean hasElements = containers.pop();
+        if (hasElements) newline();
+        out.write(bracket);
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        separator();
+    }
+
+    private void separator() throws IOException {
+        if (containers.isEmpty()) return;
+        if (containers.pop()) out.write(',');
+        containers.push(true);
+        newline();
+    }
+
+    private void newline() throws IOException {
+        if (!pretty) return;
+        out.write('\n');
+        for (int i = 0; i < containers.size(); i++) {
+            out.write("  ");
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        appendQuoted(builder, value);
+        out.write(builder.toString());
+    }
+
+    private static void appendQuoted(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\t': builder.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}